@@ -29,6 +29,11 @@ public class AlgoTFUI
 	public int candidateCount = 0;
 	
 	Map<Integer, Double> mapItemToTWU;
+	/* the tables indexed by the items replacing the lookups of the maps while the utility lists are built when the item IDs are dense (null otherwise, see getDenseMaxItem()) */
+	double[] itemTWUs = null; // the TWU of each item
+	int[] itemPositions = null; // the position of each promising item in the sorted utility lists (-1 for the others)
+	Item[][] eucsItems = null; // the entries of the EUCS by the positions of the pairs of items (the rows are allocated on demand)
+	static final int maxEucsItems = 2048; // the most promising items for which the EUCS is also indexed by the positions
 	Map<Integer, Map<Integer, Double>> mapLeafMAP = null;
 	double minUtilityAndFrequency=0;
 	double minTopKValue = 0;
@@ -40,6 +45,8 @@ public class AlgoTFUI
 	BufferedWriter writer = null;
 	
 	PriorityQueue<Pattern> kPatterns = new PriorityQueue<Pattern>();
+	/* the top k patterns of the last run sorted in descending order of their values */
+	List<Pattern> results = new ArrayList<Pattern>();
 	PriorityQueue<Double> leafPruneUtils = null;
 	
 	boolean debug = false;
@@ -125,6 +132,78 @@ public class AlgoTFUI
 	 * @throws IOException
 	 */
 	public void runAlgorithm(String input, String output, boolean eucsPrune) throws IOException 
+	{
+		List<int[]> items = new ArrayList<int[]>();
+		List<double[]> frequencies = new ArrayList<double[]>(), utilities = new ArrayList<double[]>();
+		List<Double> transactionUtilities = new ArrayList<Double>();
+		
+		BufferedReader myInput = null;
+		String thisLine;
+		
+		/* dataset structure: Transaction:Frequance:Utility:TU */
+		try 
+		{
+			myInput = new BufferedReader(new InputStreamReader(new FileInputStream(new File(input))));
+			while ((thisLine = myInput.readLine()) != null) 
+			{
+				if (
+						thisLine.isEmpty() == true || thisLine.charAt(0) == '#'
+								|| thisLine.charAt(0) == '%' || thisLine.charAt(0) == '@'
+								|| (thisLine.length() > 1 && thisLine.charAt(0) == '/' && thisLine.charAt(1) == '/')
+				) // annotation symbol
+					continue;
+				String split[] = thisLine.split(":");
+				String itemValues[] = split[0].split(" ");
+				String frequencyValues[] = split[1].split(" ");
+				String utilityValues[] = split[2].split(" ");
+				int[] transactionItems = new int[itemValues.length];
+				double[] transactionFrequencies = new double[itemValues.length], transactionUtils = new double[itemValues.length];
+				for (int i = 0; i < itemValues.length; ++i) 
+				{
+					transactionItems[i] = Integer.parseInt(itemValues[i]);
+					transactionFrequencies[i] = Double.parseDouble(frequencyValues[i]);
+					transactionUtils[i] = Double.parseDouble(utilityValues[i]);
+				}
+				items.add(transactionItems);
+				frequencies.add(transactionFrequencies);
+				utilities.add(transactionUtils);
+				transactionUtilities.add(Double.parseDouble(split[3]));
+			}
+		}
+		catch (Exception e) 
+		{
+			e.printStackTrace();
+			this.bRet = false;
+		} 
+		finally 
+		{
+			if (myInput != null)
+				myInput.close();
+		}
+		
+		double[] tu = new double[transactionUtilities.size()];
+		for (int i = 0; i < tu.length; ++i)
+			tu[i] = transactionUtilities.get(i);
+		runAlgorithm(items.toArray(new int[0][]), frequencies.toArray(new double[0][]), utilities.toArray(new double[0][]), tu, input, output, eucsPrune);
+	}
+	
+	/**
+	 * Run the algorithm on a database which is already in memory
+	 *
+	 * @param items the items of each transaction
+	 * @param frequencies the frequency of each item of each transaction
+	 * @param utilities the utility of each item of each transaction
+	 * @param transactionUtilities the utility of each transaction
+	 * @param output path to the output file (null for no output file)
+	 * @param eucsPrune
+	 * @throws IOException
+	 */
+	public void runAlgorithm(int[][] items, double[][] frequencies, double[][] utilities, double[] transactionUtilities, String output, boolean eucsPrune) throws IOException 
+	{
+		runAlgorithm(items, frequencies, utilities, transactionUtilities, null, output, eucsPrune);
+	}
+	
+	private void runAlgorithm(int[][] items, double[][] frequencies, double[][] utilities, double[] transactionUtilities, String input, String output, boolean eucsPrune) throws IOException 
 	{
 		System.out.println("The TFUI Algorithm has started. \n");
 		maxMemory = 0;
@@ -147,40 +226,58 @@ public class AlgoTFUI
 		}
 		
 		startTimestamp = System.currentTimeMillis();
-		writer = new BufferedWriter(new FileWriter(output));
+		writer = null == output ? null : new BufferedWriter(new FileWriter(output));
 		
 		mapItemToTWU = new HashMap<>();
+		results = new ArrayList<Pattern>();
 		
-		BufferedReader myInput = null;
-		String thisLine;
-		try 
+		int maxItem = getDenseMaxItem(items);
+		if (maxItem >= 0) // sum in the tables and fill the maps in the order of the first occurrences as the loop below does
 		{
-			myInput = new BufferedReader(new InputStreamReader(new FileInputStream(new File(input))));
-			while ((thisLine = myInput.readLine()) != null) 
+			itemTWUs = new double[maxItem + 1];
+			double[] itemRIUs = new double[maxItem + 1], itemRIFs = new double[maxItem + 1];
+			boolean[] isSeen = new boolean[maxItem + 1];
+			List<Integer> seenItems = new ArrayList<Integer>();
+			for (int t = 0; t < items.length; ++t)
+				for (int i = 0; i < items[t].length; ++i)
+				{
+					int item = items[t][i];
+					if (!isSeen[item])
+					{
+						isSeen[item] = true;
+						seenItems.add(item);
+						itemTWUs[item] = transactionUtilities[t];
+						itemRIUs[item] = utilities[t][i];
+						itemRIFs[item] = frequencies[t][i];
+					}
+					else
+					{
+						itemTWUs[item] += transactionUtilities[t];
+						itemRIUs[item] += utilities[t][i];
+						itemRIFs[item] += frequencies[t][i];
+					}
+				}
+			for (Integer item : seenItems)
 			{
-				if (
-						thisLine.isEmpty() == true || thisLine.charAt(0) == '#'
-								|| thisLine.charAt(0) == '%' || thisLine.charAt(0) == '@'
-								|| (thisLine.length() > 1 && thisLine.charAt(0) == '/' && thisLine.charAt(1) == '/')
-				) // annotation symbol
-					continue;
-				String split[] = thisLine.split(":");
-				String items[] = split[0].split(" ");
-				String frequencyValues[] = split[1].split(" ");
-				
-				String utilityValues[] = split[2].split(" ");
-				double transactionUtility = Double.parseDouble(split[3]);
-				
-				for (int i = 0; i < items.length; ++i) 
+				mapItemToTWU.put(item, itemTWUs[item]);
+				RIU.put(item, itemRIUs[item]);
+				RIF.put(item, itemRIFs[item]);
+			}
+		}
+		else
+			for (int t = 0; t < items.length; ++t) 
+			{
+				double transactionUtility = transactionUtilities[t];
+				for (int i = 0; i < items[t].length; ++i) 
 				{
-					Integer item = Integer.parseInt(items[i]);
+					Integer item = items[t][i];
 					Double twu = mapItemToTWU.get(item);
 					twu = (null == twu) ? transactionUtility : twu + transactionUtility;
 					mapItemToTWU.put(item, twu);
 					
 					/* set the RIU value */
-					double util1 = Double.parseDouble(utilityValues[i]);
-					double util2 = Double.parseDouble(frequencyValues[i]);
+					double util1 = utilities[t][i];
+					double util2 = frequencies[t][i];
 					Double real1 = RIU.get(item);
 					Double real2 = RIF.get(item);
 					real1 = (null == real1) ? util1 : util1 + real1;
@@ -189,17 +286,6 @@ public class AlgoTFUI
 					RIF.put(item, real2);
 				}
 			}
-		}
-		 catch (Exception e) 
-		{
-			e.printStackTrace();
-			this.bRet = false;
-		} 
-		finally 
-		{
-			if (myInput != null)
-				myInput.close();
-		}
 		
 		/* RIU */
 		for (Integer item : RIU.keySet()) 
@@ -234,6 +320,8 @@ public class AlgoTFUI
 			}
 		
 		Collections.sort(listOfUtilityLists, new UtilComparator());
+		if (itemTWUs != null)
+			initItemPositions(listOfUtilityLists, itemTWUs.length);
 		System.out.printf("Series: " + listOfUtilityLists.get(0).getItem());
 		for (int i = 1; i < listOfUtilityLists.size(); ++i)
 			System.out.printf(" -> " + listOfUtilityLists.get(i).getItem());
@@ -243,77 +331,54 @@ public class AlgoTFUI
 		double remainingFrequency=0;
 		double newTWU = 0;
 		
-		/* dataset structure: Transaction:Frequance:Utility:TU */
-		try 
+		int tid = 0;
+		for (int t = 0; t < items.length; ++t) 
 		{
-			myInput = new BufferedReader(new InputStreamReader(new FileInputStream(new File(input))));
-			int tid = 0;
-			while ((thisLine = myInput.readLine()) != null) 
+			remainingUtility = 0;
+			remainingFrequency=0;
+			newTWU = 0; // NEW OPTIMIZATION
+			
+			List<Pair> revisedTransaction = new ArrayList<Pair>();
+			for (int i = 0; i < items[t].length; ++i) 
 			{
-				if (
-						thisLine.isEmpty() || thisLine.charAt(0) == '#'
-								|| thisLine.charAt(0) == '%' || thisLine.charAt(0) == '@'
-								|| (thisLine.length() > 1 && thisLine.charAt(0) == '/' && thisLine.charAt(1) == '/')
-				)
-					continue;
-				
-				String split[] = thisLine.split(":");
-				String items[] = split[0].split(" ");
-				String frequencyValues[] = split[1].split(" ");
-				String utilityValues[] = split[2].split(" ");
-				remainingUtility = 0;
-				remainingFrequency=0;
-				newTWU = 0; // NEW OPTIMIZATION
-				
-				List<Pair> revisedTransaction = new ArrayList<Pair>();
-				for (int i = 0; i < items.length; ++i) 
-				{
-					Pair pair = new Pair(Integer.parseInt(items[i]), Double.parseDouble(frequencyValues[i]), Double.parseDouble(utilityValues[i]));
-					if (mapItemToTWU.get(pair.item) >= minTopKValue) 
-					{
-						revisedTransaction.add(pair);
-						remainingUtility += pair.utility;
-						remainingFrequency += pair.fre;
-						newTWU += alpha*pair.utility + beta* pair.fre; // NEW OPTIMIZATION
-					}
-				}
-				
-				if (0 == revisedTransaction.size())
-					continue;
-				Collections.sort(revisedTransaction, new PairComparator());
-				
-				remainingUtility = 0;
-				remainingFrequency=0;
-				for (int i = revisedTransaction.size() - 1; i >= 0; --i) 
+				Pair pair = new Pair(items[t][i], frequencies[t][i], utilities[t][i]);
+				if (null == itemPositions ? mapItemToTWU.get(pair.item) >= minTopKValue : itemPositions[pair.item] >= 0) 
 				{
-					Pair pair = revisedTransaction.get(i);
-					UtilityList utilityListOfItem = mapItemToUtilityList.get(pair.item);
-					Element element = new Element(tid, pair.fre, pair.utility, remainingUtility, remainingFrequency);
-					utilityListOfItem.addElement(element);
-					
-					/* update the minimum utility */
-					if (EUCS_PRUNE)
-						updateEUCSprune(i, pair, revisedTransaction, newTWU);
-					if (LEAF_PRUNE)
-						updateLeafprune(i, pair, revisedTransaction, listOfUtilityLists);
-					
+					revisedTransaction.add(pair);
 					remainingUtility += pair.utility;
 					remainingFrequency += pair.fre;
+					newTWU += alpha*pair.utility + beta* pair.fre; // NEW OPTIMIZATION
 				}
+			}
+			
+			if (0 == revisedTransaction.size())
+				continue;
+			Collections.sort(revisedTransaction, new PairComparator());
+			
+			remainingUtility = 0;
+			remainingFrequency=0;
+			for (int i = revisedTransaction.size() - 1; i >= 0; --i) 
+			{
+				Pair pair = revisedTransaction.get(i);
+				UtilityList utilityListOfItem = null == itemPositions ? mapItemToUtilityList.get(pair.item) : listOfUtilityLists.get(itemPositions[pair.item]);
+				Element element = new Element(tid, pair.fre, pair.utility, remainingUtility, remainingFrequency);
+				utilityListOfItem.addElement(element);
+				
+				/* update the minimum utility */
+				if (EUCS_PRUNE)
+					updateEUCSprune(i, pair, revisedTransaction, newTWU);
+				if (LEAF_PRUNE)
+					updateLeafprune(i, pair, revisedTransaction, listOfUtilityLists);
 				
-				++tid; // increase tid number for next transaction
+				remainingUtility += pair.utility;
+				remainingFrequency += pair.fre;
 			}
-		} 
-		catch (Exception e) 
-		{
-			e.printStackTrace();
-			this.bRet = false;
-		} 
-		finally 
-		{
-			if (myInput != null)
-				myInput.close();
+			
+			++tid; // increase tid number for next transaction
 		}
+		itemTWUs = null;
+		itemPositions = null;
+		eucsItems = null;
 		
 		if (EUCS_PRUNE) 
 		{
@@ -343,7 +408,8 @@ public class AlgoTFUI
 		checkMemory(); 
 		
 		writeResultTofile();
-		writer.close();
+		if (writer != null)
+			writer.close();
 		
 		endTimestamp = System.currentTimeMillis();
 		kPatterns.clear();
@@ -367,19 +433,29 @@ public class AlgoTFUI
 			mapFMAPItem = new HashMap<Integer, Item>();
 			mapFMAP.put(pair.item, mapFMAPItem);
 		}
+		Item[] eucsRow = null;
+		if (eucsItems != null)
+		{
+			eucsRow = eucsItems[itemPositions[pair.item]];
+			if (null == eucsRow)
+				eucsRow = eucsItems[itemPositions[pair.item]] = new Item[eucsItems.length];
+		}
 		
 		for (int j = i + 1; j < revisedTransaction.size(); ++j) 
 		{
 			if (pair.item == revisedTransaction.get(j).item)
 				continue; // kosarak dataset has duplicate items
 			Pair pairAfter = revisedTransaction.get(j);
-			Item twuItem = mapFMAPItem.get(pairAfter.item);
-			if (null == twuItem)
+			Item twuItem = null == eucsRow ? mapFMAPItem.get(pairAfter.item) : eucsRow[itemPositions[pairAfter.item]];
+			if (null == twuItem) // the entries are updated in place once they are in the map
+			{
 				twuItem = new Item();
+				mapFMAPItem.put(pairAfter.item, twuItem);
+				if (eucsRow != null)
+					eucsRow[itemPositions[pairAfter.item]] = twuItem;
+			}
 			twuItem.twu += newTWU;
 			twuItem.utility += pair.utility + pairAfter.utility;
-			
-			mapFMAPItem.put(pairAfter.item, twuItem);
 		}
 	}
 	
@@ -458,6 +534,8 @@ public class AlgoTFUI
 	 */
 	public int getTWUindex(int item, List<UtilityList> ULs) 
 	{
+		if (itemPositions != null) // only set while the utility lists are built
+			return itemPositions[item];
 		for (int i = ULs.size() - 1; i >= 0; --i)
 			if (ULs.get(i).item == item)
 				return i;
@@ -489,10 +567,49 @@ public class AlgoTFUI
 	 */
 	private int compareItems(int item1, int item2) 
 	{
-		int compare = (int) (mapItemToTWU.get(item1) - mapItemToTWU.get(item2));
+		int compare = null == itemTWUs ? (int) (mapItemToTWU.get(item1) - mapItemToTWU.get(item2)) : (int) (itemTWUs[item1] - itemTWUs[item2]);
 		return (compare == 0) ? item1 - item2 : compare;
 	}
 	
+	/**
+	 * Get the largest item if the item IDs are dense enough to index tables by them (non-negative and below twice the number of occurrences plus 1024)
+	 *
+	 * @param items
+	 * @return the largest item, or -1 if the item IDs are sparse
+	 */
+	static int getDenseMaxItem(int[][] items)
+	{
+		int maxItem = -1;
+		long occurrences = 0;
+		for (int[] transaction : items)
+		{
+			occurrences += transaction.length;
+			for (int item : transaction)
+			{
+				if (item < 0)
+					return -1;
+				maxItem = Math.max(maxItem, item);
+			}
+		}
+		return maxItem < 2 * occurrences + 1024 ? maxItem : -1;
+	}
+	
+	/**
+	 * Map the items to their positions in the sorted utility lists, and index the EUCS by the positions as well if there are not too many promising items
+	 *
+	 * @param listOfUtilityLists
+	 * @param tableSize
+	 */
+	private void initItemPositions(List<UtilityList> listOfUtilityLists, int tableSize)
+	{
+		itemPositions = new int[tableSize];
+		Arrays.fill(itemPositions, -1);
+		for (int i = 0; i < listOfUtilityLists.size(); ++i)
+			itemPositions[listOfUtilityLists.get(i).item] = i;
+		if (EUCS_PRUNE && listOfUtilityLists.size() <= maxEucsItems)
+			eucsItems = new Item[listOfUtilityLists.size()][];
+	}
+	
 	/**
 	 * write result to file unord
 	 *
@@ -682,6 +799,17 @@ public class AlgoTFUI
 			}
 		});
 		
+		results = new ArrayList<Pattern>(lp);
+		Collections.sort(results, new Comparator<Pattern>() 
+		{
+			public int compare(Pattern o1, Pattern o2) 
+			{
+				return Double.compare(getValue(o2), getValue(o1));
+			}
+		});
+		if (null == writer)
+			return;
+		
 		for (Pattern pattern : lp) 
 		{
 			StringBuilder buffer = new StringBuilder();
@@ -699,6 +827,53 @@ public class AlgoTFUI
 		writer.close();
 	}
 	
+	/**
+	 * Get the value of a pattern used for the ranking
+	 *
+	 * @param pattern
+	 * @return
+	 */
+	private double getValue(Pattern pattern) 
+	{
+		return alpha * pattern.utility + beta * pattern.fre;
+	}
+	
+	/**
+	 * Get the itemsets found by the last run
+	 *
+	 * @return the itemsets sorted in descending order of their values
+	 */
+	public int[][] getResultItemsets() 
+	{
+		int[][] itemsets = new int[results.size()][];
+		for (int i = 0; i < itemsets.length; ++i)
+			itemsets[i] = results.get(i).itemset.clone();
+		return itemsets;
+	}
+	
+	/**
+	 * Get the values of the itemsets found by the last run
+	 *
+	 * @return the values in the same order as getResultItemsets()
+	 */
+	public double[] getResultValues() 
+	{
+		double[] values = new double[results.size()];
+		for (int i = 0; i < values.length; ++i)
+			values[i] = getValue(results.get(i));
+		return values;
+	}
+	
+	/**
+	 * Get the final minimum top-k value
+	 *
+	 * @return
+	 */
+	public double getMinTopKValue() 
+	{
+		return minTopKValue;
+	}
+	
 	
 	/**
 	 * compare patterns
@@ -1163,10 +1338,15 @@ public class AlgoTFUI
 		System.out.println("\tHUIs count: " + huiCount);
 		System.out.println("\tCandidates: " + candidateCount);
 		System.out.println("\tFinal minimum utility: " + minTopKValue);
-		File f = new File(inputFile);
-		String tmp = f.getName();
-		tmp = tmp.substring(0, tmp.lastIndexOf('.'));
-		System.out.println("\tDataset: " + tmp);
+		if (inputFile != null)
+		{
+			File f = new File(inputFile);
+			String tmp = f.getName();
+			tmp = tmp.lastIndexOf('.') > 0 ? tmp.substring(0, tmp.lastIndexOf('.')) : tmp;
+			System.out.println("\tDataset: " + tmp);
+		}
+		else
+			System.out.println("\tDataset: (memory)");
 		String timeStamp = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(Calendar.getInstance().getTime());
 		System.out.println("\tEnd time " + timeStamp);
 		System.out.println("==================================================");
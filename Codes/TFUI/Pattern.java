@@ -4,6 +4,7 @@ package tfui;
 public class Pattern implements Comparable<Pattern>
 {
 	String prefix; // prefix
+	int[] itemset; // items of the prefix followed by the last item
 	double fre;
 	double utility; // utility value
 	int sup; // support value
@@ -27,6 +28,9 @@ public class Pattern implements Comparable<Pattern>
 		}
 		buffer += "" + X.item;
 		this.prefix = buffer;
+		this.itemset = new int[length + 1];
+		System.arraycopy(prefix, 0, this.itemset, 0, length);
+		this.itemset[length] = X.item;
 		this.idx = idx;
 
 		this.fre = X.getFre();
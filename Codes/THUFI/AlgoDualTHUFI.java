@@ -0,0 +1,694 @@
+package thufi;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.Map.Entry;
+
+
+/**
+ * The dual-objective THUFI algorithm
+ *
+ * Instead of mining the top-k high threat itemsets and the top-k high frequency itemsets separately and merging them,
+ * the threat and the frequency are carried in the same utility list and the exact top-k itemsets of
+ * value(X) = alpha * threat(X) + beta * frequency(X) are mined in a single search.
+ * The RIU, the CUD (EUCS) and the pruning bounds are all computed on the combined value.
+ *
+ * @author Yuer Yang
+ */
+public class AlgoDualTHUFI
+{
+	/* variable for statistics */
+	public double maxMemory = 0; // the maximum memory usage
+	public long startTimestamp = 0; // the time the algorithm started
+	public long startTimestampPha2 = 0;
+	public long endTimestamp = 0; // the time the algorithm terminated
+	public int huiCount = 0; // the number of HUI generated
+	public int candidateCount = 0;
+	
+	Map<Integer, Double> mapItemToTWU;
+	/* the tables indexed by the items replacing the lookups of the maps while the utility lists are built when the item IDs are dense (null otherwise, see AlgoTHUFI.getDenseMaxItem()) */
+	double[] itemTWUs = null; // the TWU of each item
+	int[] itemPositions = null; // the position of each promising item in the sorted utility lists (-1 for the others)
+	double[][][] eucsItems = null; // the entries of the EUCS by the positions of the pairs of items (the rows are allocated on demand)
+	
+	double minTopKValue = 0;
+	static final double thresholdSlack = 1e-9; // the relative rounding error within which a value reaches the threshold (see reachesThreshold())
+	int topkstatic = 0;
+	double alpha = 0.5;
+	double beta = 0.5;
+	
+	BufferedWriter writer = null; // writer to write the output file
+	
+	PriorityQueue<DualPattern> kPatterns = new PriorityQueue<DualPattern>();
+	/* the top k patterns of the last run sorted in descending order of their values */
+	List<DualPattern> results = new ArrayList<DualPattern>();
+	
+	final int BUFFERS_SIZE = 200;
+	private int[] itemsetBuffer = null;
+	
+	/* {item, {following item, [twu, value]}} of the pairs of items */
+	Map<Integer, Map<Integer, double[]>> mapFMAP = null;
+	double riuRaiseValue = 0, cudRaiseValue = 0;
+	
+	boolean EUCS_PRUNE = false;
+	
+	class Pair
+	{
+		int item = 0;
+		double threat = 0;
+		double fre = 0;
+		double utility = 0; // alpha * threat + beta * fre
+		
+		Pair(int item, double threat, double fre)
+		{
+			this.item = item;
+			this.threat = threat;
+			this.fre = fre;
+			this.utility = alpha * threat + beta * fre;
+		}
+		
+		public String toString() // overloaded function
+		{
+			return "[" + item + ", " + threat + ", " + fre + "]";
+		}
+	}
+	
+	class PairComparator implements Comparator<Pair>
+	{
+		@Override
+		public int compare(Pair o1, Pair o2)
+		{
+			return compareItems(o1.item, o2.item);
+		}
+	}
+	
+	class UtilComparator implements Comparator<DualUtilityList>
+	{
+		@Override
+		public int compare(DualUtilityList o1, DualUtilityList o2)
+		{
+			return compareItems(o1.item, o2.item);
+		}
+	}
+	
+	public AlgoDualTHUFI(int top, double alpha, double beta)
+	{
+		this.topkstatic = top;
+		this.alpha = alpha;
+		this.beta = beta;
+	}
+	
+	String inputFile;
+	
+	/**
+	 * Run the algorithm
+	 *
+	 * @param input path to the input file (Transaction:Frequency:Utility[:TU], where the utilities are the threats and TU is ignored)
+	 * @param output path to the output file
+	 * @param eucsPrune if true, the EUCS strategy will be activated
+	 * @throws IOException if writing or reading error from file
+	 */
+	public void runAlgorithm(String input, String output, boolean eucsPrune) throws IOException
+	{
+		List<int[]> items = new ArrayList<int[]>();
+		List<double[]> threats = new ArrayList<double[]>(), frequencies = new ArrayList<double[]>();
+		
+		BufferedReader myInput = null;
+		String thisLine;
+		try
+		{
+			myInput = new BufferedReader(new InputStreamReader(new FileInputStream(new File(input))));
+			while ((thisLine = myInput.readLine()) != null)
+			{
+				if (
+					thisLine.isEmpty() == true || thisLine.charAt(0) == '#'
+					|| thisLine.charAt(0) == '%' || thisLine.charAt(0) == '@'
+					|| (thisLine.length() > 1 && thisLine.charAt(0) == '/' && thisLine.charAt(1) == '/')
+				) // annotation symbol
+					continue;
+				String split[] = thisLine.split(":");
+				String itemValues[] = split[0].split(" ");
+				String frequency[] = split[1].split(" ");
+				String utilityValues[] = split[2].split(" ");
+				int[] transactionItems = new int[itemValues.length];
+				double[] transactionThreats = new double[itemValues.length], transactionFrequencies = new double[itemValues.length];
+				for (int i = 0; i < itemValues.length; ++i)
+				{
+					transactionItems[i] = Integer.parseInt(itemValues[i]);
+					transactionFrequencies[i] = Double.parseDouble(frequency[i]);
+					transactionThreats[i] = Double.parseDouble(utilityValues[i]);
+				}
+				items.add(transactionItems);
+				threats.add(transactionThreats);
+				frequencies.add(transactionFrequencies);
+			}
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+		}
+		finally
+		{
+			if (myInput != null)
+				myInput.close();
+		}
+		
+		runAlgorithm(items.toArray(new int[0][]), threats.toArray(new double[0][]), frequencies.toArray(new double[0][]), input, output, eucsPrune);
+	}
+	
+	/**
+	 * Run the algorithm on a database which is already in memory
+	 *
+	 * @param items the items of each transaction
+	 * @param threats the threat of each item of each transaction
+	 * @param frequencies the frequency of each item of each transaction
+	 * @param output path to the output file (null for no output file)
+	 * @param eucsPrune if true, the EUCS strategy will be activated
+	 * @throws IOException if writing error from file
+	 */
+	public void runAlgorithm(int[][] items, double[][] threats, double[][] frequencies, String output, boolean eucsPrune) throws IOException
+	{
+		runAlgorithm(items, threats, frequencies, null, output, eucsPrune);
+	}
+	
+	private void runAlgorithm(int[][] items, double[][] threats, double[][] frequencies, String input, String output, boolean eucsPrune) throws IOException
+	{
+		System.out.println("The dual-objective THUFI algorithm has started. \n");
+		maxMemory = 0;
+		huiCount = 0;
+		candidateCount = 0;
+		minTopKValue = 0;
+		itemsetBuffer = new int[BUFFERS_SIZE];
+		this.EUCS_PRUNE = eucsPrune;
+		Map<Integer, Double> RIU = new HashMap<Integer, Double>();
+		
+		inputFile = input;
+		if (EUCS_PRUNE)
+			mapFMAP = new HashMap<Integer, Map<Integer, double[]>>();
+		
+		startTimestamp = System.currentTimeMillis();
+		writer = null == output ? null : new BufferedWriter(new FileWriter(output));
+		
+		mapItemToTWU = new HashMap<Integer, Double>();
+		results = new ArrayList<DualPattern>();
+		
+		/* the TWU and the RIU are computed on the combined value */
+		int maxItem = AlgoTHUFI.getDenseMaxItem(items);
+		double[] itemRIUs = null;
+		boolean[] isSeen = null;
+		List<Integer> seenItems = null;
+		if (maxItem >= 0) // sum in the tables and fill the maps in the order of the first occurrences
+		{
+			itemTWUs = new double[maxItem + 1];
+			itemRIUs = new double[maxItem + 1];
+			isSeen = new boolean[maxItem + 1];
+			seenItems = new ArrayList<Integer>();
+		}
+		for (int t = 0; t < items.length; ++t)
+		{
+			double transactionUtility = 0;
+			for (int i = 0; i < items[t].length; ++i)
+				transactionUtility += alpha * threats[t][i] + beta * frequencies[t][i];
+			for (int i = 0; i < items[t].length; ++i)
+			{
+				double util = alpha * threats[t][i] + beta * frequencies[t][i];
+				if (itemTWUs != null)
+				{
+					int item = items[t][i];
+					if (!isSeen[item])
+					{
+						isSeen[item] = true;
+						seenItems.add(item);
+						itemTWUs[item] = transactionUtility;
+						itemRIUs[item] = util;
+					}
+					else
+					{
+						itemTWUs[item] += transactionUtility;
+						itemRIUs[item] += util;
+					}
+					continue;
+				}
+				
+				Integer item = items[t][i];
+				Double twu = mapItemToTWU.get(item);
+				twu = (twu == null) ? transactionUtility : twu + transactionUtility;
+				mapItemToTWU.put(item, twu);
+				
+				Double real = RIU.get(item);
+				real = (real == null) ? util : util + real;
+				RIU.put(item, real);
+			}
+		}
+		if (itemTWUs != null)
+			for (Integer item : seenItems)
+			{
+				mapItemToTWU.put(item, itemTWUs[item]);
+				RIU.put(item, itemRIUs[item]);
+			}
+		
+		// Raising threshold by real item utility
+		raisingThresholdRIU(RIU, topkstatic);
+		riuRaiseValue = minTopKValue;
+		
+		List<DualUtilityList> listOfUtilityLists = new ArrayList<DualUtilityList>();
+		Map<Integer, DualUtilityList> mapItemToUtilityList = new HashMap<Integer, DualUtilityList>();
+		
+		for (Integer item : mapItemToTWU.keySet())
+			if (reachesThreshold(mapItemToTWU.get(item)))
+			{
+				DualUtilityList uList = new DualUtilityList(item);
+				mapItemToUtilityList.put(item, uList);
+				listOfUtilityLists.add(uList);
+			}
+		
+		Collections.sort(listOfUtilityLists, new UtilComparator());
+		if (itemTWUs != null)
+		{
+			itemPositions = new int[itemTWUs.length];
+			Arrays.fill(itemPositions, -1);
+			for (int i = 0; i < listOfUtilityLists.size(); ++i)
+				itemPositions[listOfUtilityLists.get(i).item] = i;
+			if (EUCS_PRUNE && listOfUtilityLists.size() <= AlgoTHUFI.maxEucsItems)
+				eucsItems = new double[listOfUtilityLists.size()][][];
+		}
+		
+		int tid = 0;
+		for (int t = 0; t < items.length; ++t)
+		{
+			double newTWU = 0; // NEW OPTIMIZATION
+			List<Pair> revisedTransaction = new ArrayList<Pair>();
+			for (int i = 0; i < items[t].length; ++i)
+			{
+				Pair pair = new Pair(items[t][i], threats[t][i], frequencies[t][i]);
+				if (null == itemPositions ? reachesThreshold(mapItemToTWU.get(pair.item)) : itemPositions[pair.item] >= 0)
+				{
+					revisedTransaction.add(pair);
+					newTWU += pair.utility; // NEW OPTIMIZATION
+				}
+			}
+			
+			if (0 == revisedTransaction.size())
+				continue;
+			Collections.sort(revisedTransaction, new PairComparator());
+			
+			double remainingUtility = 0;
+			for (int i = revisedTransaction.size() - 1; i >= 0; --i)
+			{
+				Pair pair = revisedTransaction.get(i);
+				DualUtilityList utilityListOfItem = null == itemPositions ? mapItemToUtilityList.get(pair.item) : listOfUtilityLists.get(itemPositions[pair.item]);
+				utilityListOfItem.addElement(new DualElement(tid, pair.threat, pair.fre, remainingUtility), alpha, beta);
+				if (EUCS_PRUNE)
+					updateEUCSprune(i, pair, revisedTransaction, newTWU);
+				remainingUtility += pair.utility;
+			}
+			
+			++tid; // increase tid number for next transaction
+		}
+		itemTWUs = null;
+		itemPositions = null;
+		eucsItems = null;
+		
+		if (EUCS_PRUNE)
+		{
+			/* call function to raise threshold */
+			raisingThresholdCUDOptimize(topkstatic);
+			cudRaiseValue = minTopKValue;
+		}
+		RIU.clear();
+		mapItemToUtilityList = null;
+		
+		startTimestampPha2 = System.currentTimeMillis();
+		checkMemory();
+		dualThufi(itemsetBuffer, 0, null, listOfUtilityLists);
+		checkMemory();
+		
+		writeResultTofile();
+		if (writer != null)
+			writer.close();
+		
+		endTimestamp = System.currentTimeMillis();
+		kPatterns.clear();
+		mapFMAP = null;
+	}
+	
+	/**
+	 * update EUCS prune with the TWU and the exact combined value of each pair of items
+	 *
+	 * @param i
+	 * @param pair
+	 * @param revisedTransaction
+	 * @param newTWU
+	 */
+	public void updateEUCSprune(int i, Pair pair, List<Pair> revisedTransaction, double newTWU)
+	{
+		Map<Integer, double[]> mapFMAPItem = mapFMAP.get(pair.item);
+		if (null == mapFMAPItem)
+		{
+			mapFMAPItem = new HashMap<Integer, double[]>();
+			mapFMAP.put(pair.item, mapFMAPItem);
+		}
+		double[][] eucsRow = null;
+		if (eucsItems != null)
+		{
+			eucsRow = eucsItems[itemPositions[pair.item]];
+			if (null == eucsRow)
+				eucsRow = eucsItems[itemPositions[pair.item]] = new double[eucsItems.length][];
+		}
+		for (int j = i + 1; j < revisedTransaction.size(); ++j)
+		{
+			Pair pairAfter = revisedTransaction.get(j);
+			if (pair.item == pairAfter.item)
+				continue; // kosarak dataset has duplicate items
+			double[] twuItem = null == eucsRow ? mapFMAPItem.get(pairAfter.item) : eucsRow[itemPositions[pairAfter.item]];
+			if (null == twuItem)
+			{
+				twuItem = new double[2];
+				mapFMAPItem.put(pairAfter.item, twuItem);
+				if (eucsRow != null)
+					eucsRow[itemPositions[pairAfter.item]] = twuItem;
+			}
+			twuItem[0] += newTWU;
+			twuItem[1] += pair.utility + pairAfter.utility;
+		}
+	}
+	
+	/* Whether a value can reach the threshold: the threshold may be the value of an itemset raised by RIU or CUD (summed per item or per pair of items), 
+	 * which the utility lists sum in another order, so a value equal to the threshold within the rounding error is kept and kPatterns breaks the ties */
+	private boolean reachesThreshold(double value)
+	{
+		return value >= getThresholdFloor();
+	}
+	private double getThresholdFloor() // the smallest value reaching the threshold
+	{
+		return minTopKValue - Math.abs(minTopKValue) * thresholdSlack;
+	}
+	
+	private int compareItems(int item1, int item2)
+	{
+		int compare = null == itemTWUs ? Double.compare(mapItemToTWU.get(item1), mapItemToTWU.get(item2)) : Double.compare(itemTWUs[item1], itemTWUs[item2]);
+		return (compare == 0) ? item1 - item2 : compare;
+	}
+	
+	/**
+	 * The dual-objective THUFI algorithm
+	 *
+	 * @param prefix
+	 * @param prefixLength
+	 * @param pUL
+	 * @param ULs
+	 * @throws IOException
+	 */
+	private void dualThufi(int[] prefix, int prefixLength, DualUtilityList pUL, List<DualUtilityList> ULs) throws IOException
+	{
+		for (int i = ULs.size() - 1; i >= 0; --i)
+			if (reachesThreshold(ULs.get(i).getIUtils()))
+				save(prefix, prefixLength, ULs.get(i));
+		
+		for (int i = ULs.size() - 2; i >= 0; --i)
+		{
+			/* last item is a single item, and hence no extension */
+			checkMemory();
+			DualUtilityList X = ULs.get(i);
+			if (reachesThreshold(X.sumIutils + X.sumRutils) && X.sumIutils > 0)
+			{
+				Map<Integer, double[]> mapTWUF = EUCS_PRUNE ? mapFMAP.get(X.item) : null;
+				if (EUCS_PRUNE && null == mapTWUF)
+					continue;
+				
+				List<DualUtilityList> exULs = new ArrayList<DualUtilityList>();
+				for (int j = i + 1; j < ULs.size(); ++j)
+				{
+					DualUtilityList Y = ULs.get(j);
+					if (EUCS_PRUNE)
+					{
+						double[] twuF = mapTWUF.get(Y.item);
+						if (null == twuF || !reachesThreshold(twuF[0])) // no superset of {X.item, Y.item} can reach the threshold
+							continue;
+					}
+					++candidateCount;
+					
+					DualUtilityList exul = construct(pUL, X, Y);
+					if (exul != null)
+						exULs.add(exul);
+				}
+				
+				prefix[prefixLength] = X.item;
+				dualThufi(prefix, prefixLength + 1, X, exULs);
+			}
+		}
+	}
+	
+	/**
+	 * construct the utility list of pxy where the threats and the frequencies are merged separately
+	 *
+	 * @param P
+	 * @param px
+	 * @param py
+	 * @return null if the combined upper bound of px is below the threshold
+	 */
+	private DualUtilityList construct(DualUtilityList P, DualUtilityList px, DualUtilityList py)
+	{
+		DualUtilityList pxyUL = new DualUtilityList(py.item);
+		double totUtil = px.sumIutils + px.sumRutils, thresholdFloor = getThresholdFloor(); // the threshold is not raised while constructing
+		int ei = 0, ej = 0, Pi = -1;
+		
+		DualElement ex = null, ey = null, e = null;
+		while (ei < px.elements.size() && ej < py.elements.size())
+		{
+			if (px.elements.get(ei).tid > py.elements.get(ej).tid)
+			{
+				++ej;
+				continue;
+			}
+			
+			if (px.elements.get(ei).tid < py.elements.get(ej).tid)
+			{
+				/* px present, py not present */
+				ex = px.elements.get(ei);
+				totUtil = totUtil - (alpha * ex.ithreat + beta * ex.ifre) - ex.rutils;
+				if (totUtil < thresholdFloor)
+					return null;
+				++ei;
+				++Pi;
+				continue;
+			}
+			
+			ex = px.elements.get(ei);
+			ey = py.elements.get(ej);
+			
+			if (null == P)
+				pxyUL.addElement(new DualElement(ex.tid, ex.ithreat + ey.ithreat, ex.ifre + ey.ifre, ey.rutils), alpha, beta);
+			else
+			{
+				while (Pi < P.elements.size() && P.elements.get(++Pi).tid < ex.tid) ;
+				e = P.elements.get(Pi);
+				pxyUL.addElement(new DualElement(ex.tid, ex.ithreat + ey.ithreat - e.ithreat, ex.ifre + ey.ifre - e.ifre, ey.rutils), alpha, beta);
+			}
+			
+			++ei;
+			++ej;
+		}
+		
+		while (ei < px.elements.size())
+		{
+			ex = px.elements.get(ei);
+			totUtil = totUtil - (alpha * ex.ithreat + beta * ex.ifre) - ex.rutils;
+			if (totUtil < thresholdFloor)
+				return null;
+			++ei;
+		}
+		
+		return pxyUL;
+	}
+	
+	/**
+	 * Write result to file
+	 *
+	 * @throws IOException
+	 */
+	public void writeResultTofile() throws IOException
+	{
+		if (kPatterns.size() == 0)
+			return;
+		results = new ArrayList<DualPattern>(kPatterns);
+		huiCount = results.size();
+		Collections.sort(results, Collections.reverseOrder());
+		if (null == writer)
+			return;
+		
+		for (DualPattern pattern : results)
+		{
+			StringBuilder buffer = new StringBuilder();
+			buffer.append(pattern.prefix);
+			buffer.append(" #VALUE: ");
+			buffer.append(pattern.value);
+			buffer.append(" #THREAT: ");
+			buffer.append(pattern.threat);
+			buffer.append(" #FRE: ");
+			buffer.append(pattern.fre);
+			writer.write(buffer.toString());
+			writer.newLine();
+		}
+		
+		writer.close();
+		writer = null;
+	}
+	
+	/**
+	 * Get the itemsets found by the last run
+	 *
+	 * @return the itemsets sorted in descending order of their values
+	 */
+	public int[][] getResultItemsets()
+	{
+		int[][] itemsets = new int[results.size()][];
+		for (int i = 0; i < itemsets.length; ++i)
+			itemsets[i] = results.get(i).itemset.clone();
+		return itemsets;
+	}
+	
+	/**
+	 * Get the combined values (alpha * threat + beta * frequency) of the itemsets found by the last run
+	 *
+	 * @return the values in the same order as getResultItemsets()
+	 */
+	public double[] getResultValues()
+	{
+		double[] values = new double[results.size()];
+		for (int i = 0; i < values.length; ++i)
+			values[i] = results.get(i).value;
+		return values;
+	}
+	
+	/**
+	 * Get the threats of the itemsets found by the last run
+	 *
+	 * @return the threats in the same order as getResultItemsets()
+	 */
+	public double[] getResultThreats()
+	{
+		double[] threats = new double[results.size()];
+		for (int i = 0; i < threats.length; ++i)
+			threats[i] = results.get(i).threat;
+		return threats;
+	}
+	
+	/**
+	 * Get the frequencies of the itemsets found by the last run
+	 *
+	 * @return the frequencies in the same order as getResultItemsets()
+	 */
+	public double[] getResultFrequencies()
+	{
+		double[] frequencies = new double[results.size()];
+		for (int i = 0; i < frequencies.length; ++i)
+			frequencies[i] = results.get(i).fre;
+		return frequencies;
+	}
+	
+	/**
+	 * Get the final minimum top-k value
+	 *
+	 * @return
+	 */
+	public double getMinTopKValue()
+	{
+		return minTopKValue;
+	}
+	
+	public void raisingThresholdRIU(Map<Integer, Double> rIU, int k)
+	{
+		List<Double> list = new ArrayList<Double>(rIU.values());
+		Collections.sort(list, Collections.reverseOrder());
+		if ((list.size() >= k) && (k > 0))
+			minTopKValue = list.get(k - 1);
+	}
+	
+	public void raisingThresholdCUDOptimize(int k)
+	{
+		PriorityQueue<Double> ktopls = new PriorityQueue<Double>();
+		for (Entry<Integer, Map<Integer, double[]>> entry : mapFMAP.entrySet())
+			for (Entry<Integer, double[]> entry2 : entry.getValue().entrySet())
+			{
+				double value = entry2.getValue()[1]; // the exact combined value of the pair
+				if (reachesThreshold(value))
+					if (ktopls.size() < k)
+						ktopls.add(value);
+					else if (value > ktopls.peek())
+					{
+						ktopls.add(value);
+						do
+						{
+							ktopls.poll();
+						} while (ktopls.size() > k);
+					}
+			}
+		if ((ktopls.size() > k - 1) && (ktopls.peek() > minTopKValue))
+			minTopKValue = ktopls.peek();
+		ktopls.clear();
+	}
+	
+	/**
+	 * Save function
+	 *
+	 * @param prefix
+	 * @param length
+	 * @param X
+	 */
+	private void save(int[] prefix, int length, DualUtilityList X)
+	{
+		kPatterns.add(new DualPattern(prefix, length, X));
+		if (kPatterns.size() > topkstatic)
+		{
+			do
+			{
+				kPatterns.poll();
+			} while (kPatterns.size() > topkstatic);
+			minTopKValue = kPatterns.peek().value;
+		}
+	}
+	
+	/**
+	 * Check memory
+	 */
+	private void checkMemory()
+	{
+		double currentMemory = (Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory()) / 1024d / 1024d;
+		if (currentMemory > maxMemory)
+			maxMemory = currentMemory;
+	}
+	
+	public void printStats() throws IOException
+	{
+		java.text.DecimalFormat df = new java.text.DecimalFormat("#.00");
+		System.out.println("=====  DUAL-OBJECTIVE THUFI ALGORITHM - STATS  =====");
+		System.out.println("\talpha: " + this.alpha);
+		System.out.println("\tbeta: " + this.beta);
+		System.out.println("\tTotal time: " + (endTimestamp - startTimestamp) / 1000.0 + " s");
+		System.out.println("\tMax memory: " + df.format(maxMemory) + " MB");
+		System.out.println("\tHUIs count: " + huiCount);
+		System.out.println("\tCandidates: " + candidateCount);
+		System.out.println("\tRaised by RIU: " + riuRaiseValue + (EUCS_PRUNE ? "\t\tRaised by CUD: " + cudRaiseValue : ""));
+		System.out.println("\tFinal minimum value: " + minTopKValue);
+		if (inputFile != null)
+		{
+			File f = new File(inputFile);
+			String tmp = f.getName();
+			tmp = tmp.lastIndexOf('.') > 0 ? tmp.substring(0, tmp.lastIndexOf('.')) : tmp;
+			System.out.println("\tDataset: " + tmp);
+		}
+		else
+			System.out.println("\tDataset: (memory)");
+		String timeStamp = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(Calendar.getInstance().getTime());
+		System.out.println("\tEnd time " + timeStamp);
+		System.out.println("====================================================");
+	}
+}
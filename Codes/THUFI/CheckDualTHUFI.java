@@ -0,0 +1,151 @@
+package thufi;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Random;
+
+
+/**
+ * CheckDualTHUFI (compare the top-k values of AlgoDualTHUFI with an exhaustive search on random databases)
+ * @author Yuer Yang, Department of Computer Science, The University of Hong Kong
+ * seeds: the number of random databases, each of at most eight items so that all the itemsets can be enumerated
+ * modes: runAlgorithm() without and with the EUCS (raising the threshold by CUD and pruning the pairs by their TWU),
+ * 		on the items as they are (indexed in arrays while the utility lists are built) or shifted to sparse IDs (looked up in the maps, see AlgoTHUFI.getDenseMaxItem())
+ * The values of each mode should match the exhaustive ones within the rounding error, where the itemsets of no transaction (valued 0) are ignored.
+ */
+public class CheckDualTHUFI
+{
+	public static final int EXIT_SUCCESS = 0, EXIT_FAILURE = 1;
+	public static final int topKList[] = { 1, 3, 5, 10, 25 }, sparseShift = 1 << 24;
+	public static final double alphaList[] = { 1, 0.5 }, tolerance = 1e-9;
+	public static final String modes[] = { "runAlgorithm", "runAlgorithm(eucsPrune)", "runAlgorithm(sparseIds)", "runAlgorithm(eucsPrune, sparseIds)" };
+	public static void main(String[] args)
+	{
+		int seeds = args.length > 0 ? Integer.parseInt(args[0]) : 200, runCount = 0, failedCount = 0;
+		PrintStream console = System.out;
+		System.setOut(new PrintStream(new OutputStream() { public void write(int b) {} })); // mute the statistics of the engine
+
+		for (int seed = 0; seed < seeds; ++seed)
+		{
+			Random random = new Random(seed);
+			int transactionCount = 10 + random.nextInt(60), itemCount = 3 + random.nextInt(6);
+			double density = 0.2 + 0.7 * random.nextDouble();
+			int[][] items = new int[transactionCount][];
+			double[][] threats = new double[transactionCount][], frequencies = new double[transactionCount][];
+			for (int tid = 0; tid < transactionCount; ++tid)
+			{
+				int[] transaction = new int[itemCount];
+				int size = 0;
+				for (int item = 0; item < itemCount; ++item)
+					if (random.nextDouble() < density)
+						transaction[size++] = 10 + 7 * item;
+				if (0 == size)
+					transaction[size++] = 10 + 7 * random.nextInt(itemCount);
+				items[tid] = Arrays.copyOf(transaction, size);
+				threats[tid] = new double[size];
+				frequencies[tid] = new double[size];
+				for (int i = 0; i < size; ++i)
+				{
+					threats[tid][i] = Math.round(random.nextDouble() * 1000) / 100.0;
+					frequencies[tid][i] = Math.round(random.nextDouble() * 50) / 10.0;
+				}
+			}
+
+			for (int topK : topKList)
+				for (double alpha : alphaList)
+				{
+					double[] expected = enumerate(items, threats, frequencies, topK, alpha, 1 - alpha);
+					for (String mode : modes)
+					{
+						++runCount;
+						double[] values = null;
+						String errorInfo = null;
+						try
+						{
+							values = run(mode, items, threats, frequencies, topK, alpha, 1 - alpha);
+						}
+						catch (Throwable e)
+						{
+							errorInfo = null == e.getMessage() ? e.toString() : e.getMessage();
+						}
+						if (errorInfo != null || !matches(expected, values, tolerance))
+						{
+							++failedCount;
+							console.printf("seed = %d\t\ttopK = %d\t\talpha = %s\t\tmode = %s\n\texpected: %s\n\tactual: %s\n", seed, topK, alpha, mode,
+								Arrays.toString(expected), null == errorInfo ? Arrays.toString(values) : errorInfo);
+						}
+					}
+				}
+		}
+
+		console.printf("(Failed, Run) = (%d, %d)\n", failedCount, runCount);
+		System.exit(0 == failedCount ? EXIT_SUCCESS : EXIT_FAILURE);
+	}
+
+	/* Run a mode (the options in the brackets) and return its positive values (Down) */
+	private static double[] run(String mode, int[][] items, double[][] threats, double[][] frequencies, int topK, double alpha, double beta) throws Exception
+	{
+		String option = mode.indexOf('(') < 0 ? "" : mode.substring(mode.indexOf('(') + 1, mode.indexOf(')'));
+		boolean eucsPrune = false;
+		int[][] targetItems = items;
+		for (String subOption : option.split(", "))
+			if (subOption.equals("eucsPrune"))
+				eucsPrune = true;
+			else if (subOption.equals("sparseIds"))
+			{
+				targetItems = new int[items.length][];
+				for (int tid = 0; tid < items.length; ++tid)
+					targetItems[tid] = Arrays.stream(items[tid]).map(item -> item + sparseShift).toArray();
+			}
+		AlgoDualTHUFI thufi = new AlgoDualTHUFI(topK, alpha, beta);
+		thufi.runAlgorithm(targetItems, threats, frequencies, null, eucsPrune);
+		return sortPositives(thufi.getResultValues());
+	}
+
+	/* The top-k values of all the itemsets (Down) by enumerating the subsets of the items */
+	private static double[] enumerate(int[][] items, double[][] threats, double[][] frequencies, int topK, double alpha, double beta)
+	{
+		int[] itemIds = Arrays.stream(items).flatMapToInt(Arrays::stream).distinct().sorted().toArray();
+		double[] values = new double[1 << itemIds.length];
+		for (int tid = 0; tid < items.length; ++tid)
+		{
+			int mask = 0;
+			double[] utilities = new double[itemIds.length];
+			for (int i = 0; i < items[tid].length; ++i)
+			{
+				int index = Arrays.binarySearch(itemIds, items[tid][i]);
+				mask |= 1 << index;
+				utilities[index] = alpha * threats[tid][i] + beta * frequencies[tid][i];
+			}
+			for (int subset = mask; subset > 0; subset = (subset - 1) & mask) // every itemset contained in the transaction
+				for (int index = 0; index < itemIds.length; ++index)
+					if ((subset >> index & 1) != 0)
+						values[subset] += utilities[index];
+		}
+		double[] sortedValues = sortPositives(values);
+		return Arrays.copyOf(sortedValues, Math.min(topK, sortedValues.length));
+	}
+
+	private static double[] sortPositives(double[] values)
+	{
+		double[] positives = Arrays.stream(values).filter(value -> value > 0).sorted().toArray();
+		for (int i = 0; i < positives.length / 2; ++i)
+		{
+			double value = positives[i];
+			positives[i] = positives[positives.length - 1 - i];
+			positives[positives.length - 1 - i] = value;
+		}
+		return positives;
+	}
+
+	private static boolean matches(double[] expected, double[] values, double tolerance)
+	{
+		if (expected.length != values.length)
+			return false;
+		for (int i = 0; i < expected.length; ++i)
+			if (Math.abs(expected[i] - values[i]) > tolerance * Math.max(1, Math.abs(expected[i])))
+				return false;
+		return true;
+	}
+}
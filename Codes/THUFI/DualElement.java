@@ -0,0 +1,25 @@
+package thufi;
+
+
+class DualElement
+{
+	final int tid;
+	final double ithreat; // the threat of the itemset in the transaction
+	final double ifre; // the frequency of the itemset in the transaction
+	final double rutils; // the remaining value (alpha * threat + beta * frequency) of the items after the itemset
+	
+	public DualElement(int tid, double ithreat, double ifre, double rutils)
+	{
+		this.tid = tid;
+		this.ithreat = ithreat;
+		this.ifre = ifre;
+		this.rutils = rutils;
+	}
+	
+	public void print(int depth)
+	{
+		for (int i = 0; i < depth; ++i)
+			System.out.print("\t");
+		System.out.println("\t" + tid + " threat: " + ithreat + " fre: " + ifre + " rutils: " + rutils);
+	}
+}
@@ -0,0 +1,47 @@
+package thufi;
+
+
+public class DualPattern implements Comparable<DualPattern>
+{
+	String prefix; // prefix
+	int[] itemset; // items of the prefix followed by the last item
+	double threat; // threat value
+	double fre; // frequency value
+	double value; // alpha * threat + beta * fre
+	int sup; // support value
+	
+	public DualPattern(int[] prefix, int length, DualUtilityList X)
+	{
+		String buffer = "";
+		for (int i = 0; i < length; ++i)
+		{
+			buffer += prefix[i];
+			buffer += " ";
+		}
+		buffer += "" + X.item;
+		this.prefix = buffer;
+		this.itemset = new int[length + 1];
+		System.arraycopy(prefix, 0, this.itemset, 0, length);
+		this.itemset[length] = X.item;
+		
+		this.threat = X.getThreat();
+		this.fre = X.getFre();
+		this.value = X.getIUtils();
+		this.sup = X.elements.size();
+	}
+	
+	public String getPrefix()
+	{
+		return this.prefix;
+	}
+	
+	public int compareTo(DualPattern o)
+	{
+		if (o == this)
+			return 0;
+		int compare = Double.compare(this.value, o.value);
+		if (compare != 0)
+			return compare;
+		return this.hashCode() - o.hashCode();
+	}
+}
@@ -0,0 +1,50 @@
+package thufi;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+class DualUtilityList
+{
+	int item; // the item
+	double sumThreat = 0; // the sum of item threats
+	double sumFre = 0; // the sum of item frequencies
+	double sumIutils = 0; // the sum of item values (alpha * threat + beta * frequency)
+	double sumRutils = 0; // the sum of remaining values
+	
+	List<DualElement> elements = new ArrayList<DualElement>(); // the elements
+	
+	public DualUtilityList(int item)
+	{
+		this.item = item;
+	}
+	
+	public double getThreat()
+	{
+		return this.sumThreat;
+	}
+	
+	public double getFre()
+	{
+		return this.sumFre;
+	}
+	
+	public double getIUtils()
+	{
+		return this.sumIutils;
+	}
+	
+	public double getRUtils()
+	{
+		return this.sumRutils;
+	}
+	
+	public void addElement(DualElement element, double alpha, double beta)
+	{
+		sumThreat += element.ithreat;
+		sumFre += element.ifre;
+		sumIutils += alpha * element.ithreat + beta * element.ifre;
+		sumRutils += element.rutils;
+		elements.add(element);
+	}
+}
@@ -14,13 +14,17 @@ import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.Map;
 import java.util.PriorityQueue;
+import java.util.Set;
 
 
 /**
@@ -47,6 +51,11 @@ public class AlgoTHUI
 	
 	/* map that indicate the TWU of each item (key)*/
 	Map<Integer, Integer> mapItemToTWU;
+	/* the tables indexed by the items replacing the lookups of the maps while the utility lists are built when the item IDs are dense (null otherwise, see getDenseMaxItem()) */
+	int[] itemTWUs = null; // the TWU of each item
+	int[] itemPositions = null; // the position of each promising item in the sorted utility lists (-1 for the others)
+	ItemTHUI[][] eucsItems = null; // the entries of the EUCS by the positions of the pairs of items (the rows are allocated on demand)
+	static final int maxEucsItems = 2048; // the most promising items for which the EUCS is also indexed by the positions
 	
 	/* internal minimum utility threshold */
 	long minUtility = 0;
@@ -58,6 +67,8 @@ public class AlgoTHUI
 
 	/* Priority queue to store the top k patterns */
 	PriorityQueue<PatternTHUI> kPatterns = new PriorityQueue<PatternTHUI>();
+	/* the top k patterns of the last run sorted in descending order of utility */
+	List<PatternTHUI> results = new ArrayList<PatternTHUI>();
 	PriorityQueue<Long> leafPruneUtils = null;
 	
 	/* debug mode */
@@ -82,6 +93,71 @@ public class AlgoTHUI
 	boolean EUCS_PRUNE = false;
 	boolean LEAF_PRUNE = true;
 	
+	/* append mode: keep the state of the last run so that appended transactions can be mined incrementally */
+	boolean APPEND_MODE = false;
+	/* the fixed order of the items (the TWU order of the initial run followed by the items appended later) */
+	Map<Integer, Integer> mapItemToRank = null;
+	/* the utility lists of all the items (without TWU pruning) whose remaining utilities follow the fixed order */
+	Map<Integer, UtilityList> mapItemToFullUtilityList = null;
+	Map<Integer, Long> mapItemToRIU = null;
+	int transactionCount = 0;
+	/* the first tid of the appended transactions (only the itemsets occurring since this tid can change) */
+	int firstAppendedTid = 0;
+	/* the itemsets of the previous results which have been offered to kPatterns before mining */
+	Set<String> previousItemsets = null;
+	
+	/* off-heap mode: the utility lists built during the search are stored in an arena and freed per subtree */
+	boolean OFF_HEAP = false;
+	OffHeapArena arena = null;
+	
+	/* diffset mode: the utility lists longer than DIFFSET_DEPTH items or keeping more than DIFFSET_RATIO of the tids of their parents store the tids lost from the parents (0 and 1 for none) */
+	int DIFFSET_DEPTH = 0;
+	double DIFFSET_RATIO = 1;
+	/* the utility lists of the single items which the diffsets recover their utilities from (null when diffsets are not used) */
+	Map<Integer, UtilityList> mapItemToItemUtilityList = null;
+	int[] diffsetBuffer = null;
+	
+	/* kernel mode: the utility lists are columns of arrays (ArrayUtilityList) which construct() intersects and sums with TidKernels */
+	boolean KERNELS = false;
+	/* the ranks of the matching tids in px, py and P (null when the kernels are not used) */
+	int[] ranksX = null, ranksY = null, ranksP = null, ranksXY = null;
+	
+	/* projection mode: the search runs on projected transactions whose identical copies are merged (as in EFIM) instead of utility lists */
+	boolean PROJECTION = false;
+	/* the item of each rank (the TWU order of the utility lists) */
+	int[] rankToItem = null;
+	/* the local utilities and the sub-tree utilities of the items (indexed by rank) accumulated by computeBounds() */
+	long[] utilityBinLU = null;
+	long[] utilityBinSU = null;
+	/* whether an item (indexed by rank) is a secondary item of the current projection */
+	boolean[] isSecondary = null;
+	
+	/* budgets of the search: it stops with the best-so-far top k patterns after timeBudget milliseconds of the run or nodeBudget candidates (0 for unlimited) */
+	long timeBudget = 0;
+	long nodeBudget = 0;
+	long candidateLimit = Long.MAX_VALUE;
+	boolean budgetExceeded = false;
+	/* the largest upper bound of the utilities of the itemsets left unexplored when a budget is exceeded */
+	long unexploredUtility = 0;
+	/* the optimality gap of the last run (-1 if the search was complete) */
+	long optimalityGap = -1;
+	/* the listener notified of each pattern entering the top k during the search */
+	ResultListener resultListener = null;
+	
+	/**
+	 * Receives the best-so-far top k patterns during the search (e.g. for a run under a time budget)
+	 */
+	public interface ResultListener
+	{
+		/**
+		 * Called when a pattern enters the top k
+		 * @param itemset the items of the pattern
+		 * @param utility the utility of the pattern
+		 * @param minUtility the current internal minimum utility threshold
+		 */
+		void onResult(int[] itemset, long utility, long minUtility);
+	}
+	
 	class Pair
 	{
 		int item = 0;
@@ -116,6 +192,39 @@ public class AlgoTHUI
 			return compareItems(o1.item, o2.item);
 		}
 	}
+
+	class Transaction
+	{
+		int[] items; // the ranks of the items in ascending order
+		int[] utilities;
+		int offset = 0; // the first item of the projected transaction
+		long prefixUtility = 0; // the utility of the prefix in this transaction
+		int support = 1; // the number of the original transactions merged into this one
+		
+		Transaction(int[] items, int[] utilities, int offset, long prefixUtility, int support)
+		{
+			this.items = items;
+			this.utilities = utilities;
+			this.offset = offset;
+			this.prefixUtility = prefixUtility;
+			this.support = support;
+		}
+	}
+	
+	class TransactionComparator implements Comparator<Transaction>
+	{
+		@Override
+		public int compare(Transaction t1, Transaction t2) // by length, then by the items from the last one
+		{
+			int length1 = t1.items.length - t1.offset, length2 = t2.items.length - t2.offset;
+			if (length1 != length2)
+				return length1 - length2;
+			for (int i = t1.items.length - 1, j = t2.items.length - 1; i >= t1.offset; --i, --j)
+				if (t1.items[i] != t2.items[j])
+					return t1.items[i] - t2.items[j];
+			return 0;
+		}
+	}
 	
 	public AlgoTHUI()
 	{
@@ -134,7 +243,65 @@ public class AlgoTHUI
 	 */
 	public void runAlgorithm(String input, String output, boolean eucsPrune, int topK) throws IOException
 	{
-
+		List<int[]> items = new ArrayList<int[]>(), utilities = new ArrayList<int[]>();
+		List<Integer> transactionUtilities = new ArrayList<Integer>();
+		
+		BufferedReader myInput = null;
+		String thisLine;
+		try
+		{
+			myInput = new BufferedReader(new InputStreamReader(new FileInputStream(new File(input))));
+			while ((thisLine = myInput.readLine()) != null)
+			{
+				if (thisLine.isEmpty() == true || thisLine.charAt(0) == '#' || thisLine.charAt(0) == '%' || thisLine.charAt(0) == '@')
+					continue;
+				String split[] = thisLine.split(":");
+				String itemValues[] = split[0].split(" ");
+				String utilityValues[] = split[2].split(" ");
+				int[] transactionItems = new int[itemValues.length], transactionUtils = new int[itemValues.length];
+				for (int i = 0; i < itemValues.length; ++i)
+				{
+					transactionItems[i] = Integer.parseInt(itemValues[i]);
+					transactionUtils[i] = Integer.parseInt(utilityValues[i]);
+				}
+				items.add(transactionItems);
+				utilities.add(transactionUtils);
+				transactionUtilities.add(Integer.parseInt(split[1]));
+			}
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+		}
+		finally
+		{
+			if (myInput != null)
+				myInput.close();
+		}
+		
+		int[] tu = new int[transactionUtilities.size()];
+		for (int i = 0; i < tu.length; ++i)
+			tu[i] = transactionUtilities.get(i);
+		runAlgorithm(items.toArray(new int[0][]), utilities.toArray(new int[0][]), tu, input, output, eucsPrune, topK);
+	}
+	
+	/**
+	 * Run the algorithm on a database which is already in memory
+	 * @param items the items of each transaction
+	 * @param utilities the utility of each item of each transaction
+	 * @param transactionUtilities the utility of each transaction
+	 * @param output path to the output file (null for no output file)
+	 * @param eucsPrune  if true, the EUCS strategy will be activated
+	 * @param topK the number of patterns to be found
+	 * @throws IOException if writing error from file
+	 */
+	public void runAlgorithm(int[][] items, int[][] utilities, int[] transactionUtilities, String output, boolean eucsPrune, int topK) throws IOException
+	{
+		runAlgorithm(items, utilities, transactionUtilities, null, output, eucsPrune, topK);
+	}
+	
+	private void runAlgorithm(int[][] items, int[][] utilities, int[] transactionUtilities, String input, String output, boolean eucsPrune, int topK) throws IOException
+	{
 		System.out.println("The THUI Algorithm has started. ");
 		topkstatic = topK;
 		
@@ -154,46 +321,55 @@ public class AlgoTHUI
 		}
 		
 		startTimestamp = System.currentTimeMillis();
-		writer = new BufferedWriter(new FileWriter(output));
+		writer = null == output ? null : new BufferedWriter(new FileWriter(output));
 		
 		mapItemToTWU = new HashMap<Integer, Integer>();
+		results = new ArrayList<PatternTHUI>();
 		
-		BufferedReader myInput = null;
-		String thisLine;
-		try
+		int maxItem = getDenseMaxItem(items);
+		if (maxItem >= 0) // sum in the tables and fill the maps in the order of the first occurrences as the loop below does
 		{
-			myInput = new BufferedReader(new InputStreamReader(new FileInputStream(new File(input))));
-			while ((thisLine = myInput.readLine()) != null)
+			itemTWUs = new int[maxItem + 1];
+			long[] itemRIUs = new long[maxItem + 1];
+			boolean[] isSeen = new boolean[maxItem + 1];
+			List<Integer> seenItems = new ArrayList<Integer>();
+			for (int t = 0; t < items.length; ++t)
+				for (int i = 0; i < items[t].length; ++i)
+				{
+					int item = items[t][i];
+					if (!isSeen[item])
+					{
+						isSeen[item] = true;
+						seenItems.add(item);
+					}
+					itemTWUs[item] += transactionUtilities[t];
+					itemRIUs[item] += utilities[t][i];
+				}
+			for (Integer item : seenItems)
 			{
-				if (thisLine.isEmpty() == true || thisLine.charAt(0) == '#' || thisLine.charAt(0) == '%' || thisLine.charAt(0) == '@')
-					continue;
-				String split[] = thisLine.split(":");
-				String items[] = split[0].split(" ");
-				String utilityValues[] = split[2].split(" ");
-				int transactionUtility = Integer.parseInt(split[1]);
-				for (int i = 0; i < items.length; ++i)
+				mapItemToTWU.put(item, itemTWUs[item]);
+				RIU.put(item, itemRIUs[item]);
+			}
+		}
+		else
+			for (int t = 0; t < items.length; ++t)
+			{
+				int transactionUtility = transactionUtilities[t];
+				for (int i = 0; i < items[t].length; ++i)
 				{
-					Integer item = Integer.parseInt(items[i]);
+					Integer item = items[t][i];
 					Integer twu = mapItemToTWU.get(item);
 					twu = (twu == null) ? transactionUtility : twu + transactionUtility;
 					mapItemToTWU.put(item, twu);
-
-					int util = Integer.parseInt(utilityValues[i]);
+					
+					int util = utilities[t][i];
 					Long real = RIU.get(item);
 					real = (real == null) ? util : util + real;
 					RIU.put(item, real);
 				}
 			}
-		}
-		catch (Exception e)
-		{
-			e.printStackTrace();
-		}
-		finally
-		{
-			if (myInput != null)
-				myInput.close();
-		}
+		if (APPEND_MODE)
+			initAppendState(items, utilities, RIU);
 		
 		/* Raising threshold by real item utility */
 		raisingThresholdRIU(RIU, topkstatic);
@@ -214,63 +390,62 @@ public class AlgoTHUI
 		}
 		
 		Collections.sort(listOfUtilityLists, new UtilComparator());
+		if (itemTWUs != null)
+			initItemPositions(listOfUtilityLists, itemTWUs.length);
+		
+		/* Merge the identical revised transactions into one by summing the utilities per item (the utility lists and the EUCS and leaf bounds are all additive) */
+		Map<List<Integer>, List<Pair>> mapItemsToRevisedTransaction = new LinkedHashMap<List<Integer>, List<Pair>>();
+		for (int t = 0; t < items.length; ++t)
+		{
+			List<Pair> revisedTransaction = new ArrayList<Pair>();
+			for (int i = 0; i < items[t].length; ++i)
+			{
+				Pair pair = new Pair(items[t][i], utilities[t][i]);
+				if (null == itemPositions ? mapItemToTWU.get(pair.item) >= minUtility : itemPositions[pair.item] >= 0)
+					revisedTransaction.add(pair);
+			}
+			if (revisedTransaction.size() == 0)
+				continue;
+			Collections.sort(revisedTransaction, new PairComparator());
+			
+			List<Integer> revisedItems = new ArrayList<Integer>(revisedTransaction.size());
+			for (Pair pair : revisedTransaction)
+				revisedItems.add(pair.item);
+			List<Pair> mergedTransaction = mapItemsToRevisedTransaction.putIfAbsent(revisedItems, revisedTransaction);
+			if (mergedTransaction != null)
+				for (int i = 0; i < revisedTransaction.size(); ++i)
+					mergedTransaction.get(i).utility += revisedTransaction.get(i).utility;
+		}
 		
 		int remainingUtility = 0;
 		long newTWU = 0;
-		try
+		int tid = 0;
+		for (List<Pair> revisedTransaction : mapItemsToRevisedTransaction.values())
 		{
-			myInput = new BufferedReader(new InputStreamReader(new FileInputStream(new File(input))));
-			int tid = 0;
-			while ((thisLine = myInput.readLine()) != null) {
-				if (thisLine.isEmpty() == true || thisLine.charAt(0) == '#' || thisLine.charAt(0) == '%' || thisLine.charAt(0) == '@')
-					continue;
-				String split[] = thisLine.split(":");
-				String items[] = split[0].split(" ");
-				String utilityValues[] = split[2].split(" ");
-				remainingUtility = 0;
-				newTWU = 0; // NEW OPTIMIZATION
+			newTWU = 0; // NEW OPTIMIZATION
+			for (Pair pair : revisedTransaction)
+				newTWU += pair.utility;
 
-				List<Pair> revisedTransaction = new ArrayList<Pair>();
-				for (int i = 0; i < items.length; ++i)
-				{
-					Pair pair = new Pair(Integer.parseInt(items[i]), Integer.parseInt(utilityValues[i]));
-					if (mapItemToTWU.get(pair.item) >= minUtility)
-					{
-						revisedTransaction.add(pair);
-						remainingUtility += pair.utility;
-						newTWU += pair.utility; // NEW OPTIMIZATION
-					}
-				}
-				if (revisedTransaction.size() == 0)
-					continue;
-				Collections.sort(revisedTransaction, new PairComparator());
+			remainingUtility = 0;
+			for (int i = revisedTransaction.size() - 1; i >= 0; --i)
+			{
+				Pair pair = revisedTransaction.get(i);
+				UtilityList utilityListOfItem = null == itemPositions ? mapItemToUtilityList.get(pair.item) : listOfUtilityLists.get(itemPositions[pair.item]);
+				Element element = new Element(tid, pair.utility, remainingUtility);
+				utilityListOfItem.addElement(element);
 
-				remainingUtility = 0;
-				for (int i = revisedTransaction.size() - 1; i >= 0; --i)
-				{
-					Pair pair = revisedTransaction.get(i);
-					UtilityList utilityListOfItem = mapItemToUtilityList.get(pair.item);
-					Element element = new Element(tid, pair.utility, remainingUtility);
-					utilityListOfItem.addElement(element);
-
-					if (EUCS_PRUNE)
-						updateEUCSprune(i, pair, revisedTransaction, newTWU);
-					if (LEAF_PRUNE)
-						updateLeafprune(i, pair, revisedTransaction, listOfUtilityLists);
-					remainingUtility += pair.utility;
-				}
-				++tid; // increase tid number for next transaction
+				if (EUCS_PRUNE)
+					updateEUCSprune(i, pair, revisedTransaction, newTWU);
+				if (LEAF_PRUNE)
+					updateLeafprune(i, pair, revisedTransaction, listOfUtilityLists);
+				remainingUtility += pair.utility;
 			}
+			++tid; // increase tid number for next transaction
 		}
-		catch (Exception e)
-		{
-			e.printStackTrace();
-		}
-		finally
-		{
-			if (myInput != null)
-				myInput.close();
-		}
+		mapItemsToRevisedTransaction = null;
+		itemTWUs = null; // the maps are updated afterwards in the append mode
+		itemPositions = null;
+		eucsItems = null;
 
 		if (EUCS_PRUNE)
 		{
@@ -292,17 +467,351 @@ public class AlgoTHUI
 		mapItemToUtilityList = null;
 
 		checkMemory();
-		thui(itemsetBuffer, 0, null, listOfUtilityLists);
+		budgetExceeded = false;
+		unexploredUtility = 0;
+		candidateLimit = nodeBudget > 0 ? candidateCount + nodeBudget : Long.MAX_VALUE;
+		if (PROJECTION)
+			efim(itemsetBuffer, items, utilities, listOfUtilityLists);
+		else
+		{
+			openArena();
+			if (null == arena && KERNELS)
+			{
+				for (int i = 0; i < listOfUtilityLists.size(); ++i)
+					listOfUtilityLists.set(i, ArrayUtilityList.copyOf(listOfUtilityLists.get(i)));
+				ranksX = new int[tid];
+				ranksY = new int[tid];
+				ranksP = new int[tid];
+				ranksXY = new int[tid];
+			}
+			if (null == arena && (DIFFSET_DEPTH > 0 || DIFFSET_RATIO < 1))
+			{
+				mapItemToItemUtilityList = new HashMap<Integer, UtilityList>();
+				for (UtilityList uList : listOfUtilityLists)
+					mapItemToItemUtilityList.put(uList.item, uList);
+				diffsetBuffer = new int[tid];
+			}
+			thui(itemsetBuffer, 0, null, listOfUtilityLists);
+			mapItemToItemUtilityList = null;
+			diffsetBuffer = null;
+			ranksX = ranksY = ranksP = ranksXY = null;
+			closeArena();
+		}
+		optimalityGap = budgetExceeded ? Math.max(unexploredUtility - (kPatterns.size() >= topkstatic ? kPatterns.peek().utility : 0), 0) : -1;
 		checkMemory();
 
 		writeResultTofile();
-		writer.close();
+		if (writer != null)
+			writer.close();
 
 		endTimestamp = System.currentTimeMillis();
 		kPatterns.clear();
 
 	}
 
+	/**
+	 * Enable or disable the append mode before the initial run
+	 * @param appendMode if true, the next run keeps its state for appendTransactions()
+	 */
+	public void setAppendMode(boolean appendMode)
+	{
+		this.APPEND_MODE = appendMode;
+		if (!appendMode)
+		{
+			mapItemToRank = null;
+			mapItemToFullUtilityList = null;
+			mapItemToRIU = null;
+		}
+	}
+	
+	/**
+	 * Enable or disable the off-heap mode
+	 * @param offHeap if true, the utility lists built during the search are stored outside the heap and freed per subtree
+	 */
+	public void setOffHeap(boolean offHeap)
+	{
+		this.OFF_HEAP = offHeap;
+	}
+	
+	/**
+	 * Enable or disable the projection mode
+	 * @param projection if true, the search runs on projected transactions (merging the identical ones) with the sub-tree and local utility bounds instead of utility lists
+	 */
+	public void setProjection(boolean projection)
+	{
+		this.PROJECTION = projection;
+	}
+	
+	/**
+	 * Enable or disable the kernel mode (ignored in the off-heap and projection modes)
+	 * @param kernels if true, the utility lists built during the search are columns of arrays intersected and summed by TidKernels
+	 */
+	public void setKernels(boolean kernels)
+	{
+		this.KERNELS = kernels;
+	}
+	
+	/**
+	 * Set the diffset mode (ignored in the off-heap and projection modes)
+	 * @param diffsetDepth the utility lists longer than this number of items store diffsets (0 for none)
+	 * @param diffsetRatio the utility lists keeping more than this ratio of the tids of their parents store diffsets (1 for none)
+	 */
+	public void setDiffsets(int diffsetDepth, double diffsetRatio)
+	{
+		this.DIFFSET_DEPTH = Math.max(diffsetDepth, 0);
+		this.DIFFSET_RATIO = Math.min(Math.max(diffsetRatio, 0), 1);
+	}
+	
+	/**
+	 * Set the time budget of a run
+	 * @param timeBudget the milliseconds after which the search stops with the best-so-far top k patterns (0 for unlimited)
+	 */
+	public void setTimeBudget(long timeBudget)
+	{
+		this.timeBudget = Math.max(timeBudget, 0);
+	}
+	
+	/**
+	 * Set the node budget of a run
+	 * @param nodeBudget the candidates after which the search stops with the best-so-far top k patterns (0 for unlimited)
+	 */
+	public void setNodeBudget(long nodeBudget)
+	{
+		this.nodeBudget = Math.max(nodeBudget, 0);
+	}
+	
+	/**
+	 * Set the listener notified of each pattern entering the top k during the search
+	 * @param resultListener the listener (null for none)
+	 */
+	public void setResultListener(ResultListener resultListener)
+	{
+		this.resultListener = resultListener;
+	}
+	
+	private boolean isOverBudget()
+	{
+		if (!budgetExceeded)
+			budgetExceeded = candidateCount >= candidateLimit || (timeBudget > 0 && System.currentTimeMillis() - startTimestamp >= timeBudget);
+		return budgetExceeded;
+	}
+	
+	private void openArena()
+	{
+		arena = OFF_HEAP ? new OffHeapArena() : null;
+	}
+	
+	private void closeArena()
+	{
+		if (arena != null)
+			arena.free();
+		arena = null;
+	}
+	
+	/**
+	 * Append transactions after the initial run (in the append mode) and update the top k patterns
+	 * Only the itemsets occurring in the appended transactions are mined again since the utilities of the others remain unchanged, 
+	 * and the previous top k patterns (with their utilities updated) provide a warm lower bound of the threshold. 
+	 * @param items the items of each appended transaction
+	 * @param utilities the utility of each item of each appended transaction
+	 * @param transactionUtilities the utility of each appended transaction
+	 * @param output path to the output file (null for no output file)
+	 * @return false if the initial run was not performed in the append mode
+	 * @throws IOException if writing error from file
+	 */
+	public boolean appendTransactions(int[][] items, int[][] utilities, int[] transactionUtilities, String output) throws IOException
+	{
+		if (!APPEND_MODE || null == mapItemToFullUtilityList)
+		{
+			System.out.println("The append mode should be enabled before the initial run. ");
+			return false;
+		}
+		System.out.println("The THUI Algorithm has started (append " + items.length + " transactions). ");
+		maxMemory = 0;
+		huiCount = 0;
+		candidateCount = 0;
+		startTimestamp = System.currentTimeMillis();
+		writer = null == output ? null : new BufferedWriter(new FileWriter(output));
+		
+		for (int t = 0; t < items.length; ++t)
+			for (int i = 0; i < items[t].length; ++i)
+			{
+				Integer item = items[t][i];
+				Integer twu = mapItemToTWU.get(item);
+				mapItemToTWU.put(item, (twu == null) ? transactionUtilities[t] : twu + transactionUtilities[t]);
+				Long real = mapItemToRIU.get(item);
+				mapItemToRIU.put(item, (real == null) ? utilities[t][i] : utilities[t][i] + real);
+			}
+		firstAppendedTid = transactionCount;
+		appendToFullUtilityLists(items, utilities);
+		
+		/* Raising threshold by real item utility and the previous top k patterns */
+		minUtility = 0;
+		raisingThresholdRIU(mapItemToRIU, topkstatic);
+		riuRaiseValue = minUtility;
+		kPatterns.clear();
+		previousItemsets = new HashSet<String>();
+		for (PatternTHUI pattern : results)
+		{
+			for (int t = 0; t < items.length; ++t)
+				pattern.utility += getUtilityInTransaction(pattern.itemset, items[t], utilities[t]);
+			kPatterns.add(pattern);
+			previousItemsets.add(getItemsetKey(pattern.itemset, pattern.itemset.length));
+		}
+		if (kPatterns.size() >= topkstatic && kPatterns.peek().utility > minUtility)
+			minUtility = kPatterns.peek().utility;
+		leafRaiseValue = minUtility;
+		startTimestampPha2 = System.currentTimeMillis();
+		
+		List<UtilityList> listOfUtilityLists = new ArrayList<UtilityList>();
+		for (UtilityList uList : mapItemToFullUtilityList.values())
+			if (mapItemToTWU.get(uList.item) >= minUtility && isAppended(uList))
+				listOfUtilityLists.add(uList);
+		Collections.sort(listOfUtilityLists, new Comparator<UtilityList>()
+		{
+			@Override
+			public int compare(UtilityList o1, UtilityList o2)
+			{
+				return mapItemToRank.get(o1.item) - mapItemToRank.get(o2.item);
+			}
+		});
+		
+		checkMemory();
+		openArena();
+		thuiAppend(itemsetBuffer, 0, null, listOfUtilityLists);
+		closeArena();
+		checkMemory();
+		previousItemsets = null;
+		
+		writeResultTofile();
+		if (writer != null)
+			writer.close();
+		
+		endTimestamp = System.currentTimeMillis();
+		kPatterns.clear();
+		return true;
+	}
+	
+	private void initAppendState(int[][] items, int[][] utilities, Map<Integer, Long> RIU)
+	{
+		List<Integer> sortedItems = new ArrayList<Integer>(mapItemToTWU.keySet());
+		Collections.sort(sortedItems, new Comparator<Integer>()
+		{
+			@Override
+			public int compare(Integer o1, Integer o2)
+			{
+				return compareItems(o1, o2);
+			}
+		});
+		mapItemToRank = new HashMap<Integer, Integer>();
+		for (Integer item : sortedItems)
+			mapItemToRank.put(item, mapItemToRank.size());
+		mapItemToRIU = new HashMap<Integer, Long>(RIU);
+		mapItemToFullUtilityList = new HashMap<Integer, UtilityList>();
+		transactionCount = 0;
+		appendToFullUtilityLists(items, utilities);
+	}
+	
+	private void appendToFullUtilityLists(int[][] items, int[][] utilities)
+	{
+		for (int t = 0; t < items.length; ++t)
+		{
+			List<Pair> revisedTransaction = new ArrayList<Pair>();
+			for (int i = 0; i < items[t].length; ++i)
+			{
+				if (!mapItemToRank.containsKey(items[t][i])) // a new item is placed after all the known items
+					mapItemToRank.put(items[t][i], mapItemToRank.size());
+				revisedTransaction.add(new Pair(items[t][i], utilities[t][i]));
+			}
+			Collections.sort(revisedTransaction, new Comparator<Pair>()
+			{
+				@Override
+				public int compare(Pair o1, Pair o2)
+				{
+					return mapItemToRank.get(o1.item) - mapItemToRank.get(o2.item);
+				}
+			});
+			
+			int remainingUtility = 0;
+			for (int i = revisedTransaction.size() - 1; i >= 0; --i)
+			{
+				Pair pair = revisedTransaction.get(i);
+				int utility = pair.utility;
+				while (i > 0 && revisedTransaction.get(i - 1).item == pair.item) // kosarak dataset has duplicate items
+					utility += revisedTransaction.get(--i).utility;
+				UtilityList uList = mapItemToFullUtilityList.get(pair.item);
+				if (null == uList)
+				{
+					uList = new UtilityList(pair.item);
+					mapItemToFullUtilityList.put(pair.item, uList);
+				}
+				uList.addElement(new Element(transactionCount, utility, remainingUtility));
+				remainingUtility += utility;
+			}
+			++transactionCount;
+		}
+	}
+	
+	private boolean isAppended(UtilityList uList) // whether the itemset occurs in any appended transaction
+	{
+		return uList.getSupport() > 0 && uList.getTid(uList.getSupport() - 1) >= firstAppendedTid;
+	}
+	
+	private static long getUtilityInTransaction(int[] itemset, int[] items, int[] utilities)
+	{
+		long utility = 0;
+		for (int item : itemset)
+		{
+			boolean found = false;
+			for (int i = 0; i < items.length; ++i)
+				if (items[i] == item)
+				{
+					utility += utilities[i];
+					found = true;
+				}
+			if (!found)
+				return 0;
+		}
+		return utility;
+	}
+	
+	private static String getItemsetKey(int[] itemset, int length)
+	{
+		int[] sortedItemset = Arrays.copyOf(itemset, length);
+		Arrays.sort(sortedItemset);
+		return Arrays.toString(sortedItemset);
+	}
+	
+	private void thuiAppend(int[] prefix, int prefixLength, UtilityList pUL, List<UtilityList> ULs) throws IOException
+	{
+		for (int i = ULs.size() - 1; i >= 0; --i)
+			if (ULs.get(i).getUtils() >= minUtility)
+				save(prefix, prefixLength, ULs.get(i));
+		
+		for (int i = ULs.size() - 2; i >= 0; --i) // last item is a single item, and hence no extension
+		{
+			checkMemory();
+			UtilityList X = ULs.get(i);
+			if (X.sumIutils + X.sumRutils >= minUtility && X.sumIutils > 0)
+			{
+				long mark = null == arena ? 0 : arena.mark();
+				List<UtilityList> exULs = new ArrayList<UtilityList>();
+				for (int j = i + 1; j < ULs.size(); ++j)
+				{
+					UtilityList Y = ULs.get(j);
+					++candidateCount;
+					UtilityList exul = construct(pUL, X, Y, prefixLength + 2);
+					if (exul != null && isAppended(exul)) // the utilities of the other extensions remain unchanged
+						exULs.add(exul);
+				}
+				prefix[prefixLength] = X.item;
+				thuiAppend(prefix, prefixLength + 1, X, exULs);
+				if (arena != null)
+					arena.release(mark); // free the utility lists of the whole subtree at once
+			}
+		}
+	}
+	
 	public void updateEUCSprune(int i, Pair pair, List<Pair> revisedTransaction, long newTWU)
 	{
 		Map<Integer, ItemTHUI> mapFMAPItem = mapFMAP.get(pair.item);
@@ -311,17 +820,28 @@ public class AlgoTHUI
 			mapFMAPItem = new HashMap<Integer, ItemTHUI>();
 			mapFMAP.put(pair.item, mapFMAPItem);
 		}
+		ItemTHUI[] eucsRow = null;
+		if (eucsItems != null)
+		{
+			eucsRow = eucsItems[itemPositions[pair.item]];
+			if (null == eucsRow)
+				eucsRow = eucsItems[itemPositions[pair.item]] = new ItemTHUI[eucsItems.length];
+		}
 		for (int j = i + 1; j < revisedTransaction.size(); ++j)
 		{
 			if (pair.item == revisedTransaction.get(j).item)
 				continue; // kosarak dataset has duplicate items
 			Pair pairAfter = revisedTransaction.get(j);
-			ItemTHUI twuItem = mapFMAPItem.get(pairAfter.item);
-			if (null == twuItem)
+			ItemTHUI twuItem = null == eucsRow ? mapFMAPItem.get(pairAfter.item) : eucsRow[itemPositions[pairAfter.item]];
+			if (null == twuItem) // the entries are updated in place once they are in the map
+			{
 				twuItem = new ItemTHUI();
+				mapFMAPItem.put(pairAfter.item, twuItem);
+				if (eucsRow != null)
+					eucsRow[itemPositions[pairAfter.item]] = twuItem;
+			}
 			twuItem.twu += newTWU;
 			twuItem.utility += (long) pair.utility + pairAfter.utility;
-			mapFMAPItem.put(pairAfter.item, twuItem);
 		}
 	}
 
@@ -354,6 +874,8 @@ public class AlgoTHUI
 	
 	public int getTWUindex(int item, List<UtilityList> ULs)
 	{
+		if (itemPositions != null) // only set while the utility lists are built
+			return itemPositions[item];
 		for (int i = ULs.size() - 1; i >= 0; --i)
 			if (ULs.get(i).item == item)
 				return i;
@@ -368,9 +890,39 @@ public class AlgoTHUI
 
 	private int compareItems(int item1, int item2)
 	{
-		int compare = (int) (mapItemToTWU.get(item1) - mapItemToTWU.get(item2));
+		int compare = null == itemTWUs ? (int) (mapItemToTWU.get(item1) - mapItemToTWU.get(item2)) : itemTWUs[item1] - itemTWUs[item2];
 		return (compare == 0) ? item1 - item2 : compare;
 	}
+	
+	/* Return the largest item if the item IDs are dense enough to index tables by them (non-negative and below twice the number of occurrences plus 1024), -1 otherwise */
+	static int getDenseMaxItem(int[][] items)
+	{
+		int maxItem = -1;
+		long occurrences = 0;
+		for (int[] transaction : items)
+		{
+			occurrences += transaction.length;
+			for (int item : transaction)
+			{
+				if (item < 0)
+					return -1;
+				maxItem = Math.max(maxItem, item);
+			}
+		}
+		return maxItem < 2 * occurrences + 1024 ? maxItem : -1;
+	}
+	
+	/* Map the items to their positions in the sorted utility lists, and index the EUCS by the positions as well if there are not too many promising items */
+	private void initItemPositions(List<UtilityList> listOfUtilityLists, int tableSize)
+	{
+		itemPositions = new int[tableSize];
+		Arrays.fill(itemPositions, -1);
+		for (int i = 0; i < listOfUtilityLists.size(); ++i)
+			itemPositions[listOfUtilityLists.get(i).item] = i;
+		if (EUCS_PRUNE && listOfUtilityLists.size() <= maxEucsItems)
+			eucsItems = new ItemTHUI[listOfUtilityLists.size()][];
+		return;
+	}
 
 	public void writeResultTofileUnord() throws IOException
 	{
@@ -397,6 +949,12 @@ public class AlgoTHUI
 
 		for (int i = ULs.size() - 2; i >= 0; --i) // last item is a single item, and hence no extension
 		{
+			if (isOverBudget()) // the extensions of the items left are bounded by their remaining utilities
+			{
+				for (; i >= 0; --i)
+					unexploredUtility = Math.max(unexploredUtility, ULs.get(i).sumIutils + ULs.get(i).sumRutils);
+				return;
+			}
 			checkMemory();
 			UtilityList X = ULs.get(i);
 			if (X.sumIutils + X.sumRutils >= minUtility && X.sumIutils > 0) // the utility value of zero cases can be that min utility will be 1
@@ -408,21 +966,225 @@ public class AlgoTHUI
 						continue;
 				}
 				
+				long mark = null == arena ? 0 : arena.mark();
 				List<UtilityList> exULs = new ArrayList<UtilityList>();
 				for (int j = i + 1; j < ULs.size(); ++j)
 				{
 					UtilityList Y = ULs.get(j);
 					++candidateCount;
-					UtilityList exul = construct(pUL, X, Y);
+					UtilityList exul = construct(pUL, X, Y, prefixLength + 2);
 					if (exul != null)
 						exULs.add(exul);
 				}
 				prefix[prefixLength] = X.item;
 				thui(prefix, prefixLength + 1, X, exULs);
+				if (X instanceof DiffsetUtilityList)
+					((DiffsetUtilityList) X).release(); // recovered as the parent of its extensions
+				if (arena != null)
+					arena.release(mark); // free the utility lists of the whole subtree at once
 			}
 		}
 	}
 	
+	/**
+	 * Search on projected transactions after the threshold raising phase (EFIM)
+	 * The items keep the TWU order of the utility lists, and the identical projected transactions are merged at every level. 
+	 * An extension is explored only if its sub-tree utility reaches minUtility (primary items), 
+	 * and only the items whose local utility reaches minUtility (secondary items) are kept in the projections below it. 
+	 * @param prefix the buffer of the current itemset
+	 * @param items the items of each transaction
+	 * @param utilities the utility of each item of each transaction
+	 * @param ULs the utility lists of the promising items sorted in the TWU order
+	 * @throws IOException if writing error from file
+	 */
+	private void efim(int[] prefix, int[][] items, int[][] utilities, List<UtilityList> ULs) throws IOException
+	{
+		Map<Integer, Integer> mapItemToIndex = new HashMap<Integer, Integer>();
+		rankToItem = new int[ULs.size()];
+		for (int i = 0; i < ULs.size(); ++i)
+		{
+			rankToItem[i] = ULs.get(i).item;
+			mapItemToIndex.put(ULs.get(i).item, i);
+		}
+		utilityBinLU = new long[ULs.size()];
+		utilityBinSU = new long[ULs.size()];
+		isSecondary = new boolean[ULs.size()];
+
+		List<Transaction> transactions = new ArrayList<Transaction>();
+		for (int t = 0; t < items.length; ++t)
+		{
+			List<Pair> revisedTransaction = new ArrayList<Pair>();
+			for (int i = 0; i < items[t].length; ++i)
+			{
+				Integer rank = mapItemToIndex.get(items[t][i]);
+				if (rank != null && mapItemToTWU.get(items[t][i]) >= minUtility) // the threshold may have been raised since the utility lists were built
+					revisedTransaction.add(new Pair(rank, utilities[t][i]));
+			}
+			if (revisedTransaction.size() == 0)
+				continue;
+			Collections.sort(revisedTransaction, new Comparator<Pair>()
+			{
+				@Override
+				public int compare(Pair o1, Pair o2)
+				{
+					return o1.item - o2.item;
+				}
+			});
+
+			int size = 0;
+			int[] transactionItems = new int[revisedTransaction.size()], transactionUtils = new int[revisedTransaction.size()];
+			for (Pair pair : revisedTransaction)
+			{
+				if (size > 0 && transactionItems[size - 1] == pair.item) // kosarak dataset has duplicate items
+					transactionUtils[size - 1] += pair.utility;
+				else
+				{
+					transactionItems[size] = pair.item;
+					transactionUtils[size++] = pair.utility;
+				}
+			}
+			transactions.add(new Transaction(Arrays.copyOf(transactionItems, size), Arrays.copyOf(transactionUtils, size), 0, 0, 1));
+		}
+		
+		int[] candidates = new int[rankToItem.length];
+		for (int i = 0; i < candidates.length; ++i)
+			candidates[i] = i;
+		transactions = mergeTransactions(transactions);
+		int[][] bounds = computeBounds(transactions, candidates, 0);
+		efimSearch(prefix, 0, transactions, bounds[0], bounds[1]);
+		
+		rankToItem = null;
+		utilityBinLU = null;
+		utilityBinSU = null;
+		isSecondary = null;
+	}
+	
+	private void efimSearch(int[] prefix, int prefixLength, List<Transaction> transactions, int[] primary, int[] secondary) throws IOException
+	{
+		for (int j = 0; j < primary.length; ++j)
+		{
+			if (isOverBudget()) // the local utility of the whole projection bounds the extensions left
+			{
+				long localUtility = 0;
+				for (Transaction transaction : transactions)
+				{
+					localUtility += transaction.prefixUtility;
+					for (int i = transaction.offset; i < transaction.items.length; ++i)
+						localUtility += transaction.utilities[i];
+				}
+				unexploredUtility = Math.max(unexploredUtility, localUtility);
+				return;
+			}
+			checkMemory();
+			int rank = primary[j];
+			++candidateCount;
+			long utility = 0;
+			int support = 0;
+			List<Transaction> projected = new ArrayList<Transaction>();
+			for (Transaction transaction : transactions)
+			{
+				int position = Arrays.binarySearch(transaction.items, transaction.offset, transaction.items.length, rank);
+				if (position < 0)
+					continue;
+				long prefixUtility = transaction.prefixUtility + transaction.utilities[position];
+				utility += prefixUtility;
+				support += transaction.support;
+				if (position + 1 < transaction.items.length)
+					projected.add(new Transaction(transaction.items, transaction.utilities, position + 1, prefixUtility, transaction.support));
+			}
+			if (utility >= minUtility)
+				save(prefix, prefixLength, rankToItem[rank], utility, support);
+			
+			int from = Arrays.binarySearch(secondary, rank) + 1; // the primary items are secondary as well
+			if (projected.isEmpty() || from == secondary.length)
+				continue;
+			projected = mergeTransactions(projected);
+			int[][] bounds = computeBounds(projected, secondary, from);
+			if (bounds[0].length == 0)
+				continue;
+			prefix[prefixLength] = rankToItem[rank];
+			efimSearch(prefix, prefixLength + 1, projected, bounds[0], bounds[1]);
+		}
+	}
+	
+	/* Compute the local utilities and the sub-tree utilities of the candidates from the index from and return the new primary and secondary items */
+	private int[][] computeBounds(List<Transaction> transactions, int[] candidates, int from)
+	{
+		for (int i = from; i < candidates.length; ++i)
+			isSecondary[candidates[i]] = true;
+		for (Transaction transaction : transactions)
+		{
+			long remainingUtility = 0;
+			for (int i = transaction.offset; i < transaction.items.length; ++i)
+				if (isSecondary[transaction.items[i]])
+					remainingUtility += transaction.utilities[i];
+			long subtreeUtility = 0;
+			for (int i = transaction.items.length - 1; i >= transaction.offset; --i)
+			{
+				int rank = transaction.items[i];
+				if (!isSecondary[rank])
+					continue;
+				subtreeUtility += transaction.utilities[i];
+				utilityBinSU[rank] += transaction.prefixUtility + subtreeUtility;
+				utilityBinLU[rank] += transaction.prefixUtility + remainingUtility;
+			}
+		}
+		
+		int primaryCount = 0, secondaryCount = 0;
+		int[] primary = new int[candidates.length - from], secondary = new int[candidates.length - from];
+		for (int i = from; i < candidates.length; ++i)
+		{
+			int rank = candidates[i];
+			if (utilityBinSU[rank] >= minUtility)
+				primary[primaryCount++] = rank;
+			if (utilityBinLU[rank] >= minUtility)
+				secondary[secondaryCount++] = rank;
+			utilityBinSU[rank] = 0;
+			utilityBinLU[rank] = 0;
+			isSecondary[rank] = false;
+		}
+		return new int[][] { Arrays.copyOf(primary, primaryCount), Arrays.copyOf(secondary, secondaryCount) };
+	}
+	
+	/* Merge the identical projected transactions by summing their utilities */
+	private List<Transaction> mergeTransactions(List<Transaction> transactions)
+	{
+		if (transactions.size() < 2)
+			return transactions;
+		TransactionComparator comparator = new TransactionComparator();
+		Collections.sort(transactions, comparator);
+		
+		List<Transaction> merged = new ArrayList<Transaction>();
+		Transaction previous = transactions.get(0);
+		boolean copied = false; // the arrays of previous are shared with its parent until a transaction is merged into it
+		for (int t = 1; t < transactions.size(); ++t)
+		{
+			Transaction transaction = transactions.get(t);
+			if (comparator.compare(previous, transaction) != 0)
+			{
+				merged.add(previous);
+				previous = transaction;
+				copied = false;
+				continue;
+			}
+			if (!copied)
+			{
+				previous = new Transaction(
+					Arrays.copyOfRange(previous.items, previous.offset, previous.items.length), 
+					Arrays.copyOfRange(previous.utilities, previous.offset, previous.utilities.length), 
+					0, previous.prefixUtility, previous.support
+				);
+				copied = true;
+			}
+			for (int i = 0; i < previous.items.length; ++i)
+				previous.utilities[i] += transaction.utilities[transaction.offset + i];
+			previous.prefixUtility += transaction.prefixUtility;
+			previous.support += transaction.support;
+		}
+		merged.add(previous);
+		return merged;
+	}
+	
 	public String getPrefixString(int[] prefix, int length)
 	{
 		String buffer = "";
@@ -434,53 +1196,184 @@ public class AlgoTHUI
 		return buffer;
 	}
 	
-	private UtilityList construct(UtilityList P, UtilityList px, UtilityList py)
+	/**
+	 * Construct the utility list of pxy from the ones of px and py (the extensions of P) 
+	 * @param P the utility list of the prefix (null for the single items)
+	 * @param px the utility list of the prefix with x
+	 * @param py the utility list of the prefix with y
+	 * @param length the number of items of pxy
+	 * @return the utility list of pxy (null if it is pruned)
+	 */
+	private UtilityList construct(UtilityList P, UtilityList px, UtilityList py, int length)
 	{
-		UtilityList pxyUL = new UtilityList(py.item);
+		if (P instanceof DiffsetUtilityList || px instanceof DiffsetUtilityList || py instanceof DiffsetUtilityList)
+			return constructDiffset(P, px, py, length);
+		if (ranksX != null && px instanceof ArrayUtilityList && py instanceof ArrayUtilityList && (null == P || P instanceof ArrayUtilityList))
+			return constructKernel((ArrayUtilityList) P, (ArrayUtilityList) px, (ArrayUtilityList) py, length);
+		int lostSize = 0;
+		UtilityList pxyUL = null == arena ? new UtilityList(py.item) : new OffHeapUtilityList(py.item, arena, Math.min(px.getSupport(), py.getSupport()));
 		long totUtil = px.sumIutils + px.sumRutils;
 		int ei = 0, ej = 0, Pi = -1;
+		int pxSize = px.getSupport(), pySize = py.getSupport();
 
-		Element ex = null, ey = null, e = null;
-		while (ei < px.elements.size() && ej < py.elements.size())
+		while (ei < pxSize && ej < pySize)
 		{
-			if (px.elements.get(ei).tid > py.elements.get(ej).tid)
+			int tidx = px.getTid(ei), tidy = py.getTid(ej);
+			if (tidx > tidy)
 			{
 				++ej;
 				continue;
 			} // px not present, py pres
-			if (px.elements.get(ei).tid < py.elements.get(ej).tid) // px present, py not present
+			if (tidx < tidy) // px present, py not present
 			{
-				totUtil = totUtil - px.elements.get(ei).iutils - px.elements.get(ei).rutils;
+				totUtil = totUtil - px.getIutils(ei) - px.getRutils(ei);
 				if (totUtil < minUtility)
-					return null;
+					return discard(pxyUL);
+				if (diffsetBuffer != null)
+					diffsetBuffer[lostSize++] = tidx;
 				++ei;
 				++Pi;// if a parent is present, it should be as large or larger than px; besides the ordering is by tid
 				continue;
 			}
-			ex = px.elements.get(ei);
-			ey = py.elements.get(ej);
 
 			if (null == P)
-				pxyUL.addElement(new Element(ex.tid, ex.iutils + ey.iutils, ey.rutils));
+				pxyUL.addElement(tidx, px.getIutils(ei) + py.getIutils(ej), py.getRutils(ej));
 			else
 			{
-				while (Pi < P.elements.size() && P.elements.get(++Pi).tid < ex.tid);
-				e = P.elements.get(Pi);
-				pxyUL.addElement(new Element(ex.tid, ex.iutils + ey.iutils - e.iutils, ey.rutils));
+				while (Pi < P.getSupport() && P.getTid(++Pi) < tidx);
+				pxyUL.addElement(tidx, px.getIutils(ei) + py.getIutils(ej) - P.getIutils(Pi), py.getRutils(ej));
 			}
 			++ei;
 			++ej;
 		}
-		while (ei < px.elements.size())
+		while (ei < pxSize)
 		{
-			totUtil = totUtil - px.elements.get(ei).iutils - px.elements.get(ei).rutils;
+			totUtil = totUtil - px.getIutils(ei) - px.getRutils(ei);
 			if (totUtil < minUtility)
-				return null;
+				return discard(pxyUL);
+			if (diffsetBuffer != null)
+				diffsetBuffer[lostSize++] = px.getTid(ei);
 			++ei;
 		}
+		if (pxyUL instanceof OffHeapUtilityList)
+			((OffHeapUtilityList) pxyUL).trim();
+		if (isDiffset(pxyUL.getSupport(), pxSize, length))
+			return new DiffsetUtilityList(px, mapItemToItemUtilityList.get(py.item), Arrays.copyOf(diffsetBuffer, lostSize), pxyUL.getSupport(), pxyUL.sumIutils, pxyUL.sumRutils);
+		return pxyUL;
+	}
+	
+	/**
+	 * Construct the utility list of pxy as construct() when P, px or py is a diffset, by walking P without the tids lost in px and py, 
+	 * where the utilities of pxy in a transaction are the ones of P plus the ones of the items x and y
+	 * (the same bound as construct() is subtracted in the same order, so the same lists are pruned)
+	 */
+	private UtilityList constructDiffset(UtilityList P, UtilityList px, UtilityList py, int length)
+	{
+		UtilityList x = mapItemToItemUtilityList.get(px.item), y = mapItemToItemUtilityList.get(py.item);
+		int[] lostX = getLost(P, px), lostY = getLost(P, py);
+		long totUtil = px.sumIutils + px.sumRutils, sumIutils = 0, sumRutils = 0;
+		int size = 0, lostSize = 0;
+		int[] tids = new int[Math.min(px.getSupport(), py.getSupport())], iutils = new int[tids.length], rutils = new int[tids.length];
+		for (int i = 0, lx = 0, ly = 0, ix = 0, iy = 0; i < P.getSupport(); ++i)
+		{
+			int tid = P.getTid(i);
+			if (lx < lostX.length && lostX[lx] == tid) // px not present
+			{
+				++lx;
+				continue;
+			}
+			while (x.getTid(ix) < tid)
+				++ix;
+			while (ly < lostY.length && lostY[ly] < tid)
+				++ly;
+			if (ly < lostY.length && lostY[ly] == tid) // px present, py not present
+			{
+				totUtil = totUtil - (P.getIutils(i) + x.getIutils(ix)) - x.getRutils(ix);
+				if (totUtil < minUtility)
+					return null;
+				diffsetBuffer[lostSize++] = tid;
+				continue;
+			}
+			while (y.getTid(iy) < tid)
+				++iy;
+			tids[size] = tid;
+			iutils[size] = P.getIutils(i) + x.getIutils(ix) + y.getIutils(iy);
+			rutils[size] = y.getRutils(iy);
+			sumIutils += iutils[size];
+			sumRutils += rutils[size++];
+		}
+		if (isDiffset(size, px.getSupport(), length))
+			return new DiffsetUtilityList(px, y, Arrays.copyOf(diffsetBuffer, lostSize), size, sumIutils, sumRutils);
+		UtilityList pxyUL = new UtilityList(py.item);
+		for (int i = 0; i < size; ++i)
+			pxyUL.addElement(tids[i], iutils[i], rutils[i]);
 		return pxyUL;
 	}
 	
+	/**
+	 * Construct the utility list of pxy as construct() on columns of arrays with TidKernels: the tids are intersected with the same bound of the early abandon, 
+	 * and the utilities are gathered by the ranks of the matching tids afterwards
+	 */
+	private UtilityList constructKernel(ArrayUtilityList P, ArrayUtilityList px, ArrayUtilityList py, int length)
+	{
+		int count = TidKernels.intersect(px.tids, px.getSupport(), py.tids, py.getSupport(), ranksX, ranksY, px.iutils, px.rutils, px.sumIutils + px.sumRutils, minUtility);
+		if (count < 0)
+			return null;
+		int[] tids = new int[count], iutils = new int[count], rutils = new int[count];
+		TidKernels.gather(px.tids, ranksX, count, tids);
+		TidKernels.gather(px.iutils, ranksX, count, iutils);
+		TidKernels.gather(py.rutils, ranksY, count, rutils);
+		for (int i = 0; i < count; ++i)
+			iutils[i] += py.iutils[ranksY[i]];
+		if (P != null)
+		{
+			TidKernels.intersect(tids, count, P.tids, P.getSupport(), ranksXY, ranksP); // the tids of pxy are all in P
+			for (int i = 0; i < count; ++i)
+				iutils[i] -= P.iutils[ranksP[i]];
+		}
+		ArrayUtilityList pxyUL = new ArrayUtilityList(py.item, tids, iutils, rutils, count);
+		if (isDiffset(count, px.getSupport(), length))
+		{
+			int lostSize = 0;
+			for (int i = 0, j = 0; i < px.getSupport(); ++i)
+				if (j < count && ranksX[j] == i)
+					++j;
+				else
+					diffsetBuffer[lostSize++] = px.tids[i];
+			return new DiffsetUtilityList(px, mapItemToItemUtilityList.get(py.item), Arrays.copyOf(diffsetBuffer, lostSize), count, pxyUL.sumIutils, pxyUL.sumRutils);
+		}
+		return pxyUL;
+	}
+	
+	private boolean isDiffset(int support, int parentSupport, int length)
+	{
+		return mapItemToItemUtilityList != null && (DIFFSET_DEPTH > 0 && length > DIFFSET_DEPTH || support > DIFFSET_RATIO * parentSupport);
+	}
+	
+	private static final int[] NO_TIDS = new int[0];
+	
+	private static int[] getLost(UtilityList P, UtilityList uList) // the tids of P missing in an extension of P
+	{
+		if (uList instanceof DiffsetUtilityList && ((DiffsetUtilityList) uList).parent == P)
+			return ((DiffsetUtilityList) uList).lost;
+		if (uList.getSupport() == P.getSupport())
+			return NO_TIDS;
+		int[] lost = new int[P.getSupport() - uList.getSupport()];
+		for (int i = 0, j = 0, k = 0; i < P.getSupport(); ++i)
+			if (j < uList.getSupport() && uList.getTid(j) == P.getTid(i))
+				++j;
+			else
+				lost[k++] = P.getTid(i);
+		return lost;
+	}
+	
+	private UtilityList discard(UtilityList uList) // give the block of a pruned off-heap utility list back to the arena
+	{
+		if (uList instanceof OffHeapUtilityList)
+			((OffHeapUtilityList) uList).free();
+		return null;
+	}
+	
 	public void writeResultTofile() throws IOException
 	{
 		if (kPatterns.size() == 0)
@@ -501,6 +1394,11 @@ public class AlgoTHUI
 			}
 		});
 		
+		results = new ArrayList<PatternTHUI>(lp);
+		Collections.sort(results, Collections.reverseOrder());
+		if (null == writer)
+			return;
+		
 		for (PatternTHUI pattern : lp)
 		{
 			StringBuilder buffer = new StringBuilder();
@@ -513,6 +1411,57 @@ public class AlgoTHUI
 		writer.close();
 	}
 	
+	/**
+	 * Get the itemsets found by the last run
+	 * @return the itemsets sorted in descending order of utility
+	 */
+	public int[][] getResultItemsets()
+	{
+		int[][] itemsets = new int[results.size()][];
+		for (int i = 0; i < itemsets.length; ++i)
+			itemsets[i] = results.get(i).itemset.clone();
+		return itemsets;
+	}
+	
+	/**
+	 * Get the utilities of the itemsets found by the last run
+	 * @return the utilities in the same order as getResultItemsets()
+	 */
+	public long[] getResultUtilities()
+	{
+		long[] utilities = new long[results.size()];
+		for (int i = 0; i < utilities.length; ++i)
+			utilities[i] = results.get(i).utility;
+		return utilities;
+	}
+	
+	/**
+	 * Get the final internal minimum utility threshold
+	 * @return the threshold
+	 */
+	public long getMinUtility()
+	{
+		return minUtility;
+	}
+	
+	/**
+	 * Check whether the last run searched the whole space within the budgets
+	 * @return false if the results are the best-so-far top k patterns of a stopped search
+	 */
+	public boolean isComplete()
+	{
+		return optimalityGap < 0;
+	}
+	
+	/**
+	 * Get the optimality gap of the last run
+	 * @return the most by which an itemset outside the results can exceed the k-th utility (-1 if the search was complete)
+	 */
+	public long getOptimalityGap()
+	{
+		return optimalityGap;
+	}
+	
 	private int comparePatterns(PatternTHUI item1, PatternTHUI item2)
 	{
 		int i1 = (int) Integer.parseInt(item1.prefix.split(" ")[0]);
@@ -688,16 +1637,31 @@ public class AlgoTHUI
 
 	private void save(int[] prefix, int length, UtilityList X)
 	{
-		kPatterns.add(new PatternTHUI(prefix, length, X, candidateCount));
+		save(prefix, length, X.item, X.getUtils(), X.getSupport());
+	}
+	
+	private void save(int[] prefix, int length, int item, long utility, int support)
+	{
+		if (previousItemsets != null)
+		{
+			prefix[length] = item;
+			if (previousItemsets.contains(getItemsetKey(prefix, length + 1))) // already offered with the updated utility
+				return;
+		}
+		PatternTHUI pattern = new PatternTHUI(prefix, length, item, utility, support, candidateCount);
+		boolean kept = true;
+		kPatterns.add(pattern);
 		if (kPatterns.size() > topkstatic)
 		{
-			if (X.getUtils() >= minUtility)
+			if (utility >= minUtility)
 				do
 				{
-					kPatterns.poll();
+					kept &= kPatterns.poll() != pattern;
 				} while (kPatterns.size() > topkstatic);
 			minUtility = kPatterns.peek().utility;
 		}
+		if (kept && resultListener != null)
+			resultListener.onResult(pattern.itemset.clone(), utility, minUtility);
 	}
 	
 	private void checkMemory()
@@ -715,10 +1679,15 @@ public class AlgoTHUI
 		System.out.println(" Memory ~ " + df.format(maxMemory) + " MB");
 		System.out.println(" High-utility itemsets count : " + huiCount + " Candidates " + candidateCount);
 		System.out.println(" Final minimum utility : " + minUtility);
-		File f = new File(inputFile);
-		String tmp = f.getName();
-		tmp = tmp.substring(0, tmp.lastIndexOf('.'));
-		System.out.println(" Dataset : " + tmp);
+		if (inputFile != null)
+		{
+			File f = new File(inputFile);
+			String tmp = f.getName();
+			tmp = tmp.lastIndexOf('.') > 0 ? tmp.substring(0, tmp.lastIndexOf('.')) : tmp;
+			System.out.println(" Dataset : " + tmp);
+		}
+		else
+			System.out.println(" Dataset : (memory)");
 		String timeStamp = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(Calendar.getInstance().getTime());
 		System.out.println(" End time " + timeStamp);
 		System.out.println("===================================================");
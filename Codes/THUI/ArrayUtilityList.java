@@ -0,0 +1,95 @@
+package thui;
+
+
+/**
+ * This class represents a UtilityList whose elements are stored in columns of primitive arrays instead of Element objects, 
+ * so that construct() can intersect and sum them with TidKernels.
+ *
+ * @see UtilityList
+ * @see TidKernels
+ * @author Yuer Yang
+ */
+public class ArrayUtilityList extends UtilityList
+{
+	final int[] tids;
+	final int[] iutils;
+	final int[] rutils;
+	private int size = 0;
+	
+	/**
+	 * Constructor.
+	 * @param item the item that is used for this utility list
+	 * @param capacity the maximum number of elements
+	 */
+	public ArrayUtilityList(Integer item, int capacity)
+	{
+		this(item, new int[capacity], new int[capacity], new int[capacity], 0);
+	}
+	
+	/**
+	 * Constructor from filled columns (the sums are computed here).
+	 * @param item the item that is used for this utility list
+	 * @param tids the transaction ids (ascending)
+	 * @param iutils the itemset utilities
+	 * @param rutils the remaining utilities
+	 * @param size the number of elements
+	 */
+	public ArrayUtilityList(Integer item, int[] tids, int[] iutils, int[] rutils, int size)
+	{
+		super(item);
+		this.tids = tids;
+		this.iutils = iutils;
+		this.rutils = rutils;
+		this.size = size;
+		for (int i = 0; i < size; ++i)
+		{
+			sumIutils += iutils[i];
+			sumRutils += rutils[i];
+		}
+	}
+	
+	/**
+	 * Copy the elements of a utility list into columns.
+	 * @param uList the utility list
+	 */
+	public static ArrayUtilityList copyOf(UtilityList uList)
+	{
+		ArrayUtilityList arrayList = new ArrayUtilityList(uList.item, uList.getSupport());
+		for (int i = 0; i < uList.getSupport(); ++i)
+			arrayList.addElement(uList.getTid(i), uList.getIutils(i), uList.getRutils(i));
+		return arrayList;
+	}
+	
+	public void addElement(Element element)
+	{
+		addElement(element.tid, element.iutils, element.rutils);
+	}
+	
+	public void addElement(int tid, int iutils, int rutils)
+	{
+		this.tids[size] = tid;
+		this.iutils[size] = iutils;
+		this.rutils[size] = rutils;
+		sumIutils += iutils;
+		sumRutils += rutils;
+		++size;
+	}
+	
+	public int getTid(int i)
+	{
+		return tids[i];
+	}
+	public int getIutils(int i)
+	{
+		return iutils[i];
+	}
+	public int getRutils(int i)
+	{
+		return rutils[i];
+	}
+	
+	public int getSupport()
+	{
+		return size;
+	}
+}
@@ -0,0 +1,95 @@
+package thui;
+
+
+/**
+ * This class represents a UtilityList stored as the tids of its parent missing in it (a diffset) instead of Element objects.
+ * The itemset is the one of the parent extended with the item, which is the last one in the order, 
+ * so the elements are recovered from the parent and the utility list of the item: iutils = iutils of the parent + iutils of the item, and rutils = rutils of the item. 
+ * The elements are recovered on the first access and kept until release() is called.
+ *
+ * @see UtilityList
+ * @author Yuer Yang
+ */
+public class DiffsetUtilityList extends UtilityList
+{
+	final UtilityList parent;
+	final UtilityList itemList;
+	final int[] lost;
+	private final int support;
+	private int[] tids = null, iutils = null, rutils = null;
+	
+	/**
+	 * Constructor.
+	 * @param parent the utility list of the itemset without the item
+	 * @param itemList the utility list of the item alone
+	 * @param lost the tids of the parent missing in this utility list (ascending)
+	 * @param support the number of elements
+	 * @param sumIutils the sum of item utilities
+	 * @param sumRutils the sum of remaining utilities
+	 */
+	public DiffsetUtilityList(UtilityList parent, UtilityList itemList, int[] lost, int support, long sumIutils, long sumRutils)
+	{
+		super(itemList.item);
+		this.parent = parent;
+		this.itemList = itemList;
+		this.lost = lost;
+		this.support = support;
+		this.sumIutils = sumIutils;
+		this.sumRutils = sumRutils;
+	}
+	
+	private void recover()
+	{
+		tids = new int[support];
+		iutils = new int[support];
+		rutils = new int[support];
+		for (int i = 0, j = 0, k = 0, l = 0; i < parent.getSupport(); ++i)
+		{
+			int tid = parent.getTid(i);
+			if (l < lost.length && lost[l] == tid)
+			{
+				++l;
+				continue;
+			}
+			while (itemList.getTid(j) < tid)
+				++j;
+			tids[k] = tid;
+			iutils[k] = parent.getIutils(i) + itemList.getIutils(j);
+			rutils[k++] = itemList.getRutils(j);
+		}
+	}
+	
+	/**
+	 * Drop the recovered elements (the diffset is kept)
+	 */
+	public void release()
+	{
+		tids = null;
+		iutils = null;
+		rutils = null;
+	}
+	
+	public int getTid(int i)
+	{
+		if (null == tids)
+			recover();
+		return tids[i];
+	}
+	public int getIutils(int i)
+	{
+		if (null == tids)
+			recover();
+		return iutils[i];
+	}
+	public int getRutils(int i)
+	{
+		if (null == tids)
+			recover();
+		return rutils[i];
+	}
+	
+	public int getSupport()
+	{
+		return support;
+	}
+}
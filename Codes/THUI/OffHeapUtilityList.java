@@ -0,0 +1,84 @@
+package thui;
+
+
+/**
+ * This class represents a UtilityList whose elements are stored in an off-heap arena instead of Element objects.
+ * The elements are packed as (tid, iutils, rutils) records in a block allocated for at most capacity elements, 
+ * and the block is freed together with the other lists of the same subtree when the arena is released.
+ *
+ * @see UtilityList
+ * @see OffHeapArena
+ * @author Yuer Yang
+ */
+public class OffHeapUtilityList extends UtilityList
+{
+	/* the size of an element in bytes (tid, iutils and rutils) */
+	static final int ELEMENT_SIZE = 12;
+	
+	private final OffHeapArena arena;
+	private final long address;
+	private int size = 0;
+	
+	/**
+	 * Constructor.
+	 * @param item the item that is used for this utility list
+	 * @param arena the arena where the elements are stored
+	 * @param capacity the maximum number of elements
+	 */
+	public OffHeapUtilityList(Integer item, OffHeapArena arena, int capacity)
+	{
+		super(item);
+		this.arena = arena;
+		this.address = arena.allocate(capacity * ELEMENT_SIZE);
+	}
+	
+	public void addElement(Element element)
+	{
+		addElement(element.tid, element.iutils, element.rutils);
+	}
+	
+	public void addElement(int tid, int iutils, int rutils)
+	{
+		long elementAddress = address + (long) size * ELEMENT_SIZE;
+		arena.putInt(elementAddress, tid);
+		arena.putInt(elementAddress + 4, iutils);
+		arena.putInt(elementAddress + 8, rutils);
+		sumIutils += iutils;
+		sumRutils += rutils;
+		++size;
+	}
+	
+	/**
+	 * Return the unused part of the block to the arena (only valid for the latest allocation of the arena)
+	 */
+	public void trim()
+	{
+		arena.shrink(address, size * ELEMENT_SIZE);
+	}
+	
+	/**
+	 * Give the whole block back to the arena when the list is pruned (only valid for the latest allocation of the arena)
+	 */
+	public void free()
+	{
+		arena.shrink(address, 0);
+	}
+	
+	public int getTid(int i)
+	{
+		return arena.getInt(address + (long) i * ELEMENT_SIZE);
+	}
+	public int getIutils(int i)
+	{
+		return arena.getInt(address + (long) i * ELEMENT_SIZE + 4);
+	}
+	public int getRutils(int i)
+	{
+		return arena.getInt(address + (long) i * ELEMENT_SIZE + 8);
+	}
+	
+	public int getSupport()
+	{
+		return size;
+	}
+}
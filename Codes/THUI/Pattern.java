@@ -28,7 +28,7 @@ public class Pattern implements Comparable<Pattern>
 		this.prefix = buffer;
 		this.idx = idx;
 		this.utility = X.getUtils();
-		this.sup = X.elements.size();
+		this.sup = X.getSupport();
 	}
 
 	public String getPrefix()
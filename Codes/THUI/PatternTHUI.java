@@ -4,11 +4,16 @@ package thui;
 public class PatternTHUI implements Comparable<PatternTHUI>
 {	
 	String prefix;
+	int[] itemset;
 	long utility;
 	int sup;
 	int idx; // for sorting patterns in order of insertion 
 	
 	public PatternTHUI(int[] prefix, int length, UtilityList X, int idx)
+	{
+		this(prefix, length, X.item, X.getUtils(), X.getSupport(), idx);
+	}
+	public PatternTHUI(int[] prefix, int length, int item, long utility, int sup, int idx)
 	{
 		String buffer = "";
 		for (int i = 0; i < length; ++i)
@@ -16,12 +21,15 @@ public class PatternTHUI implements Comparable<PatternTHUI>
 			buffer += prefix[i];
 			buffer += " ";
 		}
-		buffer += "" +X.item;
+		buffer += "" + item;
 		this.prefix = buffer;
+		this.itemset = new int[length + 1];
+		System.arraycopy(prefix, 0, this.itemset, 0, length);
+		this.itemset[length] = item;
 		this.idx = idx;
 		
-		this.utility = X.getUtils();
-		this.sup = X.elements.size(); // + X.sup;//X.sup for closed items
+		this.utility = utility;
+		this.sup = sup; // + X.sup;//X.sup for closed items
 	}
 
 	public String getPrefix()
@@ -0,0 +1,171 @@
+package thui;
+
+
+/**
+ * TidKernels (the inner loops over sorted tid arrays: intersection and value accumulation by ranks)
+ * @author Yuer Yang, Department of Computer Science, The University of Hong Kong
+ *
+ * intersect() merges two sorted tid arrays without branches on the data (the positions advance by the comparisons), so the loop does not stall on mispredictions, 
+ * and switches to a galloping search of the longer array when the lengths are far apart, which skips whole blocks of tids at once.
+ * The ranks of the matching tids are written out so that the values of both lists are then gathered by plain loops over arrays, 
+ * which the JIT unrolls and vectorizes where the hardware allows it without any module outside java.base.
+ * The integer sums use independent accumulators (exact in any order), and the floating-point sums keep the order of the ranks so that they are the same as a scalar loop.
+ */
+public class TidKernels
+{
+	public static final int gallopingRatio = 32; // gallop when the longer array is this many times the shorter one
+	
+	
+	/** Intersection **/
+	/* Write the ranks of the tids in both x and y into ranksX and ranksY (in the order of the tids) and return their count */
+	public static int intersect(int[] x, int sizeX, int[] y, int sizeY, int[] ranksX, int[] ranksY)
+	{
+		if ((long)sizeX * gallopingRatio < sizeY)
+			return gallop(x, sizeX, y, sizeY, ranksX, ranksY);
+		else if ((long)sizeY * gallopingRatio < sizeX)
+			return gallop(y, sizeY, x, sizeX, ranksY, ranksX);
+		int count = 0, i = 0, j = 0;
+		while (i < sizeX && j < sizeY)
+		{
+			int tidX = x[i], tidY = y[j];
+			ranksX[count] = i;
+			ranksY[count] = j;
+			count += tidX == tidY ? 1 : 0;
+			i += tidX <= tidY ? 1 : 0;
+			j += tidX >= tidY ? 1 : 0;
+		}
+		return count;
+	}
+	
+	/* Intersect as intersect() while the values of the tids of x missing in y (values1 + values2) are subtracted from bound in the order of the tids, 
+	 * and return -1 as soon as the bound falls below limit (the early abandon of a utility-list construction, for values which are not negative) */
+	public static int intersect(int[] x, int sizeX, int[] y, int sizeY, int[] ranksX, int[] ranksY, int[] values1, int[] values2, long bound, long limit)
+	{
+		if ((long)sizeX * gallopingRatio < sizeY || (long)sizeY * gallopingRatio < sizeX) // subtract the gaps between the matching ranks afterwards (the bound only decreases)
+		{
+			int count = intersect(x, sizeX, y, sizeY, ranksX, ranksY);
+			for (int i = 0, k = 0; i < sizeX; ++i)
+				if (k < count && ranksX[k] == i)
+					++k;
+				else if ((bound -= (long)values1[i] + values2[i]) < limit)
+					return -1;
+			return count;
+		}
+		int count = 0, i = 0, j = 0;
+		while (i < sizeX && j < sizeY)
+		{
+			int tidX = x[i], tidY = y[j];
+			ranksX[count] = i;
+			ranksY[count] = j;
+			count += tidX == tidY ? 1 : 0;
+			bound -= tidX < tidY ? (long)values1[i] + values2[i] : 0;
+			if (bound < limit && tidX < tidY) // only a subtraction abandons (the bound may start below limit)
+				return -1;
+			i += tidX <= tidY ? 1 : 0;
+			j += tidX >= tidY ? 1 : 0;
+		}
+		for (; i < sizeX; ++i)
+			if ((bound -= (long)values1[i] + values2[i]) < limit)
+				return -1;
+		return count;
+	}
+	public static int intersect(int[] x, int sizeX, int[] y, int sizeY, int[] ranksX, int[] ranksY, double[] values1, double[] values2, double bound, double limit)
+	{
+		if ((long)sizeX * gallopingRatio < sizeY || (long)sizeY * gallopingRatio < sizeX)
+		{
+			int count = intersect(x, sizeX, y, sizeY, ranksX, ranksY);
+			for (int i = 0, k = 0; i < sizeX; ++i)
+				if (k < count && ranksX[k] == i)
+					++k;
+				else if ((bound -= values1[i] + values2[i]) < limit)
+					return -1;
+			return count;
+		}
+		int count = 0, i = 0, j = 0;
+		while (i < sizeX && j < sizeY)
+		{
+			int tidX = x[i], tidY = y[j];
+			ranksX[count] = i;
+			ranksY[count] = j;
+			count += tidX == tidY ? 1 : 0;
+			bound -= tidX < tidY ? values1[i] + values2[i] : 0;
+			if (bound < limit && tidX < tidY) // only a subtraction abandons (the bound may start below limit)
+				return -1;
+			i += tidX <= tidY ? 1 : 0;
+			j += tidX >= tidY ? 1 : 0;
+		}
+		for (; i < sizeX; ++i)
+			if ((bound -= values1[i] + values2[i]) < limit)
+				return -1;
+		return count;
+	}
+	
+	/* Intersect as intersect() by searching each tid of the short array in the long one (exponentially from the last match, then binary) */
+	private static int gallop(int[] shortTids, int shortSize, int[] longTids, int longSize, int[] shortRanks, int[] longRanks)
+	{
+		int count = 0;
+		for (int i = 0, low = 0; i < shortSize && low < longSize; ++i)
+		{
+			int tid = shortTids[i], step = 1, high = low;
+			while (high < longSize && longTids[high] < tid)
+			{
+				low = high + 1;
+				high += step;
+				step <<= 1;
+			}
+			high = Math.min(high, longSize - 1);
+			while (low < high) // the first rank in [low, high] whose tid is not less than tid
+			{
+				int middle = (low + high) >>> 1;
+				if (longTids[middle] < tid)
+					low = middle + 1;
+				else
+					high = middle;
+			}
+			if (low < longSize && longTids[low] == tid)
+			{
+				shortRanks[count] = i;
+				longRanks[count++] = low++;
+			}
+		}
+		return count;
+	}
+	
+	
+	/** Accumulation **/
+	public static long gatherSum(int[] values, int[] ranks, int count)
+	{
+		long sum0 = 0, sum1 = 0, sum2 = 0, sum3 = 0;
+		int i = 0;
+		for (; i + 3 < count; i += 4)
+		{
+			sum0 += values[ranks[i]];
+			sum1 += values[ranks[i + 1]];
+			sum2 += values[ranks[i + 2]];
+			sum3 += values[ranks[i + 3]];
+		}
+		for (; i < count; ++i)
+			sum0 += values[ranks[i]];
+		return sum0 + sum1 + sum2 + sum3;
+	}
+	public static double gatherSum(double[] values, int[] ranks, int count)
+	{
+		double sum = 0;
+		for (int i = 0; i < count; ++i)
+			sum += values[ranks[i]];
+		return sum;
+	}
+	
+	public static void gather(int[] values, int[] ranks, int count, int[] target)
+	{
+		for (int i = 0; i < count; ++i)
+			target[i] = values[ranks[i]];
+		return;
+	}
+	public static void gather(double[] values, int[] ranks, int count, double[] target)
+	{
+		for (int i = 0; i < count; ++i)
+			target[i] = values[ranks[i]];
+		return;
+	}
+}
@@ -37,6 +37,34 @@ public class UtilityList
 		elements.add(element);
 	}
 	
+	/**
+	 * Method to add an element given by its fields.
+	 * @param tid  the transaction id
+	 * @param iutils  the itemset utility
+	 * @param rutils  the remaining utility
+	 */
+	public void addElement(int tid, int iutils, int rutils)
+	{
+		addElement(new Element(tid, iutils, rutils));
+	}
+	
+	/**
+	 * Get the fields of the i-th element (overridden by the utility lists which do not keep Element objects)
+	 * @param i the index of the element
+	 */
+	public int getTid(int i)
+	{
+		return elements.get(i).tid;
+	}
+	public int getIutils(int i)
+	{
+		return elements.get(i).iutils;
+	}
+	public int getRutils(int i)
+	{
+		return elements.get(i).rutils;
+	}
+	
 	/**
 	 * Get the support of the itemset represented by this utility-list
 	 * @return the support as a number of trnsactions
@@ -8,9 +8,11 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map.Entry;
@@ -24,11 +26,12 @@ public class AlgoTTFE
 	public static final String algoName = "TTFE"; // name of the algorithm (four characters)
 	public static final int defaultTopK = 10, defaultWidth = 100; // default values
 	public static final double defaultAlpha = 0.5, defaultBeta = 0.5; // default values
-	public static final boolean defaultRaise1 = true, defaultRaise2 = true, defaultPrint = false; // default values
+	public static final boolean defaultRaise1 = true, defaultRaise2 = true, defaultPrint = false, defaultVertical = true; // default values
 	int topK = defaultTopK; // topK
 	double alpha = defaultAlpha, beta = defaultBeta; // weighting parameters
 	Double delta = null; // initial a key variable (null is used as -float("inf") in Python)
 	boolean raise1 = defaultRaise1, raise2 = defaultRaise2, isPrint = defaultPrint; // switches
+	boolean isVertical = defaultVertical; // generate the tree through the tid-lists of the events instead of all the subsets of the sequence
 	
 	private String inputFile = null, outputFile = null; // input and output
 	private ArrayList<Transaction> transactions = new ArrayList<>(); // per line
@@ -37,6 +40,9 @@ public class AlgoTTFE
 	private Table LETF = null;
 	private PriorityQueue<Double> letf_e = new PriorityQueue<Double>(), lb_letf = new PriorityQueue<Double>();
 	private ArrayList<TreeNode> finalResults = new ArrayList<TreeNode>();
+	private HashMap<Integer, Integer> positions = null; // event -> position in the sequence of LETF
+	private int[][] tidLists = null, eventPositions = null; // the transactions containing each event (Up) and the positions of the events of each transaction (Up)
+	private double[][] eventTfs = null, remainingTfs = null; // the tf of the events of each transaction and the sum of the tf from each event to the end
 	
 	double startTimestamp = 0, endTimestamp = 0;
 	double maxMemory = -1; // the maximum memory cost
@@ -53,6 +59,7 @@ public class AlgoTTFE
 		this.raise1 = defaultRaise1;
 		this.raise2 = defaultRaise2;
 		this.isPrint = defaultPrint;
+		this.isVertical = defaultVertical;
 	}
 	public AlgoTTFE(int topK)
 	{
@@ -68,6 +75,7 @@ public class AlgoTTFE
 		this.raise1 = defaultRaise1;
 		this.raise2 = defaultRaise2;
 		this.isPrint = defaultPrint;
+		this.isVertical = defaultVertical;
 	}
 	public AlgoTTFE(int topK, double alpha, double beta)
 	{
@@ -92,6 +100,7 @@ public class AlgoTTFE
 		this.raise1 = defaultRaise1;
 		this.raise2 = defaultRaise2;
 		this.isPrint = defaultPrint;
+		this.isVertical = defaultVertical;
 	}
 	public AlgoTTFE(int topK, double alpha, double beta, boolean raise1, boolean raise2)
 	{
@@ -116,6 +125,7 @@ public class AlgoTTFE
 		this.raise1 = raise1;
 		this.raise2 = raise2;
 		this.isPrint = defaultPrint;
+		this.isVertical = defaultVertical;
 	}
 	public AlgoTTFE(int topK, double alpha, double beta, boolean raise1, boolean raise2, boolean isPrint)
 	{
@@ -140,6 +150,12 @@ public class AlgoTTFE
 		this.raise1 = raise1;
 		this.raise2 = raise2;
 		this.isPrint = isPrint;
+		this.isVertical = defaultVertical;
+	}
+	public AlgoTTFE(int topK, double alpha, double beta, boolean raise1, boolean raise2, boolean isPrint, boolean isVertical)
+	{
+		this(topK, alpha, beta, raise1, raise2, isPrint);
+		this.isVertical = isVertical;
 	}
 	
 	
@@ -702,6 +718,15 @@ public class AlgoTTFE
 						{
 							System.out.printf("The following line has been skipped due to the failure of parsing the isPrint value (boolean). \nFile: %s\n\n", backupThisLine);
 						}
+					else if (thisLine.startsWith("vertical=")) // read the isVertical value from the file
+						try
+						{
+							this.isVertical = Boolean.parseBoolean(thisLine.substring(9));
+						}
+						catch (Exception e)
+						{
+							System.out.printf("The following line has been skipped due to the failure of parsing the vertical value (boolean). \nFile: %s\n\n", backupThisLine);
+						}
 				}
 				else
 				{
@@ -1135,7 +1160,9 @@ public class AlgoTTFE
 	/* Generate the tree */
 	public void generateTree()
 	{
-		if (this.LETF != null)
+		if (this.LETF != null && this.isVertical)
+			this.generateTreeVertical();
+		else if (this.LETF != null)
 			for (ArrayList<Integer> series : this.LETF.combineSeries(this.LETF.series.length))
 				for (Transaction trans : this.transactions)
 				{
@@ -1161,6 +1188,136 @@ public class AlgoTTFE
 		return;
 	}
 	
+	/* Generate the same tree as generateTree() through the tid-lists of the events: 
+	 * only the series contained in at least one transaction are enumerated (the others have no nodes left after pruneTree() as their aetf is 0), 
+	 * the aetf of a series is summed once over its tid-list, and a branch is cut once pruneTree() would remove every node of it. 
+	 * The nodes of a transaction are finally put in the order of combineSeries() so that sortTree() breaks the ties in the same way. */
+	private void generateTreeVertical()
+	{
+		int n = this.LETF.series.length;
+		this.positions = new HashMap<Integer, Integer>();
+		for (int i = 0; i < n; ++i)
+			this.positions.put(this.LETF.series[i], i);
+		int[] counts = new int[n];
+		this.eventPositions = new int[this.transactions.size()][];
+		this.eventTfs = new double[this.transactions.size()][];
+		this.remainingTfs = new double[this.transactions.size()][];
+		for (int t = 0; t < this.transactions.size(); ++t)
+		{
+			Transaction transaction = this.transactions.get(t);
+			this.eventPositions[t] = new int[transaction.events.size()];
+			this.eventTfs[t] = new double[transaction.events.size()];
+			this.remainingTfs[t] = new double[transaction.events.size() + 1];
+			int i = 0;
+			for (Entry<Integer, TF> entry : transaction.events.entrySet()) // sorted by TWTF (Up) in sortTTFE()
+			{
+				this.eventPositions[t][i] = this.positions.get(entry.getKey());
+				this.eventTfs[t][i++] = entry.getValue().tf;
+				++counts[this.positions.get(entry.getKey())];
+			}
+			for (i = this.eventTfs[t].length - 1; i >= 0; --i)
+				this.remainingTfs[t][i] = this.remainingTfs[t][i + 1] + this.eventTfs[t][i];
+		}
+		this.tidLists = new int[n][];
+		for (int i = 0; i < n; ++i)
+		{
+			this.tidLists[i] = new int[counts[i]];
+			counts[i] = 0;
+		}
+		for (int t = 0; t < this.transactions.size(); ++t)
+			for (int position : this.eventPositions[t])
+				this.tidLists[position][counts[position]++] = t;
+		
+		int[] series = new int[n];
+		for (int i = 0; i < n; ++i)
+		{
+			double[] sums = new double[this.tidLists[i].length];
+			double bound = 0;
+			for (int j = 0; j < sums.length; ++j)
+			{
+				int t = this.tidLists[i][j], k = Arrays.binarySearch(this.eventPositions[t], i);
+				sums[j] = this.eventTfs[t][k];
+				bound += this.remainingTfs[t][k];
+			}
+			if (2 * bound < this.delta) // every node extending the event has aetf + eetf below delta
+				continue;
+			series[0] = i;
+			this.extendSeries(series, 1, this.tidLists[i], sums);
+		}
+		
+		for (Transaction transaction : this.transactions)
+			Collections.sort(transaction.treeNodes, new Comparator<TreeNode>() {
+				@Override
+				public int compare(TreeNode treeNode1, TreeNode treeNode2) { // the order of combineSeries(): by length and then by the positions from the last event
+					if (treeNode1.series.size() != treeNode2.series.size())
+						return treeNode1.series.size() - treeNode2.series.size();
+					for (int i = treeNode1.series.size() - 1; i >= 0; --i)
+						if (!treeNode1.series.get(i).equals(treeNode2.series.get(i)))
+							return positions.get(treeNode1.series.get(i)) - positions.get(treeNode2.series.get(i));
+					return 0;
+				}
+			});
+		this.positions = null;
+		this.tidLists = null;
+		this.eventPositions = null;
+		this.eventTfs = null;
+		this.remainingTfs = null;
+		return;
+	}
+	
+	/* Extend the series (positions in LETF) contained in the transactions of tids, where sums are the tf of the series in them. 
+	 * An extension only adds the events after the last one, so the tf of the series and of the events after it in the transactions bound the aetf of the whole branch. */
+	private void extendSeries(int[] series, int length, int[] tids, double[] sums)
+	{
+		for (int next = series[length - 1] + 1; next < this.tidLists.length; ++next)
+		{
+			int[] nextTids = new int[Math.min(tids.length, this.tidLists[next].length)];
+			double[] nextSums = new double[nextTids.length];
+			int size = 0;
+			double bound = 0;
+			for (int i = 0, j = 0; i < tids.length && j < this.tidLists[next].length; )
+				if (tids[i] < this.tidLists[next][j])
+					++i;
+				else if (tids[i] > this.tidLists[next][j])
+					++j;
+				else
+				{
+					int t = tids[i], k = Arrays.binarySearch(this.eventPositions[t], next);
+					nextTids[size] = t;
+					nextSums[size] = sums[i] + this.eventTfs[t][k];
+					bound += nextSums[size++] + this.remainingTfs[t][k + 1];
+					++i;
+					++j;
+				}
+			if (0 == size || 2 * bound < this.delta) // not contained by any transaction or pruned as a whole
+				continue;
+			series[length] = next;
+			
+			ArrayList<Integer> eventSeries = new ArrayList<>();
+			for (int i = 0; i <= length; ++i)
+				eventSeries.add(this.LETF.series[series[i]]);
+			double aetf = 0;
+			for (int i = 0; i < size; ++i) // in the same order as generateTree()
+				aetf += this.transactions.get(nextTids[i]).getAetfPerTransaction(eventSeries);
+			if (2 * aetf >= this.delta) // otherwise pruneTree() would remove all the nodes of the series
+				for (int t = 0, i = 0; t < this.transactions.size(); ++t)
+				{
+					Transaction transaction = this.transactions.get(t);
+					double retf = 0;
+					if (i < size && nextTids[i] == t) // the transaction contains the series
+					{
+						++i;
+						for (Integer event : transaction.getUnmatchedEventPerTransaction(eventSeries))
+							retf += this.ETF.get(event);
+					}
+					if (aetf + (aetf - retf) >= this.delta) // the condition of pruneTree()
+						transaction.addNode(eventSeries, aetf, aetf - retf);
+				}
+			this.extendSeries(series, length + 1, Arrays.copyOf(nextTids, size), Arrays.copyOf(nextSums, size));
+		}
+		return;
+	}
+	
 	/* Tree pruning */
 	public void pruneTree()
 	{
@@ -1318,6 +1475,7 @@ public class AlgoTTFE
 		System.out.println("\traise1: " + this.raise1);
 		System.out.println("\traise2: " + this.raise2);
 		System.out.println("\tisPrint: " + this.isPrint);
+		System.out.println("\tvertical: " + this.isVertical);
 		System.out.println("\tTotal time: " + (endTimestamp - startTimestamp) / 1000.0 + " s");
 		System.out.println("\tMax memory: " + new java.text.DecimalFormat("#.00").format(this.maxMemory) + " MB");
 		System.out.println("\tHTFEs count: " + this.htfeCount);
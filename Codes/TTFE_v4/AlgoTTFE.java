@@ -1,21 +1,35 @@
 package ttfe;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileWriter;
+import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.text.SimpleDateFormat;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map.Entry;
 import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 
 /**
@@ -26,15 +40,17 @@ import java.util.Set;
  * initTTFE()* -> Scan the database D -> TTF<transaction -> ttf>: for each transaction tau in database D -> ttf(tau) = alpha * sum([t(x) for x in tau]) + beta * sum([f(x) for x in tau])
  * computeTWTF() -> TWTF<event -> twtf>: for each event x -> twtf(x) = sum([ttf(tau) for transaction tau in database D if event x in transaction tau])
  * sortTWTF() -> TWTF: for each event -> sorted(TWTF, key = lambda x:TWTF(x), reverse = False)
+ * sortTTFE() -> TTFE: for each transaction -> sorted(transaction) according to the index of each event in TWTF (Up)
  * computeRTF() -> RTF: for each transaction tau for each event x -> rtf(x) = sum([tf(y) for y in "all events after x in sequence"])
  * computeETF() -> ETF<event -> etf>: for each event x -> etf(x) = sum([TF(x) for transaction tau in database D if event x in transaction tau])
  * sortETF() -> ETF: for each event x -> sorted(ETF, key = lambda x:ETF(x), reverse = True) -> delta
  * pruneItem() -> TWTF & Transactions: cut off the events in TWTF whose value is less than delta
- * sortedTTFE() -> TTFE: for each transaction -> sorted(transaction) according to TWTF (Up)
+ * mergeTTFE() -> Transactions: merge the identical transactions into one by summing TF per event (all the values of the tree are sums over transactions)
+ * reorderTTFE()* -> Transactions: sort the transactions in the Gray-code order of their events and renumber the tids, so that the identical ones are adjacent and the tid-lists form runs
  * generateTable() -> LETF: adding continuous tf, get 2D table sorted by TWTF (Up)
  * raiseThreshold_LETF_E() -> delta: switches delta to topK value of LETF
  * raiseThreshold_LETF_LB() -> delta: vaguely switches delta according to SLB
- * generateTree() -> Tree: build tree layer by layer using a queue and generate prior queue to get the final results
+ * generateTree() -> Tree: build tree layer by layer using a queue and generate prior queue to get the final results (nodes below diffsetDepth or keeping more than diffsetRatio of the tids of their parents store diffsets)
  * getResults()* -> Results: print results and evaluation metrics
  */
 public class AlgoTTFE
@@ -43,9 +59,12 @@ public class AlgoTTFE
 	public static final String algoName = "TTFE"; // name of the algorithm (four characters)
 	public static final String defaultDatabase = "TTFE"; // default database value
 	public static final int DEBUG_LEVEL_ALL = 3, DEBUG_LEVEL_INFO = 2, DEBUG_LEVEL_PROCEDURE = 1, DEBUG_LEVEL_CLOSE = 0;
+	public static final int PRECISION_DOUBLE = 0, PRECISION_FIXED = 1, PRECISION_FLOAT = 2; // the precisions of the values (see setPrecision())
+	public static final String[] precisionNames = { "double", "fixed", "float" }; // by the precisions
 	public static final int defaultTopK = 5, defaultDebugLevel = DEBUG_LEVEL_INFO, defaultWidth = 100; // default values
 	public static final double defaultAlpha = 0.5, defaultBeta = 0.5; // default values
 	public static final Double defaultDeltaInput = null; // default delta value
+	private static final double[] deltaSlacks = { 1e-9, 0, 1e-6 }; // by the precisions: the relative rounding error within which a value reaches delta (none for the exact sums of PRECISION_FIXED, see reachesDelta())
 	public static final boolean defaultSwitches[] = { false, true, true, false, true, true }; // default values
 	public static final java.text.DecimalFormat defaultDecimalFormatter = new java.text.DecimalFormat("#.###");
 	public static final SimpleDateFormat defaultDateFormatter = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
@@ -65,11 +84,33 @@ public class AlgoTTFE
 	private Table LETF = null;
 	private PriorityQueue<Double> letf_e = new PriorityQueue<Double>(), letf_lb = new PriorityQueue<Double>();
 	private Tree tree = null;
+	private HashMap<Integer, Integer> eventIndexes = new HashMap<Integer, Integer>(); // event -> index in the sorted sequence of events
 	private PriorityQueue<HTFE> finalResults = new PriorityQueue<HTFE>();
 	
 	private double startTimestamp = 0, endTimestamp = 0, maxMemory = -1; // the time consumption and the maximum memory cost 
 	private int treeNodeCount = 1; // root
 	private boolean securityFlag = false;
+	private boolean offHeap = false; // store the tid-lists of the tree nodes outside the heap
+	private OffHeapArena[] arenas = null; // the tid-lists of the last three layers of the tree (a layer only reads its parent and grandparent layers)
+	private static final int offHeapRecordSize = 40, floatRecordSize = 20; // tid (padded to 8 bytes), threat, frequency, tf, rtf as doubles or as floats
+	private int recordSize = offHeapRecordSize; // the bytes of an off-heap record under the precision
+	private long memoryBudget = 0; // the bytes of a layer kept in the memory before spilling to disk in generateTreeSpill() (0 to keep the whole tree in the memory)
+	private long spilledBytes = 0;
+	private int diffsetDepth = 0; // the nodes deeper than it store the tids of their parents missing in them (diffsets) instead of their tid-lists in generateTree() (0 for none)
+	private double diffsetRatio = 1; // a child keeping more than the ratio of the tids of its parent stores a diffset as well (1 for none)
+	private int[] diffsetBuffer = null; // the lost tids of the child being computed (null when diffsets are not used)
+	private TreeNode[] recoveredTreeNodes = null; // the latest recovered node by depth, since the nodes of the queue in a row share their ancestors
+	private TidList[] recoveredTidLists = null;
+	private boolean kernels = false; // intersect the tid-lists kept as arrays (the recovered diffsets and the spilled tree) with TidKernels
+	private boolean reordering = false; // reorder the transactions before merging them (see reorderTTFE())
+	private int[] ranksX = null, ranksY = null, ranksXY = null, ranksQ = null; // the ranks of the matching tids (null when the kernels are not used)
+	private int[][] rootTids = null; // the tids of the roots as arrays by the indexes of their events (filled on demand)
+	private int precision = PRECISION_DOUBLE; // the values are rounded at load time to fixed-point numbers (PRECISION_FIXED) or floats (PRECISION_FLOAT)
+	private Integer fractionBits = null; // the fraction bits of the fixed-point values picked from the totals of the database at load time (null before loading)
+	private Double errorBound = null; // the error bound of the values of runSampled() (null for the exact results)
+	private long timeBudget = 0, nodeBudget = 0; // generateTree() stops with the best-so-far results after the milliseconds of the run or the tree nodes (0 for unlimited)
+	private Double optimalityGap = null; // the largest aetf left unexpanded minus the k-th value when a budget stops generateTree() (null for the exact results)
+	private ResultListener resultListener = null; // notified of each itemset entering the top-k during generateTree()
 	
 	
 	/** Construction functions **/
@@ -80,6 +121,15 @@ public class AlgoTTFE
 		private double alpha = defaultAlpha, beta = defaultBeta;
 		private Double deltaInput = defaultDeltaInput;
 		private boolean switches[] = { defaultSwitches[0], defaultSwitches[1], defaultSwitches[2], defaultSwitches[3], defaultSwitches[4], defaultSwitches[5] };
+		private boolean offHeap = false;
+		private long memoryBudget = 0;
+		private int diffsetDepth = 0;
+		private double diffsetRatio = 1;
+		private boolean kernels = false;
+		private boolean reordering = false;
+		private int precision = PRECISION_DOUBLE;
+		private long timeBudget = 0, nodeBudget = 0;
+		private ResultListener resultListener = null;
 		
 		public Builder() {}
 		public Builder buildDatabase(String database)
@@ -149,6 +199,55 @@ public class AlgoTTFE
 			}
 			return this;
 		}
+		public Builder buildOffHeap(boolean offHeap)
+		{
+			this.offHeap = offHeap;
+			return this;
+		}
+		public Builder buildMemoryBudget(long memoryBudget)
+		{
+			this.memoryBudget = Math.max(memoryBudget, 0);
+			return this;
+		}
+		public Builder buildDiffsets(int diffsetDepth, double diffsetRatio)
+		{
+			this.diffsetDepth = Math.max(diffsetDepth, 0);
+			this.diffsetRatio = Math.min(Math.max(diffsetRatio, 0), 1);
+			return this;
+		}
+		public Builder buildKernels(boolean kernels)
+		{
+			this.kernels = kernels;
+			return this;
+		}
+		public Builder buildReordering(boolean reordering)
+		{
+			this.reordering = reordering;
+			return this;
+		}
+		public Builder buildPrecision(int precision)
+		{
+			if (checkPrecision(precision))
+				this.precision = precision;
+			else
+				printPrecisionStatement(precision, PRECISION_DOUBLE);
+			return this;
+		}
+		public Builder buildTimeBudget(long timeBudget)
+		{
+			this.timeBudget = Math.max(timeBudget, 0);
+			return this;
+		}
+		public Builder buildNodeBudget(long nodeBudget)
+		{
+			this.nodeBudget = Math.max(nodeBudget, 0);
+			return this;
+		}
+		public Builder buildResultListener(ResultListener resultListener)
+		{
+			this.resultListener = resultListener;
+			return this;
+		}
 		public AlgoTTFE build()
 		{
             return new AlgoTTFE(this);
@@ -343,6 +442,16 @@ public class AlgoTTFE
 		for (int i = 0; i < Math.min(this.switches.length, builder.switches.length); ++i)
 			this.switches[i] = builder.switches[i];
 		this.debugLevel = builder.debugLevel;
+		this.offHeap = builder.offHeap;
+		this.memoryBudget = builder.memoryBudget;
+		this.diffsetDepth = builder.diffsetDepth;
+		this.diffsetRatio = builder.diffsetRatio;
+		this.kernels = builder.kernels;
+		this.reordering = builder.reordering;
+		this.precision = builder.precision;
+		this.timeBudget = builder.timeBudget;
+		this.nodeBudget = builder.nodeBudget;
+		this.resultListener = builder.resultListener;
 	}
 	
 	
@@ -365,13 +474,13 @@ public class AlgoTTFE
 			this.frequency = frequency;
 			this.alpha = alpha;
 			this.beta = beta;
-			this.tf = this.alpha * this.threat + this.beta * this.frequency;
+			this.tf = AlgoTTFE.this.quantize(this.alpha * this.threat + this.beta * this.frequency);
 		}
 		public double update(double alpha, double beta)
 		{
 			this.alpha = alpha;
 			this.beta = beta;
-			this.tf = this.alpha * this.threat + this.beta * this.frequency;
+			this.tf = AlgoTTFE.this.quantize(this.alpha * this.threat + this.beta * this.frequency);
 			return this.tf;
 		}
 		public String getString(boolean isThreat, boolean isFrequency, boolean isTf, boolean isRtf)
@@ -414,6 +523,15 @@ public class AlgoTTFE
 			this.alpha = alpha;
 			this.beta = beta;
 		}
+		public Transaction(Transaction transaction, int topK) // a copy sharing the TF values
+		{
+			this.tid = transaction.tid;
+			this.topK = topK;
+			this.alpha = transaction.alpha;
+			this.beta = transaction.beta;
+			this.events = new LinkedHashMap<Integer, TF>(transaction.events);
+			this.ttf = transaction.ttf;
+		}
 		public boolean contains(Integer item)
 		{
 			return this.events.containsKey(item);
@@ -595,7 +713,6 @@ public class AlgoTTFE
 				this.sequence[i + 1] = columns[i];
 			this.name = name;
 		}
-		@SuppressWarnings("unused")
 		public Table(double[][] values, int[] sequence, String name)
 		{
 			this.values = values;
@@ -638,7 +755,6 @@ public class AlgoTTFE
 					return i;
 			return -1;
 		}
-		@SuppressWarnings("unused")
 		public boolean addValueByIndex(int indexIdx, int columnsIdx, double value)
 		{
 			if (indexIdx < 0 || columnsIdx < 0 || indexIdx >= this.index.length || columnsIdx >= this.columns.length)
@@ -698,19 +814,39 @@ public class AlgoTTFE
 	{
 		ArrayList<Integer> sequence = null;
 		double eetf = 0;
+		int[] key = null; // the packed events sorted by IDs (Up) since the order of the sequence depends on TWTF
+		int hash = 0;
 		public HTFE(ArrayList<Integer> sequence, double eetf)
 		{
 			this.sequence = new ArrayList<Integer>(sequence);
 			this.eetf = eetf;
 		}
+		private int[] getKey() // packed lazily so that offering the queue during mining stays cheap
+		{
+			if (null == this.key)
+			{
+				this.key = new int[this.sequence.size()];
+				for (int i = 0; i < this.key.length; ++i)
+					this.key[i] = this.sequence.get(i).intValue();
+				Arrays.sort(this.key);
+				this.hash = Arrays.hashCode(this.key);
+			}
+			return this.key;
+		}
 		public boolean equals(HTFE htfe)
 		{
-			if (htfe.sequence.size() != this.sequence.size())
-				return false;
-			for (int i = 0; i < this.sequence.size(); ++i)
-				if (htfe.sequence.get(i) != this.sequence.get(i))
-					return false;
-			return true;
+			return this.hashCode() == htfe.hashCode() && Arrays.equals(this.getKey(), htfe.getKey());
+		}
+		@Override
+		public boolean equals(Object object)
+		{
+			return object instanceof HTFE && this.equals((HTFE)object);
+		}
+		@Override
+		public int hashCode()
+		{
+			this.getKey();
+			return this.hash;
 		}
 		public String toString()
 		{
@@ -743,24 +879,39 @@ public class AlgoTTFE
 	
 	private class TreeNode
 	{
-		ArrayList<Integer> sequence = null; // current sequence
+		int event = 0; // the last event of the current sequence (the sequence is recovered through the parents)
+		int depth = 1; // the length of the current sequence
 		double aetf = 0, eetf = 0, retf = 0;
+		int index = -1; // the index of the last event in the sorted sequence of events (children are dense over the indexes after it)
 		TreeNode parent = null;
-		LinkedHashMap<Integer, TF> transactions = new LinkedHashMap<Integer, TF>();
+		TidSet tids = null; // the tids of the transactions containing the current sequence (in the heap)
+		TF[] transactions = null; // the TF values of the current sequence by the ranks of the tids
+		TidSet diffs = null; // the tids of the parent missing in the current sequence (a diffset node keeps neither tids nor transactions)
+		long address = 0; // the off-heap tid-list sorted by tids (Up) in arenas[depth % arenas.length]
+		int size = 0; // the count of the tids
 		ArrayList<TreeNode> children = new ArrayList<TreeNode>();
 		public TreeNode(int event) // event (root)
 		{
-			this.sequence = new ArrayList<Integer>();
-			this.sequence.add(event);
+			this.event = event;
 		}
 		public TreeNode(Integer event) // event (root)
 		{
-			this.sequence = new ArrayList<Integer>();
-			this.sequence.add(event);
+			this.event = event.intValue();
 		}
-		public TreeNode(ArrayList<Integer> sequence) // sequence
+		public TreeNode(TreeNode parent, int event, int index) // child of parent ending with event
 		{
-			this.sequence = new ArrayList<Integer>(sequence);
+			this.parent = parent;
+			this.event = event;
+			this.index = index;
+			this.depth = parent.depth + 1;
+		}
+		public ArrayList<Integer> getSequence() // recover the current sequence on demand
+		{
+			Integer[] events = new Integer[this.depth];
+			TreeNode treeNode = this;
+			for (int i = this.depth - 1; i >= 0; --i, treeNode = treeNode.parent)
+				events[i] = treeNode.event;
+			return new ArrayList<Integer>(Arrays.asList(events));
 		}
 		public boolean equals(TreeNode treeNode, boolean isAetf, boolean isEetf, boolean isRetf)
 		{
@@ -768,12 +919,12 @@ public class AlgoTTFE
 				return false;
 			else if (treeNode == this)
 				return true;
-			else if (treeNode.sequence.size() != this.sequence.size())
+			else if (treeNode.depth != this.depth)
 				return false;
 			else
 			{
-				for (int i = 0; i < this.sequence.size(); ++i)
-					if (treeNode.sequence.get(i) != this.sequence.get(i))
+				for (TreeNode node1 = this, node2 = treeNode; node1 != null && node1 != node2; node1 = node1.parent, node2 = node2.parent)
+					if (node1.event != node2.event)
 						return false;
 				if (isAetf && treeNode.aetf != this.aetf)
 					return false;
@@ -786,69 +937,85 @@ public class AlgoTTFE
 		}
 		@SuppressWarnings("unused")
 		public boolean equals(TreeNode treeNode) { return this.equals(treeNode, false, false, false); }
+		public TreeNode getChildTreeNode(int index) // O(1) by the index of the last event of the child
+		{
+			final int position = index - this.index - 1;
+			return 0 <= position && position < this.children.size() ? this.children.get(position) : null;
+		}
 		public TreeNode findTargetChildTreeNode(ArrayList<Integer> sequence)
 		{
-			if (sequence.isEmpty() || sequence.size() <= this.sequence.size())
+			if (sequence.isEmpty() || sequence.size() <= this.depth)
 				return null;
-			for (TreeNode childTreeNode : this.children)
-				if (childTreeNode.sequence.get(this.sequence.size()).intValue() == sequence.get(this.sequence.size()).intValue())
-				{
-					if (childTreeNode.sequence.size() == sequence.size())
-						return childTreeNode;
-					else
-						return childTreeNode.findTargetChildTreeNode(sequence);
-				}
-			return null;
+			TreeNode treeNode = this;
+			for (int i = this.depth; i < sequence.size() && treeNode != null; ++i)
+			{
+				Integer index = eventIndexes.get(sequence.get(i));
+				treeNode = null == index ? null : treeNode.getChildTreeNode(index.intValue());
+			}
+			return treeNode;
 		}
 		
 		public Double update(PriorityQueue<HTFE> finalResults, int topK, Double delta)
 		{
-			HTFE htfe = new HTFE(this.sequence, this.eetf);
+			HTFE htfe = new HTFE(this.getSequence(), this.eetf);
+			boolean isKept = true;
 			finalResults.offer(htfe);
 			while (finalResults.size() > topK)
-				finalResults.poll();
+				isKept &= finalResults.poll() != htfe;
+			if (isKept)
+				notifyResult(htfe);
 			return finalResults.size() >= topK ? Double.valueOf(finalResults.peek().eetf) : delta;
 		}
 		private String getChildren(boolean isAetf, boolean isEetf, boolean isRetf, boolean isChildren)
 		{
 			String sRet = "{";
 			for (TreeNode child : this.children)
-				sRet += child.getString(isAetf, isEetf, isRetf, isChildren) + ", ";
+				if (child != null) // abandoned
+					sRet += child.getString(isAetf, isEetf, isRetf, isChildren) + ", ";
 			if (sRet.endsWith(", "))
 				sRet = sRet.substring(0, sRet.length() - 2); // remove extra ", "
 			sRet += "}";
 			return sRet;
 		}
+		public TidSet getTids() // recovered from the parents for a diffset node
+		{
+			if (null == this.diffs)
+				return this.tids;
+			TidList tidList = recoverTidList(this);
+			return new TidSet(tidList.tids, tidList.size);
+		}
 		public HashSet<Integer> getInterset(TreeNode treeNode)
 		{
-			HashSet<Integer> interSet = new HashSet<Integer>(this.transactions.keySet());
-			interSet.retainAll((Set<Integer>)(treeNode.transactions.keySet()));
+			HashSet<Integer> interSet = new HashSet<Integer>();
+			for (int tid : this.getTids().and(treeNode.getTids()).toArray())
+				interSet.add(tid);
 			return interSet;
 		}
 		public HashSet<Integer> getInterset(Event event)
 		{
-			HashSet<Integer> interSet = new HashSet<Integer>(this.transactions.keySet());
-			interSet.retainAll((Set<Integer>)(event.transactions.keySet()));
-			return interSet;
+			return this.getInterset(new HashSet<Integer>(event.transactions.keySet()));
 		}
 		public HashSet<Integer> getInterset(HashSet<Integer> keySet)
 		{
-			HashSet<Integer> interSet = new HashSet<Integer>(this.transactions.keySet());
-			interSet.retainAll(keySet);
+			HashSet<Integer> interSet = new HashSet<Integer>();
+			for (int tid : this.getTids().toArray())
+				if (keySet.contains(tid))
+					interSet.add(tid);
 			return interSet;
 		}
 		public String getString(boolean isAetf, boolean isEetf, boolean isRetf, boolean isChildren)
 		{
 			String sRet = "";
-			if (this.sequence.isEmpty()) // "":
+			ArrayList<Integer> sequence = this.getSequence();
+			if (sequence.isEmpty()) // "":
 				sRet += "\"\"";
-			else if (this.sequence.size() == 1) // int:
-				sRet += this.sequence.get(0);
+			else if (sequence.size() == 1) // int:
+				sRet += sequence.get(0);
 			else // (, ):
 			{
-				sRet += "(" + this.sequence.get(0);
-				for (int i = 1; i < this.sequence.size(); ++i)
-					sRet += ", " + this.sequence.get(i);
+				sRet += "(" + sequence.get(0);
+				for (int i = 1; i < sequence.size(); ++i)
+					sRet += ", " + sequence.get(i);
 				sRet += ")";
 			}
 			if (isAetf && isEetf && isRetf && isChildren) // :[, ] (include children)
@@ -887,26 +1054,26 @@ public class AlgoTTFE
 		LinkedHashMap<Integer, TreeNode> roots = new LinkedHashMap<Integer, TreeNode>();
 		public Tree(int[] sequence) // sequence
 		{
-			for (int event : sequence)
-				this.roots.put(event, new TreeNode(event));
+			for (int index = 0; index < sequence.length; ++index)
+			{
+				TreeNode root = new TreeNode(sequence[index]);
+				root.index = index;
+				this.roots.put(sequence[index], root);
+			}
 		}
 		@SuppressWarnings("unused")
 		public Tree(ArrayList<Integer> sequence) // sequence
 		{
-			for (Integer event : sequence)
-				this.roots.put(event, new TreeNode(event));
+			for (int index = 0; index < sequence.size(); ++index)
+			{
+				TreeNode root = new TreeNode(sequence.get(index));
+				root.index = index;
+				this.roots.put(sequence.get(index), root);
+			}
 		}
 		public boolean containsRoot(int root)
 		{
-			Set<Entry<Integer, TreeNode>> set = this.roots.entrySet();
-			Iterator<Entry<Integer, TreeNode>> iterator = set.iterator();
-			while (iterator.hasNext())
-			{
-				Entry<Integer, TreeNode> entry = iterator.next();
-				if (entry.getKey().doubleValue() == root)
-					return true;
-			}
-			return false;
+			return this.roots.containsKey(root);
 		}
 		public boolean containsRoot(Integer root)
 		{
@@ -941,6 +1108,271 @@ public class AlgoTTFE
 		}
 	}
 	
+	private static class TidList // a tid-list sorted by tids (Up) in columns
+	{
+		int size = 0;
+		int[] tids = null;
+		double[] threats = null, frequencies = null, tfs = null, rtfs = null;
+		public TidList(int capacity)
+		{
+			this.tids = new int[capacity];
+			this.threats = new double[capacity];
+			this.frequencies = new double[capacity];
+			this.tfs = new double[capacity];
+			this.rtfs = new double[capacity];
+		}
+		public void add(int tid, double threat, double frequency, double tf, double rtf)
+		{
+			this.tids[this.size] = tid;
+			this.threats[this.size] = threat;
+			this.frequencies[this.size] = frequency;
+			this.tfs[this.size] = tf;
+			this.rtfs[this.size] = rtf;
+			++this.size;
+		}
+		public void write(DataOutputStream out, boolean isFloat) throws IOException // the values are written as floats under PRECISION_FLOAT
+		{
+			out.writeInt(this.size);
+			for (int i = 0; i < this.size; ++i)
+			{
+				out.writeInt(this.tids[i]);
+				if (isFloat)
+				{
+					out.writeFloat((float)this.threats[i]);
+					out.writeFloat((float)this.frequencies[i]);
+					out.writeFloat((float)this.tfs[i]);
+					out.writeFloat((float)this.rtfs[i]);
+				}
+				else
+				{
+					out.writeDouble(this.threats[i]);
+					out.writeDouble(this.frequencies[i]);
+					out.writeDouble(this.tfs[i]);
+					out.writeDouble(this.rtfs[i]);
+				}
+			}
+		}
+		public static TidList read(ByteBuffer in, boolean isFloat)
+		{
+			TidList tidList = new TidList(in.getInt());
+			for (int i = 0; i < tidList.tids.length; ++i)
+				if (isFloat)
+					tidList.add(in.getInt(), in.getFloat(), in.getFloat(), in.getFloat(), in.getFloat());
+				else
+					tidList.add(in.getInt(), in.getDouble(), in.getDouble(), in.getDouble(), in.getDouble());
+			return tidList;
+		}
+	}
+	
+	private static class TreeUnit // a node Q of the tree with its children (Q.x for every event x after the last event of Q) as a unit of generateTreeSpill()
+	{
+		int[] prefix = null; // the indexes of the events of Q (empty for the root of the tree)
+		TidList parent = null; // the tid-list of Q (null for the root of the tree)
+		int[] indexes = null; // the index of the last event of each child
+		boolean[] expandable = null; // whether each child can build its children
+		TidList[] children = null;
+		public TreeUnit(int[] prefix, TidList parent, int count)
+		{
+			this.prefix = prefix;
+			this.parent = parent;
+			this.indexes = new int[count];
+			this.expandable = new boolean[count];
+			this.children = new TidList[count];
+		}
+		public byte[] encode(boolean isFloat) throws IOException
+		{
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bytes);
+			out.writeInt(this.prefix.length);
+			for (int index : this.prefix)
+				out.writeInt(index);
+			out.writeBoolean(this.parent != null);
+			if (this.parent != null)
+				this.parent.write(out, isFloat);
+			out.writeInt(this.children.length);
+			for (int i = 0; i < this.children.length; ++i)
+			{
+				out.writeInt(this.indexes[i]);
+				out.writeBoolean(this.expandable[i]);
+				this.children[i].write(out, isFloat);
+			}
+			out.close();
+			return bytes.toByteArray();
+		}
+		public static TreeUnit decode(ByteBuffer in, boolean isFloat)
+		{
+			int[] prefix = new int[in.getInt()];
+			for (int i = 0; i < prefix.length; ++i)
+				prefix[i] = in.getInt();
+			TidList parent = in.get() != 0 ? TidList.read(in, isFloat) : null;
+			TreeUnit treeUnit = new TreeUnit(prefix, parent, in.getInt());
+			for (int i = 0; i < treeUnit.children.length; ++i)
+			{
+				treeUnit.indexes[i] = in.getInt();
+				treeUnit.expandable[i] = in.get() != 0;
+				treeUnit.children[i] = TidList.read(in, isFloat);
+			}
+			return treeUnit;
+		}
+	}
+	
+	private static class SpillQueue // a FIFO of encoded units which keeps at most memoryBudget bytes in the memory and spills the rest to a memory-mapped file
+	{
+		private static final long windowSize = 1 << 26; // 64 MB mapped at a time
+		private final long memoryBudget;
+		private final ArrayDeque<byte[]> memory = new ArrayDeque<byte[]>();
+		private long memoryBytes = 0, spilledBytes = 0;
+		private File file = null;
+		private FileChannel channel = null;
+		private long writePosition = 0, readPosition = 0, windowPosition = 0;
+		private ByteBuffer window = null;
+		public SpillQueue(long memoryBudget)
+		{
+			this.memoryBudget = memoryBudget;
+		}
+		public boolean isEmpty()
+		{
+			return this.memory.isEmpty() && this.readPosition >= this.writePosition;
+		}
+		public void offer(byte[] unit) throws IOException
+		{
+			this.memory.offer(unit);
+			this.memoryBytes += unit.length;
+			if (this.memoryBytes > this.memoryBudget) // the units in the memory follow the spilled ones so that the order is kept
+				this.spill();
+			return;
+		}
+		public ByteBuffer poll() throws IOException // the returned buffer is valid until the next poll
+		{
+			if (this.readPosition < this.writePosition)
+			{
+				if (null == this.window || this.readPosition + 4 > this.windowPosition + this.window.limit())
+					this.map(this.readPosition, 4);
+				int length = this.window.getInt((int)(this.readPosition - this.windowPosition));
+				if (this.readPosition + 4 + length > this.windowPosition + this.window.limit())
+					this.map(this.readPosition, 4 + length);
+				ByteBuffer unit = this.window.duplicate();
+				unit.position((int)(this.readPosition - this.windowPosition) + 4);
+				unit.limit(unit.position() + length);
+				this.readPosition += 4 + length;
+				return unit;
+			}
+			byte[] unit = this.memory.poll();
+			if (null == unit)
+				return null;
+			this.memoryBytes -= unit.length;
+			return ByteBuffer.wrap(unit);
+		}
+		public long getSpilledBytes()
+		{
+			return this.spilledBytes;
+		}
+		public void close()
+		{
+			try
+			{
+				if (this.channel != null)
+					this.channel.close();
+			}
+			catch (IOException e) {}
+			if (this.file != null && !this.file.delete())
+				this.file.deleteOnExit();
+			this.channel = null;
+			this.file = null;
+			this.window = null;
+			this.memory.clear();
+			return;
+		}
+		private void spill() throws IOException
+		{
+			if (null == this.channel)
+			{
+				this.file = File.createTempFile(algoName + "_", ".spill");
+				this.channel = new RandomAccessFile(this.file, "rw").getChannel();
+			}
+			for (byte[] unit : this.memory)
+			{
+				ByteBuffer buffer = ByteBuffer.allocate(4 + unit.length);
+				buffer.putInt(unit.length).put(unit).flip();
+				while (buffer.hasRemaining())
+					this.writePosition += this.channel.write(buffer, this.writePosition);
+				this.spilledBytes += buffer.capacity();
+			}
+			this.memory.clear();
+			this.memoryBytes = 0;
+			return;
+		}
+		private void map(long position, long size) throws IOException
+		{
+			this.windowPosition = position;
+			this.window = this.channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(Math.max(windowSize, size), this.writePosition - position));
+			return;
+		}
+	}
+	
+	
+	public interface ResultListener // streams the best-so-far top-k of generateTree() (e.g. for a run under a time budget)
+	{
+		/* Called when an itemset enters the top-k, where the threshold is the current k-th value (null before k itemsets are found) */
+		public void onResult(int[] itemset, double value, Double threshold);
+	}
+	
+	public static class Index // TWTF, RTF and ETF of a database which only depend on (alpha, beta) and the precision and can be shared by queries
+	{
+		private final double alpha, beta;
+		private final int precision;
+		private final Integer fractionBits;
+		private final ArrayList<Transaction> transactions;
+		private final LinkedHashMap<Integer, Double> TWTF, ETF;
+		private final int[] sequence;
+		private final Event[] events;
+		private Index(AlgoTTFE ttfe)
+		{
+			this.alpha = ttfe.alpha;
+			this.beta = ttfe.beta;
+			this.precision = ttfe.precision;
+			this.fractionBits = ttfe.fractionBits;
+			this.transactions = ttfe.transactions;
+			this.TWTF = ttfe.TWTF;
+			this.ETF = ttfe.ETF;
+			this.sequence = ttfe.sequence;
+			this.events = ttfe.events;
+		}
+		private void load(AlgoTTFE ttfe) // transactions are copied since pruneItem() removes events from them
+		{
+			ttfe.alpha = this.alpha;
+			ttfe.beta = this.beta;
+			ttfe.precision = this.precision;
+			ttfe.fractionBits = this.fractionBits;
+			ttfe.transactions = new ArrayList<Transaction>(this.transactions.size());
+			for (Transaction transaction : this.transactions)
+				ttfe.transactions.add(ttfe.new Transaction(transaction, ttfe.topK));
+			ttfe.TWTF = new LinkedHashMap<Integer, Double>(this.TWTF);
+			ttfe.ETF = new LinkedHashMap<Integer, Double>(this.ETF);
+			ttfe.sequence = this.sequence;
+			ttfe.events = this.events;
+			ttfe.eventIndexes.clear();
+			for (int index = 0; index < this.sequence.length; ++index)
+				ttfe.eventIndexes.put(this.sequence[index], index);
+		}
+		public double getAlpha()
+		{
+			return this.alpha;
+		}
+		public double getBeta()
+		{
+			return this.beta;
+		}
+		public int getPrecision()
+		{
+			return this.precision;
+		}
+		public int size()
+		{
+			return this.transactions.size();
+		}
+	}
+	
 	
 	/** Getter and setter **/
 	public void setTimeConsumption(double timeConsumption)
@@ -983,60 +1415,181 @@ public class AlgoTTFE
 		return this.delta;
 	}
 	
-	public void setFinalResults(PriorityQueue<HTFE> fr1, PriorityQueue<HTFE> fr2)
+	public void setOffHeap(boolean offHeap)
+	{
+		this.offHeap = offHeap;
+		return;
+	}
+	public boolean getOffHeap()
+	{
+		return this.offHeap;
+	}
+	
+	public void setMemoryBudget(long memoryBudget)
+	{
+		this.memoryBudget = Math.max(memoryBudget, 0);
+		return;
+	}
+	public long getMemoryBudget()
+	{
+		return this.memoryBudget;
+	}
+	public long getSpilledBytes()
+	{
+		return this.spilledBytes;
+	}
+	public Double getErrorBound()
+	{
+		return this.errorBound;
+	}
+	
+	public void setDiffsets(int diffsetDepth, double diffsetRatio)
+	{
+		this.diffsetDepth = Math.max(diffsetDepth, 0);
+		this.diffsetRatio = Math.min(Math.max(diffsetRatio, 0), 1);
+		return;
+	}
+	public int getDiffsetDepth()
+	{
+		return this.diffsetDepth;
+	}
+	public double getDiffsetRatio()
+	{
+		return this.diffsetRatio;
+	}
+	
+	public void setKernels(boolean kernels)
+	{
+		this.kernels = kernels;
+		return;
+	}
+	public boolean getKernels()
+	{
+		return this.kernels;
+	}
+	
+	public void setReordering(boolean reordering)
+	{
+		this.reordering = reordering;
+		return;
+	}
+	public boolean getReordering()
+	{
+		return this.reordering;
+	}
+	
+	public void setPrecision(int precision) // effective from the next load
+	{
+		if (checkPrecision(precision))
+			this.precision = precision;
+		else
+			printPrecisionStatement(precision, this.precision);
+		return;
+	}
+	public int getPrecision()
+	{
+		return this.precision;
+	}
+	public Integer getFractionBits()
+	{
+		return this.fractionBits;
+	}
+	
+	public void setTimeBudget(long timeBudget)
+	{
+		this.timeBudget = Math.max(timeBudget, 0);
+		return;
+	}
+	public long getTimeBudget()
+	{
+		return this.timeBudget;
+	}
+	public void setNodeBudget(long nodeBudget)
+	{
+		this.nodeBudget = Math.max(nodeBudget, 0);
+		return;
+	}
+	public long getNodeBudget()
+	{
+		return this.nodeBudget;
+	}
+	public void setResultListener(ResultListener resultListener)
+	{
+		this.resultListener = resultListener;
+		return;
+	}
+	public boolean isComplete() // whether the last run searched the whole tree within the budgets
+	{
+		return null == this.optimalityGap;
+	}
+	public Double getOptimalityGap() // no itemset outside the final results exceeds the final minimum value by more than the gap
+	{
+		return this.optimalityGap;
+	}
+	
+	public void setFinalResults(PriorityQueue<HTFE> fr1, PriorityQueue<HTFE> fr2) // merge the threat and the frequency components in O(|fr1| + |fr2|) and keep the top-k only
 	{
+		HashMap<HTFE, HTFE> components = new HashMap<HTFE, HTFE>(fr2.size() << 1); // itemsets are keyed by their packed events
+		for (HTFE htfe2 : fr2)
+			components.putIfAbsent(htfe2, htfe2);
+		HashSet<HTFE> merged = new HashSet<HTFE>((fr1.size() + fr2.size()) << 1);
 		this.finalResults.clear();
 		for (HTFE htfe1 : fr1)
-		{
-			boolean breakFlag = false;
-			for (HTFE htfe : this.finalResults)
-				if (htfe1.equals(htfe)) // already exists
-				{
-					breakFlag = true;
-					break;
-				}
-			if (breakFlag)
-				continue;
-			for (HTFE htfe2 : fr2)
-				if (htfe1.equals(htfe2)) // both own
-				{
-					this.finalResults.offer(new HTFE(htfe1.sequence, this.alpha * htfe1.eetf + this.beta * htfe2.eetf));
-					breakFlag = true;
-					break;
-				}
-			if (breakFlag)
-				continue;
-			this.finalResults.offer(new HTFE(htfe1.sequence, this.alpha * htfe1.eetf));
-		}
+			if (merged.add(htfe1)) // not exists
+			{
+				HTFE htfe2 = components.get(htfe1);
+				if (null == htfe2)
+					this.offerFinalResult(new HTFE(htfe1.sequence, this.alpha * htfe1.eetf));
+				else // both own
+					this.offerFinalResult(new HTFE(htfe1.sequence, this.alpha * htfe1.eetf + this.beta * htfe2.eetf));
+			}
 		for (HTFE htfe2 : fr2)
+			if (merged.add(htfe2)) // not exists
+				this.offerFinalResult(new HTFE(htfe2.sequence, this.beta * htfe2.eetf));
+		this.securityFlag = false; // no longer secure until the algorithm is run again
+		return;
+	}
+	private void offerFinalResult(HTFE htfe) // bounded by topK
+	{
+		if (this.finalResults.size() < this.topK)
+			this.finalResults.offer(htfe);
+		else if (htfe.eetf > this.finalResults.peek().eetf)
 		{
-			boolean breakFlag = false;
-			for (HTFE htfe : this.finalResults)
-				if (htfe2.equals(htfe)) // already exists
-				{
-					breakFlag = true;
-					break;
-				}
-			if (breakFlag)
-				continue;
-			for (HTFE htfe1 : fr1)
-				if (htfe2.equals(htfe1)) // both own
-				{
-					this.finalResults.offer(new HTFE(htfe2.sequence, this.alpha * htfe1.eetf + this.beta * htfe2.eetf));
-					breakFlag = true;
-					break;
-				}
-			if (breakFlag)
-				continue;
-			this.finalResults.offer(new HTFE(htfe2.sequence, this.beta * htfe2.eetf));
+			this.finalResults.poll();
+			this.finalResults.offer(htfe);
 		}
-		this.securityFlag = false; // no longer secure until the algorithm is run again
 		return;
 	}
 	public PriorityQueue<HTFE> getFinalResults()
 	{
 		return this.finalResults;
 	}
+	public int[][] getFinalItemsets() // sorted by eetf (Down)
+	{
+		ArrayList<HTFE> sortedResults = this.getSortedFinalResults();
+		int[][] itemsets = new int[sortedResults.size()][];
+		for (int i = 0; i < itemsets.length; ++i)
+		{
+			itemsets[i] = new int[sortedResults.get(i).sequence.size()];
+			for (int j = 0; j < itemsets[i].length; ++j)
+				itemsets[i][j] = sortedResults.get(i).sequence.get(j).intValue();
+		}
+		return itemsets;
+	}
+	public double[] getFinalValues() // in the same order as getFinalItemsets()
+	{
+		ArrayList<HTFE> sortedResults = this.getSortedFinalResults();
+		double[] values = new double[sortedResults.size()];
+		for (int i = 0; i < values.length; ++i)
+			values[i] = sortedResults.get(i).eetf;
+		return values;
+	}
+	private ArrayList<HTFE> getSortedFinalResults()
+	{
+		ArrayList<HTFE> sortedResults = new ArrayList<HTFE>(this.finalResults);
+		Collections.sort(sortedResults, Collections.reverseOrder());
+		return sortedResults;
+	}
 	
 	public void setTreeNodeCount(int treeNodeCount)
 	{
@@ -1054,6 +1607,19 @@ public class AlgoTTFE
 		this.outputFilePath = outputFilePath;
 	}
 	
+	public int getTopK()
+	{
+		return this.topK;
+	}
+	public double getAlpha()
+	{
+		return this.alpha;
+	}
+	public double getBeta()
+	{
+		return this.beta;
+	}
+	
 	
 	/** Child functions **/
 	public static boolean checkDatabase(String database)
@@ -1124,7 +1690,21 @@ public class AlgoTTFE
 		return;
 	}
 	
-	public static boolean printTitle(String titleName, int width)
+	public static boolean checkPrecision(int precision)
+	{
+		return PRECISION_DOUBLE <= precision && precision <= PRECISION_FLOAT;
+	}
+	public static void printPrecisionStatement(int originalPrecision, int revisedPrecision)
+	{
+		System.out.printf("The passed parameter precision should be 0 (double), 1 (fixed), or 2 (float). It is defaulted to %d. \nParameter: precision = %d -> precision = %d\n\n", revisedPrecision, originalPrecision, revisedPrecision);
+		return;
+	}
+	public static int parsePrecision(String precisionName) // -1 for an unknown name
+	{
+		return Arrays.asList(precisionNames).indexOf(precisionName.toLowerCase());
+	}
+	
+	public static boolean printTitle(String titleName, int width)
 	{
 		if (titleName.length() + 6 <= width)
 		{
@@ -1346,8 +1926,35 @@ public class AlgoTTFE
 			this.debugLevel = debugLevel;
 		else
 			printDebugLevelStatement(setDebugLevelLine, this.debugLevel);
+		return this.initTransactions();
+	}
+	
+	/* Initial TTFE from the memory */
+	private boolean initTTFE(int[][] items, double[][] threats, double[][] frequencies)
+	{
+		if (items.length != threats.length || items.length != frequencies.length)
+		{
+			System.out.printf("The database in the memory is not well-formed. The numbers of rows are (%d, %d, %d). \n\n", items.length, threats.length, frequencies.length);
+			return false;
+		}
+		for (int tid = 0; tid < items.length; ++tid)
+		{
+			Transaction transaction = new Transaction(tid + 1, this.topK, this.alpha, this.beta);
+			for (int i = 0; i < items[tid].length; ++i)
+				transaction.put(Integer.valueOf(items[tid][i]), new TF(threats[tid][i], frequencies[tid][i], this.alpha, this.beta));
+			transaction.update(this.topK, this.alpha, this.beta); // there is no input TTF value in the memory
+			this.transactions.add(transaction);
+		}
+		return this.initTransactions();
+	}
+	
+	/* Initial transactions */
+	private boolean initTransactions()
+	{
 		if (this.switches[0])
 			this.delta = null == this.deltaInput ? null : Double.valueOf(this.deltaInput);
+		if (this.precision != PRECISION_DOUBLE)
+			this.quantizeTransactions();
 		
 		for (Transaction transaction : this.transactions)
 		{
@@ -1374,6 +1981,39 @@ public class AlgoTTFE
 		return true;
 	}
 	
+	/* Round the values of the transactions to the precision, where the fixed-point values keep fractionBits bits after the binary point such that 
+	 * the totals of the threats, the frequencies and the tfs of the database stay below 2 ^ 51 units, so every sum (and Px + Py - P) over them is exact in a double */
+	private void quantizeTransactions()
+	{
+		if (PRECISION_FIXED == this.precision && null == this.fractionBits) // the partitions and the queries on an index keep the ones of the whole database
+		{
+			double total = 0;
+			for (Transaction transaction : this.transactions)
+				for (TF tf : transaction.events.values())
+					total += Math.abs(tf.threat) + Math.abs(tf.frequency) + Math.abs(tf.tf);
+			this.fractionBits = 50 - Math.getExponent(Math.max(total, Double.MIN_NORMAL));
+		}
+		for (Transaction transaction : this.transactions)
+		{
+			for (TF tf : transaction.events.values())
+			{
+				tf.threat = this.quantize(tf.threat);
+				tf.frequency = this.quantize(tf.frequency);
+			}
+			transaction.update(); // the tfs are rounded by TF.update() and ttf is their exact sum
+		}
+		return;
+	}
+	private double quantize(double value) // unchanged before the fraction bits are picked
+	{
+		if (PRECISION_FLOAT == this.precision)
+			return (float)value;
+		else if (PRECISION_FIXED == this.precision && this.fractionBits != null)
+			return Math.scalb(Math.rint(Math.scalb(value, this.fractionBits)), -this.fractionBits);
+		else
+			return value;
+	}
+	
 	/* Compute TWTF */
 	private void computeTWTF()
 	{
@@ -1420,12 +2060,14 @@ public class AlgoTTFE
 			}
 		});
 		this.TWTF.clear();
+		this.eventIndexes.clear();
 		this.sequence = new int[entryList.size()];
 		this.events = new Event[entryList.size()];
 		int pointer = 0;
 		for (Entry<Integer, Double> entry : entryList)
 		{
 			this.TWTF.put(entry.getKey(), entry.getValue());
+			this.eventIndexes.put(entry.getKey(), pointer);
 			this.sequence[pointer] = entry.getKey().intValue();
 			this.events[pointer++] = new Event(entry.getKey().intValue());
 		}
@@ -1457,22 +2099,24 @@ public class AlgoTTFE
 		return;
 	}
 	
-	/* Compute RTF */
+	/* Compute RTF on the transactions sorted by sortTTFE() (the events after an event in the sequence follow it in the transaction) */
 	private void computeRTF()
 	{
 		for (Transaction transaction : this.transactions)
-			for (int i = 0; i < this.sequence.length; ++i)
+		{
+			/* Compute RTF */
+			TF[] tfs = transaction.events.values().toArray(new TF[transaction.events.size()]);
+			double rtf = 0;
+			for (int i = tfs.length - 1; i >= 0; --i)
 			{
-				/* Compute RTF */
-				if (transaction.events.containsKey(this.sequence[i]))
-					for (int j = i + 1; j < this.sequence.length; ++j)
-						if (transaction.events.containsKey(this.sequence[j]))
-							transaction.events.get(this.sequence[i]).rtf += transaction.events.get(this.sequence[j]).tf;
-				
-				/* Build Index (Event -> Transaction) */
-				if (transaction.events.containsKey(this.sequence[i]))
-					this.events[i].transactions.put(transaction.tid, transaction.events.get(this.sequence[i]));
+				tfs[i].rtf = rtf;
+				rtf += tfs[i].tf;
 			}
+			
+			/* Build Index (Event -> Transaction) */
+			for (Entry<Integer, TF> entry : transaction.events.entrySet())
+				this.events[this.eventIndexes.get(entry.getKey()).intValue()].transactions.put(transaction.tid, entry.getValue());
+		}
 		
 		if (this.debugLevel >= DEBUG_LEVEL_PROCEDURE)
 		{
@@ -1540,9 +2184,9 @@ public class AlgoTTFE
 		this.ETF.clear();
 		for (Entry<Integer, Double> entry : entryList)
 			this.ETF.put(entry.getKey(), entry.getValue());
-		if (this.switches[1] && (entryList.size() <= this.topK ? entryList.size() : this.topK) > 0) // Threshold raising strategy 1
+		if (this.switches[1] && this.topK > 0 && entryList.size() >= this.topK) // Threshold raising strategy 1 (a lower bound of the k-th value only if there are k events)
 		{
-			double tmpDelta = entryList.get((entryList.size() <= this.topK ? entryList.size() : this.topK) - 1).getValue();
+			double tmpDelta = entryList.get(this.topK - 1).getValue();
 			if (null == this.delta || this.delta.doubleValue() < tmpDelta)
 				this.delta = Double.valueOf(tmpDelta);
 		}
@@ -1570,19 +2214,35 @@ public class AlgoTTFE
 	private void pruneItem()
 	{
 		LinkedHashMap<Integer, Double> OTWTF = new LinkedHashMap<>();
+		boolean[] isPruned = new boolean[this.sequence.length]; // the index in the sequence -> whether the event is pruned
+		int prunedCount = 0;
 		Set<Entry<Integer, Double>> set = this.TWTF.entrySet();
 		Iterator<Entry<Integer, Double>> iterator = set.iterator();
 		while (iterator.hasNext())
 		{
 			Entry<Integer, Double> entry = iterator.next();
-			if (null == this.delta || entry.getValue().doubleValue() >= this.delta.doubleValue())
+			if (this.reachesDelta(entry.getValue().doubleValue()))
 				OTWTF.put(entry.getKey(), entry.getValue());
 			else
-				for (int i = 0; i < this.transactions.size(); ++i)
-					this.transactions.get(i).remove(entry.getKey());
+			{
+				isPruned[this.eventIndexes.get(entry.getKey()).intValue()] = true;
+				++prunedCount;
+			}
 		}
 		this.TWTF = OTWTF;
 		
+		if (prunedCount > 0) // remove all the pruned events in one pass over the database and drop the empty transactions (the TWTF and TTF values are kept)
+		{
+			int pointer = 0;
+			for (Transaction transaction : this.transactions)
+			{
+				transaction.events.keySet().removeIf(event -> isPruned[this.eventIndexes.get(event).intValue()]);
+				if (!transaction.events.isEmpty())
+					this.transactions.set(pointer++, transaction);
+			}
+			this.transactions.subList(pointer, this.transactions.size()).clear();
+		}
+		
 		if (this.debugLevel >= DEBUG_LEVEL_PROCEDURE)
 		{
 			printTitle(algoName + " - pruneItem()");
@@ -1611,21 +2271,27 @@ public class AlgoTTFE
 		return;
 	}
 	
-	/* Sort TTFE */
+	/* Sort TTFE by the indexes of the events in the sequence (O(len * log(len)) per transaction), which is kept by pruneItem() */
 	private void sortTTFE()
 	{
-		for (int i = 0; i < this.transactions.size(); ++i)
+		for (Transaction transaction : this.transactions)
 		{
-			Transaction transaction = this.transactions.get(i), newTransaction = new Transaction(transaction.tid, transaction.topK, transaction.alpha, transaction.beta);
-			Set<Entry<Integer, Double>> set = this.TWTF.entrySet();
-			Iterator<Entry<Integer, Double>> iterator = set.iterator();
-			while (iterator.hasNext())
+			int[] indexes = new int[transaction.events.size()];
+			boolean isSorted = true;
+			int pointer = 0;
+			for (Integer event : transaction.events.keySet())
 			{
-				Entry<Integer, Double> entry = iterator.next();
-				if (transaction.contains((Integer)entry.getKey()))
-					newTransaction.put(entry.getKey(), transaction.events.get(entry.getKey()));
+				indexes[pointer] = this.eventIndexes.get(event).intValue();
+				isSorted &= 0 == pointer || indexes[pointer - 1] < indexes[pointer];
+				++pointer;
 			}
-			this.transactions.set(i, newTransaction);
+			if (isSorted)
+				continue;
+			Arrays.sort(indexes);
+			LinkedHashMap<Integer, TF> events = new LinkedHashMap<Integer, TF>();
+			for (int index : indexes)
+				events.put(this.sequence[index], transaction.events.get(this.sequence[index]));
+			transaction.events = events;
 		}
 		
 		if (this.debugLevel >= DEBUG_LEVEL_PROCEDURE)
@@ -1642,11 +2308,131 @@ public class AlgoTTFE
 		return;
 	}
 	
+	/* Merge TTFE: the transactions sorted by sortTTFE() are identical iff their sequences of events are equal, and a merged one keeps the tid of the first one 
+	 * (the reordered transactions are merged with their neighbours instead of being hashed, and their tids are renumbered afterwards) */
+	private void mergeTTFE()
+	{
+		int originalSize = this.transactions.size();
+		int[][] sortedIndexes = this.reordering ? this.reorderTTFE() : null; // the indexes of the events of each reordered transaction (Down)
+		HashMap<ArrayList<Integer>, Transaction> mergedTransactions = null == sortedIndexes ? new HashMap<ArrayList<Integer>, Transaction>() : null;
+		HashSet<Transaction> copies = new HashSet<Transaction>(); // the merged transactions owning their TF values (the others may share them with an index or the other partitions)
+		int pointer = 0;
+		for (int position = 0; position < this.transactions.size(); ++position)
+		{
+			Transaction transaction = this.transactions.get(position), mergedTransaction = null;
+			if (null == sortedIndexes)
+				mergedTransaction = mergedTransactions.putIfAbsent(new ArrayList<Integer>(transaction.events.keySet()), transaction);
+			else if (position > 0 && Arrays.equals(sortedIndexes[position - 1], sortedIndexes[position])) // the identical transactions are adjacent
+				mergedTransaction = this.transactions.get(pointer - 1);
+			if (null == mergedTransaction) // the first one
+			{
+				this.transactions.set(pointer++, transaction);
+				continue;
+			}
+			if (copies.add(mergedTransaction)) // copy on the first merge
+			{
+				for (Entry<Integer, TF> entry : mergedTransaction.events.entrySet())
+				{
+					TF tf = entry.getValue();
+					entry.setValue(new TF(tf.alpha, tf.beta, tf.threat, tf.frequency, tf.tf, tf.rtf));
+				}
+			}
+			mergedTransaction.ttf += transaction.ttf;
+			for (Entry<Integer, TF> entry : mergedTransaction.events.entrySet())
+			{
+				TF tf = entry.getValue(), tfX = transaction.events.get(entry.getKey());
+				tf.threat += tfX.threat;
+				tf.frequency += tfX.frequency;
+				tf.tf += tfX.tf;
+				tf.rtf += tfX.rtf;
+			}
+		}
+		this.transactions.subList(pointer, this.transactions.size()).clear();
+		if (sortedIndexes != null) // the tids follow the new order so that the transposed tid-lists stay sorted by tids (Up)
+			for (int tid = 0; tid < this.transactions.size(); ++tid)
+				this.transactions.get(tid).tid = tid;
+		
+		if (!copies.isEmpty() || sortedIndexes != null) // rebuild Index (Event -> Transaction) without changing the one shared with an index
+		{
+			Event[] events = new Event[this.sequence.length];
+			for (int i = 0; i < this.sequence.length; ++i)
+				events[i] = new Event(this.sequence[i]);
+			for (Transaction transaction : this.transactions)
+				for (Entry<Integer, TF> entry : transaction.events.entrySet())
+					events[this.eventIndexes.get(entry.getKey()).intValue()].transactions.put(transaction.tid, entry.getValue());
+			this.events = events;
+		}
+		
+		if (this.debugLevel >= DEBUG_LEVEL_PROCEDURE)
+		{
+			printTitle(algoName + " - mergeTTFE()");
+			if (this.debugLevel >= DEBUG_LEVEL_INFO)
+				System.out.println("OriginalSize: " + originalSize + "\t\tCurrentSize: " + this.transactions.size() + "\t\tMerged: " + (originalSize - this.transactions.size()) + "\n");
+		}
+		return;
+	}
+	
+	/* Reorder TTFE: sort the transactions in the reflected Gray-code order of their events, where the bit of an event is higher as its index in the sequence is larger, 
+	 * so that the neighbouring transactions differ in few events (the identical ones being adjacent) and the tids of the frequent events form long runs; 
+	 * return the indexes of the events of each transaction in the new order (Down) */
+	private int[][] reorderTTFE()
+	{
+		int[][] indexes = new int[this.transactions.size()][];
+		Integer[] order = new Integer[indexes.length];
+		for (int position = 0; position < indexes.length; ++position)
+		{
+			Transaction transaction = this.transactions.get(position);
+			indexes[position] = new int[transaction.events.size()];
+			int pointer = indexes[position].length;
+			for (Integer event : transaction.events.keySet()) // the events are sorted by sortTTFE() (Up)
+				indexes[position][--pointer] = this.eventIndexes.get(event).intValue();
+			order[position] = position;
+		}
+		Arrays.sort(order, (position1, position2) -> compareGrayCode(indexes[position1], indexes[position2])); // stable, so that the merged values are summed in the original order
+		
+		ArrayList<Transaction> transactions = new ArrayList<Transaction>(this.transactions);
+		int[][] sortedIndexes = new int[indexes.length][];
+		for (int position = 0; position < indexes.length; ++position)
+		{
+			this.transactions.set(position, transactions.get(order[position]));
+			sortedIndexes[position] = indexes[order[position]];
+		}
+		
+		if (this.debugLevel >= DEBUG_LEVEL_PROCEDURE)
+		{
+			printTitle(algoName + " - reorderTTFE()");
+			if (this.debugLevel >= DEBUG_LEVEL_INFO)
+			{
+				for (Transaction transaction : this.transactions)
+					System.out.println(transaction);
+				System.out.println();
+			}
+		}
+		return sortedIndexes;
+	}
+	
+	/* Compare two sets of indexes (Down) in the reflected Gray-code order: the set owning the highest different bit comes later iff the bits above it are of even parity */
+	private static int compareGrayCode(int[] indexes1, int[] indexes2)
+	{
+		int common = 0;
+		while (common < indexes1.length && common < indexes2.length && indexes1[common] == indexes2[common])
+			++common;
+		int index1 = common < indexes1.length ? indexes1[common] : -1, index2 = common < indexes2.length ? indexes2[common] : -1;
+		if (index1 == index2) // identical
+			return 0;
+		return (index1 > index2) == (0 == common % 2) ? 1 : -1;
+	}
+	
 	/* Generate Table */
 	private void generateTable()
 	{
 		if (this.TWTF.isEmpty() || null == this.sequence)
 			return;
+		if (1 == this.TWTF.size()) // no continuous sequence to sum (e.g. a small partition after pruneItem()), while the empty table still lets generateTree() build the root
+		{
+			this.LETF = new Table(new double[0][0], new int[0], "LETF");
+			return;
+		}
 		int columns[] = new int[this.TWTF.size() - 1], index[] = new int[this.TWTF.size() - 1];
 		double[][] values = new double[this.TWTF.size() - 1][this.TWTF.size() - 1];
 		Set<Entry<Integer, Double>> setTwtf = this.TWTF.entrySet();
@@ -1665,36 +2451,28 @@ public class AlgoTTFE
 			}
 		}
 		this.LETF = new Table(values, index, columns, "LETF");
+		int[] tableIndexes = new int[this.sequence.length]; // the index in the sequence -> the index in the pruned TWTF (the row of LETF and the column plus 1)
+		int pointer = 0;
+		for (Integer event : this.TWTF.keySet())
+			tableIndexes[this.eventIndexes.get(event).intValue()] = pointer++;
 		
-		for (Transaction transaction : this.transactions) // walk through every transaction
+		for (Transaction transaction : this.transactions) // walk through every transaction sorted by sortTTFE()
 		{
-			Set<Entry<Integer, TF>> setEvents = transaction.events.entrySet();
-			Iterator<Entry<Integer, TF>> iteratorEvent = setEvents.iterator();
-			ArrayList<Integer> itemSequence = new ArrayList<>(); // sequence in a line
-			while (iteratorEvent.hasNext()) // per item
+			int[] indexes = new int[transaction.events.size()];
+			double[] tfs = new double[indexes.length];
+			pointer = 0;
+			for (Entry<Integer, TF> entry : transaction.events.entrySet())
 			{
-				Entry<Integer, TF> entryItem = iteratorEvent.next();
-				itemSequence.add((Integer)entryItem.getKey());
+				indexes[pointer] = this.eventIndexes.get(entry.getKey()).intValue();
+				tfs[pointer++] = entry.getValue().tf;
 			}
-			for (int i = 0; i < this.sequence.length - 1; ++i)
+			for (int i = 0; i < indexes.length - 1; ++i)
 			{
-				int p = this.sequence[i]; // the head of the sequence
-				if (!transaction.events.containsKey(p)) // skip events not found
-					continue;
-				ArrayList<Integer> subSequence = new ArrayList<>(); // subsequence
-				subSequence.add(p);
-				double pqValue = transaction.events.get(p).tf;
-				for (int j = i + 1; j < this.sequence.length; ++j)
+				double pqValue = tfs[i]; // the head of the sequence
+				for (int j = i + 1; j < indexes.length && indexes[j] == indexes[j - 1] + 1; ++j) // the sequence is continuous as long as the indexes are
 				{
-					int q = this.sequence[j]; // the tail of the sequence
-					if (!transaction.events.containsKey(q)) // break if it is not found
-						break;
-					subSequence.add(q);
-					pqValue += transaction.events.get(q).tf; // the sum of the sequence
-					if (transaction.isSequence(subSequence))
-						this.LETF.addValueByName(p, q, pqValue);
-					else // the inner loop is not continuous
-						break; // break the inner loop
+					pqValue += tfs[j]; // the sum of the sequence
+					this.LETF.addValueByIndex(tableIndexes[indexes[i]], tableIndexes[indexes[j]] - 1, pqValue);
 				}
 			}
 		}
@@ -1727,7 +2505,7 @@ public class AlgoTTFE
 				if (this.letf_e.size() >= this.topK) // there are already k elements in the queue
 					break;
 			}
-			if (null == this.delta || this.delta.doubleValue() < this.letf_e.peek().doubleValue())
+			if (this.letf_e.size() >= this.topK && (null == this.delta || this.delta.doubleValue() < this.letf_e.peek().doubleValue())) // fewer than k values bound nothing
 				this.delta = Double.valueOf(this.letf_e.peek());
 		}
 		
@@ -1767,7 +2545,7 @@ public class AlgoTTFE
 							break;
 					}
 				}
-		if (!this.letf_lb.isEmpty() && (null == this.delta || this.delta.doubleValue() < this.letf_lb.peek().doubleValue()))
+		if (!this.letf_lb.isEmpty() && this.letf_lb.size() >= this.topK && (null == this.delta || this.delta.doubleValue() < this.letf_lb.peek().doubleValue()))
 			this.delta = Double.valueOf(this.letf_lb.peek());
 		
 		if (this.debugLevel >= DEBUG_LEVEL_PROCEDURE)
@@ -1786,115 +2564,100 @@ public class AlgoTTFE
 	/* Generate the tree */
 	private void generateTree()
 	{
-		if (this.LETF != null)
+		this.optimalityGap = null;
+		if (this.LETF != null && this.memoryBudget > 0) // memory-budgeted mode
+			this.generateTreeSpill();
+		else if (this.LETF != null)
 		{
-			this.tree = new Tree(this.sequence);
-			ArrayDeque<ArrayList<Integer>> queueIndex = new ArrayDeque<ArrayList<Integer>>(); // to implement layer-by-layer tree building
-			ArrayDeque<TreeNode> queueTreeNode = new ArrayDeque<TreeNode>();
+			this.eventIndexes.clear();
 			for (int eventIndex = 0; eventIndex < this.sequence.length; ++eventIndex)
+				this.eventIndexes.put(this.sequence[eventIndex], eventIndex);
+			this.arenas = this.offHeap ? new OffHeapArena[] { new OffHeapArena(), new OffHeapArena(), new OffHeapArena() } : null;
+			this.recordSize = PRECISION_FLOAT == this.precision ? floatRecordSize : offHeapRecordSize;
+			this.tree = new Tree(this.sequence);
+			if (null == this.arenas && (this.diffsetDepth > 0 || this.diffsetRatio < 1))
 			{
-				ArrayList<Integer> subSequenceIndex = new ArrayList<Integer>();
-				subSequenceIndex.add(eventIndex);
-				queueIndex.offer(subSequenceIndex);
-				queueTreeNode.offer(this.tree.roots.get(this.sequence[subSequenceIndex.get(0)]));
+				this.diffsetBuffer = new int[this.transactions.size()];
+				this.recoveredTreeNodes = new TreeNode[this.sequence.length + 1];
+				this.recoveredTidLists = new TidList[this.sequence.length + 1];
+				if (this.kernels)
+				{
+					this.ranksX = new int[this.transactions.size()];
+					this.ranksY = new int[this.transactions.size()];
+					this.rootTids = new int[this.sequence.length][];
+				}
 			}
-			while (!queueIndex.isEmpty() && !queueTreeNode.isEmpty()) // && is for security consideration
+			boolean isBestFirst = null == this.arenas && (this.timeBudget > 0 || this.nodeBudget > 0); // a budgeted tree in the heap is built by aetf (Down) so that a stopped run has expanded the most promising nodes
+			Queue<TreeNode> queueTreeNode = isBestFirst ? new PriorityQueue<TreeNode>((node1, node2) -> Double.compare(node2.eetf + node2.retf, node1.eetf + node1.retf))
+				: new ArrayDeque<TreeNode>(); // to implement layer-by-layer tree building (a node carries its depth and the index of its last event)
+			int[][] rootTids = new int[this.sequence.length][];
+			TF[][] rootTFs = this.transposeTransactions(rootTids);
+			for (int eventIndex = 0; eventIndex < this.sequence.length; ++eventIndex) // the roots are computed first since the children of a root read the other roots
 			{
-				++this.treeNodeCount;
-				ArrayList<Integer> subSequenceIndex = queueIndex.poll(), subSequence = new ArrayList<Integer>();
-				for (Integer eventIndex : subSequenceIndex)
-					subSequence.add(this.sequence[eventIndex.intValue()]);
-				TreeNode currentTreeNode = queueTreeNode.poll();
-				
-				if (subSequence.size() == 1) // 1-itemset
+				TreeNode rootTreeNode = this.tree.roots.get(this.sequence[eventIndex]);
+				if (this.arenas != null)
+					this.computeRootTreeNodeOffHeap(rootTreeNode, rootTids[eventIndex], rootTFs[eventIndex]);
+				else
 				{
-					currentTreeNode.eetf = this.ETF.get(subSequence.get(0));
-					for (Transaction transaction : this.transactions)
-						if (transaction.events.containsKey(subSequence.get(0)))
-						{
-							currentTreeNode.transactions.put(transaction.tid, transaction.events.get(subSequence.get(0)));
-							currentTreeNode.retf += transaction.events.get(subSequence.get(0)).rtf;
-						}
+					rootTreeNode.eetf = this.ETF.get(rootTreeNode.event);
+					rootTreeNode.tids = new TidSet(rootTids[eventIndex], rootTids[eventIndex].length);
+					for (TF tf : rootTFs[eventIndex])
+						rootTreeNode.retf += tf.rtf;
+					rootTreeNode.transactions = rootTFs[eventIndex];
+					rootTreeNode.size = rootTreeNode.transactions.length;
 				}
-				else if (subSequence.size() == 2) // 2-itemset
-				{
-					HashSet<Integer> interSet = currentTreeNode.parent.getInterset(this.events[subSequenceIndex.get(1)]);
-					
-					if (!interSet.isEmpty())
-						for (Integer transactionID : interSet)
-						{
-							currentTreeNode.transactions.put(
-								transactionID, 
-								new TF(
-									this.alpha, 
-									this.beta, 
-									this.events[subSequenceIndex.get(0)].transactions.get(transactionID).threat + this.events[subSequenceIndex.get(1)].transactions.get(transactionID).threat,
-									this.events[subSequenceIndex.get(0)].transactions.get(transactionID).frequency + this.events[subSequenceIndex.get(1)].transactions.get(transactionID).frequency, 
-									this.events[subSequenceIndex.get(0)].transactions.get(transactionID).tf + this.events[subSequenceIndex.get(1)].transactions.get(transactionID).tf, 
-									this.events[subSequenceIndex.get(subSequenceIndex.size() - 1)].transactions.get(transactionID).rtf
-								)
-							);
-							currentTreeNode.eetf += this.events[subSequenceIndex.get(0)].transactions.get(transactionID).tf + this.events[subSequenceIndex.get(1)].transactions.get(transactionID).tf;
-							currentTreeNode.retf += this.events[subSequenceIndex.get(subSequenceIndex.size() - 1)].transactions.get(transactionID).rtf;
-						}
-				}
-				else if (subSequence.size() > 2) // 3-itemset and above
+				rootTids[eventIndex] = null;
+				rootTFs[eventIndex] = null;
+				queueTreeNode.offer(rootTreeNode);
+			}
+			int currentDepth = 0;
+			while (!queueTreeNode.isEmpty())
+			{
+				if (this.isOverBudget()) // the queued nodes bound themselves and all the nodes left
 				{
-					ArrayList<Integer> subSequenceB = new ArrayList<Integer>(subSequence);
-					subSequenceB.remove(subSequenceB.size() - 2);
-					TreeNode parentNearTreeNode = currentTreeNode.parent.parent.findTargetChildTreeNode(subSequenceB);
-					HashSet<Integer> interSet = currentTreeNode.parent.parent.getInterset(currentTreeNode.parent.getInterset(parentNearTreeNode));
-					
-					if (!interSet.isEmpty())
-						for (Integer transactionID : interSet)
-						{
-							currentTreeNode.transactions.put(
-								transactionID, 
-								new TF(
-									this.alpha, 
-									this.beta, 
-									currentTreeNode.parent.transactions.get(transactionID).threat + parentNearTreeNode.transactions.get(transactionID).threat - currentTreeNode.parent.parent.transactions.get(transactionID).threat, 
-									currentTreeNode.parent.transactions.get(transactionID).frequency + parentNearTreeNode.transactions.get(transactionID).frequency - currentTreeNode.parent.parent.transactions.get(transactionID).frequency, 
-									currentTreeNode.parent.transactions.get(transactionID).tf + parentNearTreeNode.transactions.get(transactionID).tf - currentTreeNode.parent.parent.transactions.get(transactionID).tf, 
-									parentNearTreeNode.transactions.get(transactionID).rtf
-								)
-							);
-							currentTreeNode.eetf += currentTreeNode.transactions.get(transactionID).tf;
-							currentTreeNode.retf += currentTreeNode.transactions.get(transactionID).rtf;
-						}
+					double upperBound = 0;
+					for (TreeNode treeNode : queueTreeNode)
+						upperBound = Math.max(upperBound, treeNode.eetf + treeNode.retf);
+					this.stopOnBudget(upperBound);
+					break;
 				}
+				++this.treeNodeCount;
+				TreeNode currentTreeNode = queueTreeNode.poll();
+				if (this.arenas != null && currentTreeNode.depth > currentDepth) // the children of a new layer reuse the arena of the layer three levels above them
+					this.arenas[((currentDepth = currentTreeNode.depth) + 1) % this.arenas.length].reset();
 				
 				currentTreeNode.aetf = currentTreeNode.eetf + currentTreeNode.retf;
-				if (null == this.delta || currentTreeNode.eetf > this.delta.doubleValue()) // can be added into prior queue
+				if (this.reachesDelta(currentTreeNode.eetf)) // can be added into prior queue
 					if (this.switches[5])
 						this.delta = currentTreeNode.update(this.finalResults, this.topK, this.delta); // update delta if the prior queue is full (length >= topK)
 					else
 						currentTreeNode.update(this.finalResults, this.topK, this.delta);
 				if (
 					!this.switches[4] // do not build tree
-					|| (null == this.delta || currentTreeNode.aetf > this.delta.doubleValue()) // can build children
+					|| this.reachesDelta(currentTreeNode.aetf) // can build children
 				)
 				{
-					for (int subEventIndex = subSequenceIndex.get(subSequenceIndex.size() - 1) + 1; subEventIndex < this.sequence.length; ++subEventIndex)		
-					{
-						ArrayList<Integer> childSequenceIndex = new ArrayList<Integer>(subSequenceIndex);
-						childSequenceIndex.add(Integer.valueOf(subEventIndex));
-						ArrayList<Integer> childSequence = new ArrayList<Integer>(subSequence);
-						childSequence.add(Integer.valueOf(this.sequence[subEventIndex]));
-						TreeNode childTreeNode = new TreeNode(childSequence);
-						currentTreeNode.children.add(childTreeNode);
-						childTreeNode.parent = currentTreeNode;
-					}
-					int pointer = 0;
-					for (int subEventIndex = subSequenceIndex.get(subSequenceIndex.size() - 1) + 1; subEventIndex < this.sequence.length; ++subEventIndex)		
+					currentTreeNode.children.ensureCapacity(this.sequence.length - currentTreeNode.index - 1);
+					for (int subEventIndex = currentTreeNode.index + 1; subEventIndex < this.sequence.length; ++subEventIndex)
 					{
-						ArrayList<Integer> childSequenceIndex = new ArrayList<Integer>(subSequenceIndex);
-						childSequenceIndex.add(Integer.valueOf(subEventIndex));
-						queueIndex.offer(childSequenceIndex);
-						queueTreeNode.offer(currentTreeNode.children.get(pointer++));
+						TreeNode siblingTreeNode = 1 == currentTreeNode.depth ? this.tree.roots.get(this.sequence[subEventIndex]) : currentTreeNode.parent.getChildTreeNode(subEventIndex);
+						TreeNode childTreeNode = null == siblingTreeNode ? null // the sibling has been abandoned so that the child cannot reach delta either
+							: this.arenas != null ? this.computeChildTreeNodeOffHeap(currentTreeNode, siblingTreeNode, subEventIndex) : this.computeChildTreeNode(currentTreeNode, siblingTreeNode, subEventIndex);
+						currentTreeNode.children.add(childTreeNode); // null keeps the children dense over the indexes
+						if (childTreeNode != null)
+							queueTreeNode.offer(childTreeNode);
 					}
 				}
 			}
+			if (this.arenas != null)
+				for (OffHeapArena arena : this.arenas)
+					arena.free();
+			this.arenas = null;
+			this.diffsetBuffer = null;
+			this.recoveredTreeNodes = null;
+			this.recoveredTidLists = null;
+			this.ranksX = this.ranksY = null;
+			this.rootTids = null;
 		}
 		
 		if (this.debugLevel >= DEBUG_LEVEL_PROCEDURE)
@@ -1904,12 +2667,548 @@ public class AlgoTTFE
 			{
 				System.out.println("delta = " + this.delta + (this.switches[4] ? " (#4)" : "") + (this.switches[5] ? " (#5)" : ""));
 				System.out.println("Tree: " + this.tree);
+				if (this.memoryBudget > 0)
+					System.out.println("Spilled bytes: " + this.spilledBytes);
+				if (this.optimalityGap != null)
+					System.out.println("Stopped by the budget with the optimality gap " + this.optimalityGap);
 				System.out.println("Count of tree nodes: " + this.treeNodeCount + "\n");
 			}
 		}
 		return;
 	}
 	
+	/* Compute the child of a tree node ending with the event of index from the sibling of the node ending with it (Px + Py - P, or x + y for 2-itemsets). 
+	 * As the remaining utility in THUI's construct(), the aetf of the node minus the tf and rtf of its transactions missing in the sibling bounds the aetf of the child 
+	 * and of every node extending the node with the event (the sibling of their parents), so the child is abandoned (null) once the bound falls to delta. */
+	private TreeNode computeChildTreeNode(TreeNode parentTreeNode, TreeNode siblingTreeNode, int index)
+	{
+		if (parentTreeNode.diffs != null || siblingTreeNode.diffs != null || parentTreeNode.depth > 1 && parentTreeNode.parent.diffs != null)
+			return this.computeChildTreeNodeDiffset(parentTreeNode, index);
+		boolean isPrunable = this.switches[4] && this.delta != null;
+		double bound = parentTreeNode.aetf;
+		int size = 0, lostSize = 0;
+		int[] tids = new int[Math.min(parentTreeNode.transactions.length, siblingTreeNode.transactions.length)];
+		TF[] transactions = new TF[tids.length];
+		double eetf = 0, retf = 0;
+		TidSet.Cursor parentCursor = parentTreeNode.tids.cursor(), siblingCursor = siblingTreeNode.tids.cursor(); // merge the tid-sets by walking the parent and skipping in the sibling
+		TidSet.Cursor grandparentCursor = 1 == parentTreeNode.depth ? null : parentTreeNode.parent.tids.cursor();
+		for (int i = 0; i < parentTreeNode.transactions.length; ++i)
+		{
+			int tid = parentCursor.next(), rankY = siblingCursor.advance(tid);
+			TF tfX = parentTreeNode.transactions[i];
+			if (rankY < 0)
+			{
+				bound -= tfX.tf + tfX.rtf;
+				if (isPrunable && !this.reachesDelta(bound)) // early abandon
+					return null;
+				if (this.diffsetBuffer != null)
+					this.diffsetBuffer[lostSize++] = tid;
+				continue;
+			}
+			TF tf = null, tfY = siblingTreeNode.transactions[rankY];
+			if (1 == parentTreeNode.depth) // 2-itemset
+				tf = new TF(this.alpha, this.beta, tfX.threat + tfY.threat, tfX.frequency + tfY.frequency, tfX.tf + tfY.tf, tfY.rtf);
+			else // 3-itemset and above
+			{
+				TF tfP = parentTreeNode.parent.transactions[grandparentCursor.advance(tid)];
+				tf = new TF(this.alpha, this.beta, tfX.threat + tfY.threat - tfP.threat, tfX.frequency + tfY.frequency - tfP.frequency, tfX.tf + tfY.tf - tfP.tf, tfY.rtf);
+			}
+			tids[size] = tid;
+			transactions[size++] = tf;
+			eetf += tf.tf;
+			retf += tf.rtf;
+		}
+		return this.newChildTreeNode(parentTreeNode, index, tids, transactions, size, lostSize, eetf, retf);
+	}
+	
+	/* Compute the child as computeChildTreeNode() when the node, its sibling or the parent of the node is a diffset node, 
+	 * from the recovered tid-list of the node and the root of the event (Px + y, since Py - P is y in every transaction containing Py) */
+	private TreeNode computeChildTreeNodeDiffset(TreeNode parentTreeNode, int index)
+	{
+		boolean isPrunable = this.switches[4] && this.delta != null;
+		double bound = parentTreeNode.aetf;
+		TidList x = this.recoverTidList(parentTreeNode);
+		TreeNode rootTreeNode = this.tree.roots.get(this.sequence[index]);
+		int size = 0, lostSize = 0;
+		int[] tids = new int[Math.min(x.size, rootTreeNode.size)];
+		TF[] transactions = new TF[tids.length];
+		double eetf = 0, retf = 0;
+		if (this.rootTids != null) // the same walk with TidKernels over the tids of the root as an array
+		{
+			if (null == this.rootTids[index])
+				this.rootTids[index] = rootTreeNode.tids.toArray();
+			int count = TidKernels.intersect(x.tids, x.size, this.rootTids[index], rootTreeNode.size, this.ranksX, this.ranksY, x.tfs, x.rtfs, bound, 
+				isPrunable ? this.getDeltaFloor() : Double.NEGATIVE_INFINITY);
+			if (count < 0) // early abandon
+				return null;
+			for (int i = 0, k = 0; i < x.size; ++i)
+				if (k < count && this.ranksX[k] == i)
+				{
+					TF tfY = rootTreeNode.transactions[this.ranksY[k++]], tf = new TF(this.alpha, this.beta, x.threats[i] + tfY.threat, x.frequencies[i] + tfY.frequency, x.tfs[i] + tfY.tf, tfY.rtf);
+					tids[size] = x.tids[i];
+					transactions[size++] = tf;
+					eetf += tf.tf;
+					retf += tf.rtf;
+				}
+				else
+					this.diffsetBuffer[lostSize++] = x.tids[i];
+			return this.newChildTreeNode(parentTreeNode, index, tids, transactions, size, lostSize, eetf, retf);
+		}
+		TidSet.Cursor rootCursor = rootTreeNode.tids.cursor();
+		for (int i = 0; i < x.size; ++i)
+		{
+			int tid = x.tids[i], rankY = rootCursor.advance(tid);
+			if (rankY < 0)
+			{
+				bound -= x.tfs[i] + x.rtfs[i];
+				if (isPrunable && !this.reachesDelta(bound)) // early abandon
+					return null;
+				this.diffsetBuffer[lostSize++] = tid;
+				continue;
+			}
+			TF tfY = rootTreeNode.transactions[rankY], tf = new TF(this.alpha, this.beta, x.threats[i] + tfY.threat, x.frequencies[i] + tfY.frequency, x.tfs[i] + tfY.tf, tfY.rtf);
+			tids[size] = tid;
+			transactions[size++] = tf;
+			eetf += tf.tf;
+			retf += tf.rtf;
+		}
+		return this.newChildTreeNode(parentTreeNode, index, tids, transactions, size, lostSize, eetf, retf);
+	}
+	
+	/* Create a child from its tid-list, or from the lost tids in diffsetBuffer as a diffset node below diffsetDepth or when it keeps more than diffsetRatio of the tids of the node */
+	private TreeNode newChildTreeNode(TreeNode parentTreeNode, int index, int[] tids, TF[] transactions, int size, int lostSize, double eetf, double retf)
+	{
+		TreeNode childTreeNode = new TreeNode(parentTreeNode, this.sequence[index], index);
+		if (this.diffsetBuffer != null && (this.diffsetDepth > 0 && childTreeNode.depth > this.diffsetDepth || size > this.diffsetRatio * parentTreeNode.size))
+			childTreeNode.diffs = new TidSet(this.diffsetBuffer, lostSize);
+		else
+		{
+			childTreeNode.tids = new TidSet(tids, size);
+			childTreeNode.transactions = size == transactions.length ? transactions : Arrays.copyOf(transactions, size);
+		}
+		childTreeNode.size = size;
+		childTreeNode.eetf = eetf;
+		childTreeNode.retf = retf;
+		return childTreeNode;
+	}
+	
+	/* Recover the tid-list (sorted by tids (Up)) of a node, where a diffset node takes the one of its parent without the lost tids plus the values of its event from the root */
+	private TidList recoverTidList(TreeNode treeNode)
+	{
+		if (this.recoveredTreeNodes != null && this.recoveredTreeNodes[treeNode.depth] == treeNode)
+			return this.recoveredTidLists[treeNode.depth];
+		TidList tidList = new TidList(treeNode.size);
+		if (null == treeNode.diffs)
+		{
+			TidSet.Cursor cursor = treeNode.tids.cursor();
+			for (TF tf : treeNode.transactions)
+				tidList.add(cursor.next(), tf.threat, tf.frequency, tf.tf, tf.rtf);
+		}
+		else
+		{
+			TidList parent = this.recoverTidList(treeNode.parent);
+			TreeNode rootTreeNode = this.tree.roots.get(treeNode.event);
+			TidSet.Cursor diffsCursor = treeNode.diffs.cursor(), rootCursor = rootTreeNode.tids.cursor();
+			for (int i = 0; i < parent.size; ++i)
+				if (diffsCursor.advance(parent.tids[i]) < 0)
+				{
+					TF tfY = rootTreeNode.transactions[rootCursor.advance(parent.tids[i])];
+					tidList.add(parent.tids[i], parent.threats[i] + tfY.threat, parent.frequencies[i] + tfY.frequency, parent.tfs[i] + tfY.tf, tfY.rtf);
+				}
+		}
+		if (this.recoveredTreeNodes != null)
+		{
+			this.recoveredTreeNodes[treeNode.depth] = treeNode;
+			this.recoveredTidLists[treeNode.depth] = tidList;
+		}
+		return tidList;
+	}
+	
+	/* Transpose the database into the tids and the TFs of each event in the sorted sequence (sorted by tids (Up)), 
+	 * so that the roots are computed in one pass over the database instead of looking every root up in every transaction */
+	private TF[][] transposeTransactions(int[][] tids)
+	{
+		int[] indexes = null; // event -> index in the sorted sequence of events when the events are dense enough (eventIndexes otherwise)
+		int minEvent = Integer.MAX_VALUE, maxEvent = -1;
+		for (int event : this.sequence)
+		{
+			minEvent = Math.min(minEvent, event);
+			maxEvent = Math.max(maxEvent, event);
+		}
+		if (minEvent >= 0 && maxEvent < 4 * this.sequence.length + 1024)
+		{
+			indexes = new int[maxEvent + 1];
+			Arrays.fill(indexes, -1);
+			for (int eventIndex = 0; eventIndex < this.sequence.length; ++eventIndex)
+				indexes[this.sequence[eventIndex]] = eventIndex;
+		}
+		else
+		{
+			this.eventIndexes.clear();
+			for (int eventIndex = 0; eventIndex < this.sequence.length; ++eventIndex)
+				this.eventIndexes.put(this.sequence[eventIndex], eventIndex);
+		}
+		
+		int[] counts = new int[this.sequence.length];
+		for (Transaction transaction : this.transactions)
+			for (Integer event : transaction.events.keySet())
+			{
+				int eventIndex = this.getEventIndex(indexes, event);
+				if (eventIndex >= 0)
+					++counts[eventIndex];
+			}
+		TF[][] tfs = new TF[this.sequence.length][];
+		for (int eventIndex = 0; eventIndex < this.sequence.length; ++eventIndex)
+		{
+			tids[eventIndex] = new int[counts[eventIndex]];
+			tfs[eventIndex] = new TF[counts[eventIndex]];
+			counts[eventIndex] = 0;
+		}
+		for (Transaction transaction : this.transactions)
+			for (Entry<Integer, TF> entry : transaction.events.entrySet())
+			{
+				int eventIndex = this.getEventIndex(indexes, entry.getKey());
+				if (eventIndex >= 0)
+				{
+					tids[eventIndex][counts[eventIndex]] = transaction.tid;
+					tfs[eventIndex][counts[eventIndex]++] = entry.getValue();
+				}
+			}
+		return tfs;
+	}
+	
+	private int getEventIndex(int[] indexes, int event) // -1 for the events out of the sequence
+	{
+		if (indexes != null)
+			return 0 <= event && event < indexes.length ? indexes[event] : -1;
+		Integer eventIndex = this.eventIndexes.get(event);
+		return null == eventIndex ? -1 : eventIndex.intValue();
+	}
+	
+	/* Compute a root from its transposed tids and TFs into its off-heap tid-list (sorted by tids (Up)) */
+	private void computeRootTreeNodeOffHeap(TreeNode rootTreeNode, int[] tids, TF[] tfs)
+	{
+		OffHeapArena arena = this.arenas[rootTreeNode.depth % this.arenas.length];
+		rootTreeNode.eetf = this.ETF.get(rootTreeNode.event);
+		rootTreeNode.address = arena.allocate(tfs.length * this.recordSize);
+		for (int i = 0; i < tfs.length; ++i)
+		{
+			TF tf = tfs[i];
+			putRecord(arena, rootTreeNode.address + (long)rootTreeNode.size++ * this.recordSize, tids[i], tf.threat, tf.frequency, tf.tf, tf.rtf);
+			rootTreeNode.retf += tf.rtf;
+		}
+		return;
+	}
+	
+	/* Compute the child as computeChildTreeNode() from the off-heap tid-lists (sorted by tids (Up)) of the node, the sibling and the parent of the node, 
+	 * where the tids of the node and the sibling are subsets of the ones of the parent */
+	private TreeNode computeChildTreeNodeOffHeap(TreeNode parentTreeNode, TreeNode siblingTreeNode, int index)
+	{
+		boolean isPrunable = this.switches[4] && this.delta != null;
+		double bound = parentTreeNode.aetf;
+		TreeNode x = parentTreeNode, y = siblingTreeNode, p = 1 == x.depth ? null : x.parent;
+		OffHeapArena arena = this.arenas[(x.depth + 1) % this.arenas.length], arenaXY = this.arenas[x.depth % this.arenas.length];
+		OffHeapArena arenaP = null == p ? null : this.arenas[p.depth % this.arenas.length];
+		long address = arena.allocate(Math.min(x.size, y.size) * this.recordSize);
+		int size = 0;
+		double eetf = 0, retf = 0;
+		for (int i = 0, j = 0, k = 0; i < x.size; )
+		{
+			long addressX = x.address + (long)i * this.recordSize, addressY = y.address + (long)j * this.recordSize;
+			int tidX = arenaXY.getInt(addressX), tidY = j < y.size ? arenaXY.getInt(addressY) : Integer.MAX_VALUE;
+			if (tidX < tidY) // missing in the sibling
+			{
+				bound -= this.getRecord(arenaXY, addressX, 2) + this.getRecord(arenaXY, addressX, 3);
+				if (isPrunable && !this.reachesDelta(bound)) // early abandon
+				{
+					arena.shrink(address, 0);
+					return null;
+				}
+				++i;
+			}
+			else if (tidX > tidY)
+				++j;
+			else
+			{
+				double threat = this.getRecord(arenaXY, addressX, 0) + this.getRecord(arenaXY, addressY, 0), frequency = this.getRecord(arenaXY, addressX, 1) + this.getRecord(arenaXY, addressY, 1);
+				double tf = this.getRecord(arenaXY, addressX, 2) + this.getRecord(arenaXY, addressY, 2), rtf = this.getRecord(arenaXY, addressY, 3);
+				if (p != null) // 3-itemset and above: Px + Py - P
+				{
+					while (arenaP.getInt(p.address + (long)k * this.recordSize) < tidX)
+						++k;
+					long addressP = p.address + (long)k * this.recordSize;
+					threat -= this.getRecord(arenaP, addressP, 0);
+					frequency -= this.getRecord(arenaP, addressP, 1);
+					tf -= this.getRecord(arenaP, addressP, 2);
+				}
+				putRecord(arena, address + (long)size++ * this.recordSize, tidX, threat, frequency, tf, rtf);
+				eetf += tf;
+				retf += rtf;
+				++i;
+				++j;
+			}
+		}
+		arena.shrink(address, size * this.recordSize);
+		TreeNode childTreeNode = new TreeNode(parentTreeNode, this.sequence[index], index);
+		childTreeNode.address = address;
+		childTreeNode.size = size;
+		childTreeNode.eetf = eetf;
+		childTreeNode.retf = retf;
+		return childTreeNode;
+	}
+	private void putRecord(OffHeapArena arena, long address, int tid, double threat, double frequency, double tf, double rtf)
+	{
+		arena.putInt(address, tid);
+		if (offHeapRecordSize == this.recordSize)
+		{
+			arena.putDouble(address + 8, threat);
+			arena.putDouble(address + 16, frequency);
+			arena.putDouble(address + 24, tf);
+			arena.putDouble(address + 32, rtf);
+		}
+		else
+		{
+			arena.putFloat(address + 4, (float)threat);
+			arena.putFloat(address + 8, (float)frequency);
+			arena.putFloat(address + 12, (float)tf);
+			arena.putFloat(address + 16, (float)rtf);
+		}
+		return;
+	}
+	private double getRecord(OffHeapArena arena, long address, int column) // the value of a record by the column (0 for threat, 1 for frequency, 2 for tf and 3 for rtf)
+	{
+		return offHeapRecordSize == this.recordSize ? arena.getDouble(address + 8 + 8 * column) : arena.getFloat(address + 4 + 4 * column);
+	}
+	
+	/* Generate the tree in the same order as generateTree() without keeping it, where each layer is a queue of units spilled to disk beyond memoryBudget */
+	private void generateTreeSpill()
+	{
+		this.tree = new Tree(this.sequence); // only the roots are kept
+		this.spilledBytes = 0;
+		SpillQueue currentLayer = new SpillQueue(this.memoryBudget), nextLayer = new SpillQueue(this.memoryBudget);
+		boolean isFloat = PRECISION_FLOAT == this.precision; // the units are encoded with 4-byte values
+		if (this.kernels)
+		{
+			this.ranksX = new int[this.transactions.size()];
+			this.ranksY = new int[this.transactions.size()];
+			this.ranksXY = new int[this.transactions.size()];
+			this.ranksQ = new int[this.transactions.size()];
+		}
+		try
+		{
+			TreeUnit rootUnit = new TreeUnit(new int[0], null, this.sequence.length); // 1-itemset
+			int[][] rootTids = new int[this.sequence.length][];
+			TF[][] rootTFs = this.transposeTransactions(rootTids);
+			for (int eventIndex = 0; eventIndex < this.sequence.length; ++eventIndex)
+			{
+				++this.treeNodeCount;
+				TidList tidList = new TidList(rootTFs[eventIndex].length);
+				double eetf = this.ETF.get(this.sequence[eventIndex]), retf = 0;
+				for (int i = 0; i < rootTFs[eventIndex].length; ++i)
+				{
+					TF tf = rootTFs[eventIndex][i];
+					tidList.add(rootTids[eventIndex][i], tf.threat, tf.frequency, tf.tf, tf.rtf);
+					retf += tf.rtf;
+				}
+				rootTids[eventIndex] = null;
+				rootTFs[eventIndex] = null;
+				rootUnit.indexes[eventIndex] = eventIndex;
+				rootUnit.children[eventIndex] = tidList;
+				rootUnit.expandable[eventIndex] = this.offerTreeNode(rootUnit.prefix, eventIndex, eetf, retf);
+			}
+			currentLayer.offer(rootUnit.encode(isFloat));
+			
+			while (!currentLayer.isEmpty())
+			{
+				for (ByteBuffer buffer = currentLayer.poll(); buffer != null; buffer = currentLayer.poll())
+				{
+					if (this.isOverBudget()) // the expandable children of the units left in both layers bound all the nodes left
+					{
+						double upperBound = 0;
+						for (; buffer != null; buffer = currentLayer.poll())
+							upperBound = Math.max(upperBound, getUnitBound(TreeUnit.decode(buffer, isFloat)));
+						for (buffer = nextLayer.poll(); buffer != null; buffer = nextLayer.poll())
+							upperBound = Math.max(upperBound, getUnitBound(TreeUnit.decode(buffer, isFloat)));
+						this.stopOnBudget(upperBound);
+						break;
+					}
+					TreeUnit treeUnit = TreeUnit.decode(buffer, isFloat);
+					for (int i = 0; i < treeUnit.children.length; ++i)
+						if (treeUnit.expandable[i])
+						{
+							int[] prefix = Arrays.copyOf(treeUnit.prefix, treeUnit.prefix.length + 1);
+							prefix[treeUnit.prefix.length] = treeUnit.indexes[i];
+							TreeUnit childUnit = new TreeUnit(prefix, treeUnit.children[i], treeUnit.children.length - i - 1);
+							double aetf = 0; // the bound of the early abandon as computeChildTreeNode()
+							for (int ix = 0; ix < treeUnit.children[i].size; ++ix)
+								aetf += treeUnit.children[i].tfs[ix] + treeUnit.children[i].rtfs[ix];
+							for (int j = i + 1; j < treeUnit.children.length; ++j) // Q.x.y = Q.x + Q.y - Q
+							{
+								TidList x = treeUnit.children[i], y = treeUnit.children[j], q = treeUnit.parent, tidList = new TidList(Math.min(x.size, y.size));
+								double eetf = 0, retf = 0, bound = aetf;
+								boolean isAbandoned = false;
+								if (this.ranksX != null) // the same merge with TidKernels
+								{
+									int count = TidKernels.intersect(x.tids, x.size, y.tids, y.size, this.ranksX, this.ranksY, x.tfs, x.rtfs, bound, 
+										this.switches[4] ? this.getDeltaFloor() : Double.NEGATIVE_INFINITY);
+									isAbandoned = count < 0;
+									if (q != null && count > 0)
+									{
+										TidKernels.gather(x.tids, this.ranksX, count, tidList.tids);
+										TidKernels.intersect(tidList.tids, count, q.tids, q.size, this.ranksXY, this.ranksQ); // the tids of Q.x.y are all in Q
+									}
+									for (int k = 0; k < count; ++k)
+									{
+										int ix = this.ranksX[k], iy = this.ranksY[k], iq = this.ranksQ[k];
+										if (null == q) // 2-itemset
+										{
+											tidList.add(x.tids[ix], x.threats[ix] + y.threats[iy], x.frequencies[ix] + y.frequencies[iy], x.tfs[ix] + y.tfs[iy], y.rtfs[iy]);
+											eetf += x.tfs[ix] + y.tfs[iy];
+										}
+										else // 3-itemset and above
+										{
+											tidList.add(x.tids[ix], x.threats[ix] + y.threats[iy] - q.threats[iq], x.frequencies[ix] + y.frequencies[iy] - q.frequencies[iq], x.tfs[ix] + y.tfs[iy] - q.tfs[iq], y.rtfs[iy]);
+											eetf += tidList.tfs[tidList.size - 1];
+										}
+										retf += y.rtfs[iy];
+									}
+								}
+								else
+									for (int ix = 0, iy = 0, iq = 0; ix < x.size && !isAbandoned; )
+										if (iy == y.size || x.tids[ix] < y.tids[iy]) // missing in the sibling
+										{
+											bound -= x.tfs[ix] + x.rtfs[ix];
+											isAbandoned = this.switches[4] && !this.reachesDelta(bound);
+											++ix;
+										}
+										else if (x.tids[ix] > y.tids[iy])
+											++iy;
+										else
+										{
+											if (null == q) // 2-itemset
+											{
+												tidList.add(x.tids[ix], x.threats[ix] + y.threats[iy], x.frequencies[ix] + y.frequencies[iy], x.tfs[ix] + y.tfs[iy], y.rtfs[iy]);
+												eetf += x.tfs[ix] + y.tfs[iy];
+											}
+											else // 3-itemset and above
+											{
+												while (q.tids[iq] < x.tids[ix])
+													++iq;
+												tidList.add(x.tids[ix], x.threats[ix] + y.threats[iy] - q.threats[iq], x.frequencies[ix] + y.frequencies[iy] - q.frequencies[iq], x.tfs[ix] + y.tfs[iy] - q.tfs[iq], y.rtfs[iy]);
+												eetf += tidList.tfs[tidList.size - 1];
+											}
+											retf += y.rtfs[iy];
+											++ix;
+											++iy;
+										}
+								childUnit.indexes[j - i - 1] = treeUnit.indexes[j];
+								if (isAbandoned) // an empty tid-list abandons the children of the nodes reading it as well
+								{
+									childUnit.children[j - i - 1] = new TidList(0);
+									continue;
+								}
+								++this.treeNodeCount;
+								childUnit.children[j - i - 1] = tidList;
+								childUnit.expandable[j - i - 1] = this.offerTreeNode(prefix, treeUnit.indexes[j], eetf, retf);
+							}
+							if (childUnit.children.length > 0)
+								nextLayer.offer(childUnit.encode(isFloat));
+						}
+				}
+				this.spilledBytes += currentLayer.getSpilledBytes();
+				currentLayer.close();
+				currentLayer = nextLayer;
+				nextLayer = new SpillQueue(this.memoryBudget);
+				this.checkMemory();
+			}
+		}
+		catch (IOException e)
+		{
+			System.out.println("Failed to spill the tree to disk: " + e.getMessage());
+			throw new UncheckedIOException(e);
+		}
+		finally
+		{
+			currentLayer.close();
+			nextLayer.close();
+			this.ranksX = this.ranksY = this.ranksXY = this.ranksQ = null;
+		}
+		return;
+	}
+	
+	/* Offer a tree node (prefix + the event of lastIndex) to the prior queue as TreeNode.update() and return whether it can build children */
+	private boolean offerTreeNode(int[] prefix, int lastIndex, double eetf, double retf)
+	{
+		double aetf = eetf + retf;
+		if (this.reachesDelta(eetf)) // can be added into prior queue
+		{
+			ArrayList<Integer> sequence = new ArrayList<Integer>(prefix.length + 1);
+			for (int index : prefix)
+				sequence.add(this.sequence[index]);
+			sequence.add(this.sequence[lastIndex]);
+			HTFE htfe = new HTFE(sequence, eetf);
+			boolean isKept = true;
+			this.finalResults.offer(htfe);
+			while (this.finalResults.size() > this.topK)
+				isKept &= this.finalResults.poll() != htfe;
+			if (isKept)
+				this.notifyResult(htfe);
+			if (this.switches[5] && this.finalResults.size() >= this.topK) // update delta if the prior queue is full (length >= topK)
+				this.delta = Double.valueOf(this.finalResults.peek().eetf);
+		}
+		return !this.switches[4] || this.reachesDelta(aetf);
+	}
+	private static double getUnitBound(TreeUnit treeUnit) // the largest aetf of the expandable children of a unit
+	{
+		double upperBound = 0;
+		for (int i = 0; i < treeUnit.children.length; ++i)
+			if (treeUnit.expandable[i])
+			{
+				double aetf = 0;
+				for (int ix = 0; ix < treeUnit.children[i].size; ++ix)
+					aetf += treeUnit.children[i].tfs[ix] + treeUnit.children[i].rtfs[ix];
+				upperBound = Math.max(upperBound, aetf);
+			}
+		return upperBound;
+	}
+	
+	/* Stream an itemset entering the top-k to the listener */
+	private void notifyResult(HTFE htfe)
+	{
+		if (null == this.resultListener)
+			return;
+		int[] itemset = new int[htfe.sequence.size()];
+		for (int i = 0; i < itemset.length; ++i)
+			itemset[i] = htfe.sequence.get(i).intValue();
+		this.resultListener.onResult(itemset, htfe.eetf, this.finalResults.size() >= this.topK ? Double.valueOf(this.finalResults.peek().eetf) : null);
+		return;
+	}
+	
+	/* Whether a value can reach delta: delta may be the value of an itemset of the results itself (raised by ETF or LETF), which the tree sums in another order 
+	 * (Px + Py - P per transaction, and over the merged transactions), so a value equal to delta within the rounding error is kept and the prior queue breaks the ties 
+	 * (exactly equal with PRECISION_FIXED, and within the rounding of the 4-byte records of the off-heap and spilled trees with PRECISION_FLOAT) */
+	private boolean reachesDelta(double value)
+	{
+		return value >= this.getDeltaFloor();
+	}
+	private double getDeltaFloor() // the smallest value reaching delta (the limit of the early abandon of TidKernels)
+	{
+		return null == this.delta ? Double.NEGATIVE_INFINITY : this.delta.doubleValue() - Math.abs(this.delta.doubleValue()) * deltaSlacks[this.precision];
+	}
+	
+	private boolean isOverBudget()
+	{
+		return (this.nodeBudget > 0 && this.treeNodeCount >= this.nodeBudget) || (this.timeBudget > 0 && System.currentTimeMillis() - this.startTimestamp >= this.timeBudget);
+	}
+	
+	/* Record the optimality gap of the best-so-far results, where upperBound bounds the eetf of every itemset not searched yet */
+	private void stopOnBudget(double upperBound)
+	{
+		double threshold = this.finalResults.size() >= this.topK ? this.finalResults.peek().eetf : 0;
+		this.optimalityGap = Math.max(upperBound - threshold, 0);
+		return;
+	}
+	
 	
 	/** Output functions **/
 	/* Get results */
@@ -1989,6 +3288,8 @@ public class AlgoTTFE
 			System.out.println("\tdelta (output): " + formatDecimal(this.delta));
 			System.out.println("\tFinal minimum value: " + (this.finalResults.isEmpty() ? "null" : formatDecimal(this.finalResults.peek().eetf)));
 			System.out.println("\tCount of tree nodes: " + this.treeNodeCount);
+			if (this.optimalityGap != null)
+				System.out.println("\tOptimality gap: " + formatDecimal(this.optimalityGap));
 		}
 		else
 			System.out.println("\tError info: " + errorInfo);
@@ -2009,20 +3310,280 @@ public class AlgoTTFE
 		
 		if (!(this.initTTFE() && this.checkMemory()))
 			return false;
+		this.runTTFE();
+		return this.getResults();
+	}
+	public boolean runAlgorithm(int[][] items, double[][] threats, double[][] frequencies) // run on a database in the memory without file outputs
+	{
+		this.inputFilePath = null;
+		this.outputFilePath = null;
+		
+		if (!(this.initTTFE(items, threats, frequencies) && this.checkMemory()))
+			return false;
+		this.runTTFE();
+		this.getResults();
+		return true;
+	}
+	public boolean runAlgorithm(Index index) // run on a shared index without file outputs
+	{
+		this.inputFilePath = null;
+		this.outputFilePath = null;
+		
+		index.load(this);
+		if (this.switches[0])
+			this.delta = null == this.deltaInput ? null : Double.valueOf(this.deltaInput);
+		this.checkMemory();
+		this.startTimestamp = System.currentTimeMillis();
+		this.mineTTFE();
+		this.endTimestamp = System.currentTimeMillis();
+		this.securityFlag = true;
+		this.getResults();
+		return true;
+	}
+	
+	/* Run on P horizontal partitions of a database in the memory for the exact results: 
+	 * (1) the local top-k of each partition and all the events are verified on the whole database, and the k-th verified value L is a lower bound of the final delta; 
+	 * (2) an itemset of the global top-k reaches L / P in at least one partition (pigeonhole), so each partition mines all the itemsets above L / P; 
+	 * (3) the union of the local candidates is verified on the whole database. 
+	 * The partitions are mined by a pool of threads (threads = 1 to mine them one by one so that only one partition is in the memory at a time). */
+	public boolean runPartitioned(int[][] items, double[][] threats, double[][] frequencies, int partitions, int threads)
+	{
+		this.inputFilePath = null;
+		this.outputFilePath = null;
+		
+		if (partitions < 1 || threads < 1)
+		{
+			System.out.printf("The numbers of partitions and threads should be positive integers. They are (%d, %d). \n\n", partitions, threads);
+			return false;
+		}
+		if (!this.initTTFE(items, threats, frequencies))
+			return false;
+		this.checkMemory();
+		this.startTimestamp = System.currentTimeMillis();
+		this.errorBound = null;
+		this.treeNodeCount = 0;
+		partitions = Math.max(Math.min(partitions, this.transactions.size()), 1);
+		
+		HashSet<HTFE> candidates = new HashSet<HTFE>(this.minePartitions(partitions, threads, null)); // round 1: the local top-k
+		for (Transaction transaction : this.transactions)
+			for (Integer event : transaction.events.keySet())
+			{
+				ArrayList<Integer> sequence = new ArrayList<Integer>();
+				sequence.add(event);
+				candidates.add(new HTFE(sequence, 0));
+			}
+		this.finalResults.clear();
+		for (HTFE htfe : this.verifyCandidates(candidates))
+			this.offerFinalResult(htfe);
+		Double threshold = this.finalResults.size() < this.topK ? Double.valueOf(0) : Double.valueOf(Math.nextDown(this.finalResults.peek().eetf / partitions)); // fewer than k candidates: mine all the itemsets
+		
+		candidates.addAll(this.minePartitions(partitions, threads, threshold)); // round 2: all the local itemsets above L / P
+		this.finalResults.clear();
+		for (HTFE htfe : this.verifyCandidates(candidates))
+			this.offerFinalResult(htfe);
+		this.delta = this.finalResults.size() < this.topK ? null : Double.valueOf(this.finalResults.peek().eetf);
+		this.checkMemory();
+		this.endTimestamp = System.currentTimeMillis();
+		this.securityFlag = true;
+		
+		if (this.debugLevel >= DEBUG_LEVEL_PROCEDURE)
+		{
+			printTitle(algoName + " - runPartitioned()");
+			if (this.debugLevel >= DEBUG_LEVEL_INFO)
+				System.out.println("partitions = " + partitions + "\t\tthreads = " + threads + "\t\tthreshold = " + threshold + "\t\tcandidates = " + candidates.size() + "\n");
+		}
+		this.getResults();
+		return true;
+	}
+	
+	/* Run on a Bernoulli sample of a database in the memory (each transaction is kept with the probability ratio) for the approximate results whose values are scaled by 1 / ratio. 
+	 * By Hoeffding's inequality, the estimated value of an itemset deviates from the exact one by at most errorBound = sqrt(ln(2 / (1 - confidence)) * sum(ttf ^ 2) / (2 * ratio ^ 2)) with the probability confidence. */
+	public boolean runSampled(int[][] items, double[][] threats, double[][] frequencies, double ratio, double confidence, long seed)
+	{
+		this.inputFilePath = null;
+		this.outputFilePath = null;
+		
+		if (!(0 < ratio && ratio <= 1 && 0 < confidence && confidence < 1))
+		{
+			System.out.printf("The sampling ratio should be in the interval (0, 1] and the confidence should be in the interval (0, 1). They are (%s, %s). \n\n", "" + ratio, "" + confidence);
+			return false;
+		}
+		if (!this.initTTFE(items, threats, frequencies))
+			return false;
+		double sumOfSquares = 0;
+		for (Transaction transaction : this.transactions)
+			sumOfSquares += transaction.ttf * transaction.ttf;
+		Random random = new Random(seed);
+		ArrayList<Transaction> sample = new ArrayList<Transaction>();
+		for (Transaction transaction : this.transactions)
+			if (random.nextDouble() < ratio)
+				sample.add(transaction);
+		this.transactions = sample;
+		this.checkMemory();
+		this.runTTFE();
+		
+		PriorityQueue<HTFE> scaledResults = new PriorityQueue<HTFE>();
+		for (HTFE htfe : this.finalResults)
+			scaledResults.offer(new HTFE(htfe.sequence, htfe.eetf / ratio));
+		this.finalResults = scaledResults;
+		this.delta = null == this.delta ? null : Double.valueOf(this.delta / ratio);
+		this.errorBound = Math.sqrt(Math.log(2 / (1 - confidence)) * sumOfSquares / (2 * ratio * ratio));
+		
+		if (this.debugLevel >= DEBUG_LEVEL_PROCEDURE)
+		{
+			printTitle(algoName + " - runSampled()");
+			if (this.debugLevel >= DEBUG_LEVEL_INFO)
+				System.out.println("ratio = " + ratio + "\t\tsample = " + sample.size() + "\t\terrorBound = " + this.errorBound + " (confidence = " + confidence + ")\n");
+		}
+		this.getResults();
+		return true;
+	}
+	
+	/* Mine the partitions of this.transactions for their local top-k (threshold = null) or all their itemsets above the threshold */
+	private ArrayList<HTFE> minePartitions(int partitions, int threads, Double threshold)
+	{
+		ArrayList<AlgoTTFE> instances = new ArrayList<AlgoTTFE>();
+		for (int p = 0; p < partitions; ++p)
+		{
+			AlgoTTFE partition = new AlgoTTFE.Builder().buildTopK(null == threshold ? this.topK : Integer.MAX_VALUE).buildAlphaBeta(this.alpha, this.beta).buildDelta(threshold)
+				.buildSwitches(null == threshold ? new boolean[] { false, false, false, false, true, true } : new boolean[] { true, false, false, false, true, false }) // raising on the tree only (the local top-k are complete) or a fixed threshold
+				.buildDebugLevel(DEBUG_LEVEL_CLOSE).buildOffHeap(this.offHeap).buildMemoryBudget(this.memoryBudget).buildDiffsets(this.diffsetDepth, this.diffsetRatio).buildKernels(this.kernels).buildReordering(this.reordering).buildPrecision(this.precision).build();
+			partition.fractionBits = this.fractionBits;
+			for (int i = (int)((long)this.transactions.size() * p / partitions); i < (int)((long)this.transactions.size() * (p + 1) / partitions); ++i)
+				partition.transactions.add(partition.new Transaction(this.transactions.get(i), partition.topK)); // the partitions are disjoint so that the shared TF values are safe
+			instances.add(partition);
+		}
+		
+		ArrayList<HTFE> candidates = new ArrayList<HTFE>();
+		ExecutorService executor = threads > 1 ? Executors.newFixedThreadPool(Math.min(threads, partitions)) : null;
+		try
+		{
+			ArrayList<Future<?>> futures = new ArrayList<Future<?>>();
+			for (int p = 0; p < partitions; ++p)
+			{
+				final AlgoTTFE partition = instances.get(p);
+				Runnable task = () -> {
+					partition.initTransactions();
+					partition.runTTFE();
+				};
+				if (null == executor)
+				{
+					task.run();
+					this.collectPartition(partition, candidates);
+					instances.set(p, null); // release the partition before mining the next one
+				}
+				else
+					futures.add(executor.submit(task));
+			}
+			for (int p = 0; p < futures.size(); ++p)
+			{
+				futures.get(p).get();
+				this.collectPartition(instances.get(p), candidates);
+			}
+		}
+		catch (Exception e)
+		{
+			throw new IllegalStateException("Failed to mine the partitions. ", e);
+		}
+		finally
+		{
+			if (executor != null)
+				executor.shutdownNow();
+		}
+		return candidates;
+	}
+	private void collectPartition(AlgoTTFE partition, ArrayList<HTFE> candidates)
+	{
+		candidates.addAll(partition.finalResults);
+		this.treeNodeCount += partition.treeNodeCount;
+		this.maxMemory = Math.max(this.maxMemory, partition.maxMemory);
+		return;
+	}
+	
+	/* Compute the exact values of the candidates on this.transactions */
+	private ArrayList<HTFE> verifyCandidates(Iterable<HTFE> candidates)
+	{
+		HashMap<Integer, ArrayList<Transaction>> eventTransactions = new HashMap<Integer, ArrayList<Transaction>>();
+		for (Transaction transaction : this.transactions)
+			for (Integer event : transaction.events.keySet())
+			{
+				ArrayList<Transaction> list = eventTransactions.get(event);
+				if (null == list)
+					eventTransactions.put(event, list = new ArrayList<Transaction>());
+				list.add(transaction);
+			}
+		
+		ArrayList<HTFE> verified = new ArrayList<HTFE>();
+		for (HTFE candidate : candidates)
+		{
+			ArrayList<Transaction> shortest = null; // the transactions of the rarest event
+			for (Integer event : candidate.sequence)
+			{
+				ArrayList<Transaction> list = eventTransactions.get(event);
+				if (null == list || null == shortest || list.size() < shortest.size())
+					shortest = null == list ? new ArrayList<Transaction>() : list;
+			}
+			double eetf = 0;
+			for (Transaction transaction : shortest)
+			{
+				double tf = 0;
+				boolean contained = true;
+				for (Integer event : candidate.sequence)
+				{
+					TF value = transaction.events.get(event);
+					if (null == value)
+					{
+						contained = false;
+						break;
+					}
+					tf += value.tf;
+				}
+				if (contained)
+					eetf += tf;
+			}
+			verified.add(new HTFE(candidate.sequence, eetf));
+		}
+		return verified;
+	}
+	public static Index buildIndex(int[][] items, double[][] threats, double[][] frequencies, double alpha, double beta)
+	{
+		return buildIndex(items, threats, frequencies, alpha, beta, PRECISION_DOUBLE);
+	}
+	public static Index buildIndex(int[][] items, double[][] threats, double[][] frequencies, double alpha, double beta, int precision)
+	{
+		AlgoTTFE ttfe = new AlgoTTFE.Builder().buildAlphaBeta(alpha, beta).buildDebugLevel(DEBUG_LEVEL_CLOSE).buildPrecision(precision).build();
+		if (!ttfe.initTTFE(items, threats, frequencies))
+			return null;
+		ttfe.prepareTTFE();
+		return new Index(ttfe);
+	}
+	private void runTTFE()
+	{
 		this.startTimestamp = System.currentTimeMillis();
+		this.prepareTTFE();
+		this.mineTTFE();
+		this.endTimestamp = System.currentTimeMillis();
+		this.securityFlag = true;
+		return;
+	}
+	private void prepareTTFE() // the procedures only depending on (alpha, beta)
+	{
 		this.computeTWTF(); this.checkMemory();
 		this.sortTWTF(); this.checkMemory();
+		this.sortTTFE(); this.checkMemory();
 		this.computeRTF(); this.checkMemory();
 		this.computeETF(); this.checkMemory();
+		return;
+	}
+	private void mineTTFE() // the procedures depending on topK
+	{
 		this.sortETF(); this.checkMemory();
 		this.pruneItem(); this.checkMemory();
-		this.sortTTFE(); this.checkMemory();
+		this.mergeTTFE(); this.checkMemory();
 		this.generateTable(); this.checkMemory();
 		if (this.switches[2]) { this.raiseThreshold_LETF_E(); this.checkMemory(); }
 		if (this.switches[3]) { this.raiseThreshold_LETF_LB(); this.checkMemory(); }
 		this.generateTree(); this.checkMemory();
-		this.endTimestamp = System.currentTimeMillis();
-		this.securityFlag = true;
-		return this.getResults();
+		return;
 	}
 }
\ No newline at end of file
@@ -0,0 +1,173 @@
+package ttfe;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Random;
+
+
+/**
+ * CheckTTFE (compare the top-k values of the modes of TTFE with an exhaustive search on random databases)
+ * @author Yuer Yang, Department of Computer Science, The University of Hong Kong
+ * seeds: the number of random databases, each of at most eight events so that all the event sets can be enumerated
+ * modes: runAlgorithm() with the default switches, without raising delta before the tree (000011) or with all the raising strategies (011111), 
+ * 		with the transactions reordered before merging, with the off-heap or the spilled tree, with diffsets (the nodes keeping more than half of the tids of their parents) 
+ * 		or below the roots with TidKernels, with the values rounded to fixed-point numbers or to floats (in the heap, off-heap, and spilled trees), 
+ * 		and runPartitioned() with 2 to 4 partitions (one thread), where a small partition may keep a single event after pruneItem()
+ * The values of each mode should match the exhaustive ones within the rounding error (of floats for PRECISION_FLOAT), where the event sets of no transaction (valued 0) are ignored. 
+ */
+public class CheckTTFE
+{
+	public static final int EXIT_SUCCESS = 0, EXIT_FAILURE = 1;
+	public static final int topKList[] = { 1, 3, 5, 10, 25 };
+	public static final double alphaList[] = { 1, 0.5 }, tolerance = 1e-9, floatTolerance = 1e-5;
+	public static final String modes[] = { "runAlgorithm", "runAlgorithm(000011)", "runAlgorithm(011111)", "runAlgorithm(reordering)", "runAlgorithm(offHeap)", "runAlgorithm(memoryBudget)", 
+		"runAlgorithm(diffsets)", "runAlgorithm(kernels)", "runAlgorithm(fixed)", "runAlgorithm(float)", "runAlgorithm(float, offHeap)", "runAlgorithm(float, memoryBudget)", 
+		"runPartitioned(2)", "runPartitioned(3)", "runPartitioned(4)" };
+	public static void main(String[] args)
+	{
+		int seeds = args.length > 0 ? Integer.parseInt(args[0]) : 200, runCount = 0, failedCount = 0;
+		PrintStream console = System.out;
+		System.setOut(new PrintStream(new OutputStream() { public void write(int b) {} })); // mute the statistics of the engines
+		
+		for (int seed = 0; seed < seeds; ++seed)
+		{
+			Random random = new Random(seed);
+			int transactionCount = 10 + random.nextInt(60), eventCount = 3 + random.nextInt(6);
+			double density = 0.2 + 0.7 * random.nextDouble();
+			int[][] items = new int[transactionCount][];
+			double[][] threats = new double[transactionCount][], frequencies = new double[transactionCount][];
+			for (int tid = 0; tid < transactionCount; ++tid)
+			{
+				int[] events = new int[eventCount];
+				int size = 0;
+				for (int event = 0; event < eventCount; ++event)
+					if (random.nextDouble() < density)
+						events[size++] = 10 + 7 * event;
+				if (0 == size)
+					events[size++] = 10 + 7 * random.nextInt(eventCount);
+				items[tid] = Arrays.copyOf(events, size);
+				threats[tid] = new double[size];
+				frequencies[tid] = new double[size];
+				for (int i = 0; i < size; ++i)
+				{
+					threats[tid][i] = Math.round(random.nextDouble() * 1000) / 100.0;
+					frequencies[tid][i] = Math.round(random.nextDouble() * 50) / 10.0;
+				}
+			}
+			
+			for (int topK : topKList)
+				for (double alpha : alphaList)
+				{
+					double[] expected = enumerate(items, threats, frequencies, topK, alpha, 1 - alpha);
+					for (String mode : modes)
+					{
+						++runCount;
+						double[] values = null;
+						String errorInfo = null;
+						try
+						{
+							values = run(mode, items, threats, frequencies, topK, alpha, 1 - alpha);
+						}
+						catch (Throwable e)
+						{
+							errorInfo = null == e.getMessage() ? e.toString() : e.getMessage();
+						}
+						if (errorInfo != null || !matches(expected, values, mode.contains("float") ? floatTolerance : tolerance))
+						{
+							++failedCount;
+							console.printf("seed = %d\t\ttopK = %d\t\talpha = %s\t\tmode = %s\n\texpected: %s\n\tactual: %s\n", seed, topK, alpha, mode, 
+								Arrays.toString(expected), null == errorInfo ? Arrays.toString(values) : errorInfo);
+						}
+					}
+				}
+		}
+		
+		console.printf("(Failed, Run) = (%d, %d)\n", failedCount, runCount);
+		System.exit(0 == failedCount ? EXIT_SUCCESS : EXIT_FAILURE);
+	}
+	
+	/* Run a mode (the options in the brackets) and return its positive values (Down) */
+	private static double[] run(String mode, int[][] items, double[][] threats, double[][] frequencies, int topK, double alpha, double beta)
+	{
+		String option = mode.indexOf('(') < 0 ? "" : mode.substring(mode.indexOf('(') + 1, mode.indexOf(')'));
+		AlgoTTFE.Builder builder = new AlgoTTFE.Builder().buildTopK(topK).buildAlphaBeta(alpha, beta).buildDebugLevel(AlgoTTFE.DEBUG_LEVEL_CLOSE);
+		for (String subOption : option.split(", "))
+			if (subOption.matches("[01]{6}"))
+			{
+				boolean[] switches = new boolean[subOption.length()];
+				for (int i = 0; i < switches.length; ++i)
+					switches[i] = subOption.charAt(i) == '1';
+				builder.buildSwitches(switches);
+			}
+			else if (subOption.equals("reordering"))
+				builder.buildReordering(true);
+			else if (subOption.equals("offHeap"))
+				builder.buildOffHeap(true);
+			else if (subOption.equals("memoryBudget"))
+				builder.buildMemoryBudget(1024); // a few nodes per spilled layer
+			else if (subOption.equals("diffsets"))
+				builder.buildDiffsets(0, 0.5);
+			else if (subOption.equals("kernels"))
+				builder.buildDiffsets(1, 1).buildKernels(true);
+			else if (subOption.equals("fixed"))
+				builder.buildPrecision(AlgoTTFE.PRECISION_FIXED);
+			else if (subOption.equals("float"))
+				builder.buildPrecision(AlgoTTFE.PRECISION_FLOAT);
+		AlgoTTFE ttfe = builder.build();
+		if (mode.startsWith("runPartitioned"))
+		{
+			if (!ttfe.runPartitioned(items, threats, frequencies, Integer.parseInt(option), 1))
+				throw new IllegalStateException("runPartitioned() returned false. ");
+		}
+		else if (!ttfe.runAlgorithm(items, threats, frequencies))
+			throw new IllegalStateException("runAlgorithm() returned false. ");
+		return sortPositives(ttfe.getFinalValues());
+	}
+	
+	/* The top-k values of all the event sets (Down) by enumerating the subsets of the events */
+	private static double[] enumerate(int[][] items, double[][] threats, double[][] frequencies, int topK, double alpha, double beta)
+	{
+		int[] events = Arrays.stream(items).flatMapToInt(Arrays::stream).distinct().sorted().toArray();
+		double[] values = new double[1 << events.length];
+		for (int tid = 0; tid < items.length; ++tid)
+		{
+			int mask = 0;
+			double[] tfs = new double[events.length];
+			for (int i = 0; i < items[tid].length; ++i)
+			{
+				int index = Arrays.binarySearch(events, items[tid][i]);
+				mask |= 1 << index;
+				tfs[index] = alpha * threats[tid][i] + beta * frequencies[tid][i];
+			}
+			for (int subset = mask; subset > 0; subset = (subset - 1) & mask) // every event set contained in the transaction
+				for (int index = 0; index < events.length; ++index)
+					if ((subset >> index & 1) != 0)
+						values[subset] += tfs[index];
+		}
+		double[] sortedValues = sortPositives(values);
+		return Arrays.copyOf(sortedValues, Math.min(topK, sortedValues.length));
+	}
+	
+	private static double[] sortPositives(double[] values)
+	{
+		double[] positives = Arrays.stream(values).filter(value -> value > 0).sorted().toArray();
+		for (int i = 0; i < positives.length / 2; ++i)
+		{
+			double value = positives[i];
+			positives[i] = positives[positives.length - 1 - i];
+			positives[positives.length - 1 - i] = value;
+		}
+		return positives;
+	}
+	
+	private static boolean matches(double[] expected, double[] values, double tolerance)
+	{
+		if (expected.length != values.length)
+			return false;
+		for (int i = 0; i < expected.length; ++i)
+			if (Math.abs(expected[i] - values[i]) > tolerance * Math.max(1, Math.abs(expected[i])))
+				return false;
+		return true;
+	}
+}
@@ -0,0 +1,141 @@
+package ttfe;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+
+
+/**
+ * OffHeapArena (a bump allocator of primitive records outside the Java heap with scoped release)
+ * @author Yuer Yang, Department of Computer Science, The University of Hong Kong
+ *
+ * The records are written into direct ByteBuffers which are allocated once and reused, so the GC only sees a few chunks.
+ * The chunks grow from 64 KB to chunkSize bytes so that a small search does not pay for a large arena.
+ * mark() and release(mark) free everything allocated after the mark at once (e.g. all the lists of a subtree or of a layer of a tree).
+ * An address packs the index of the chunk (the high 32 bits) and the offset in the chunk (the low 32 bits), and an allocation never crosses chunks.
+ */
+public class OffHeapArena
+{
+	public static final int defaultChunkSize = 1 << 24; // 16 MB
+	private static final int initialChunkSize = 1 << 16; // 64 KB
+	
+	private final int chunkSize;
+	private final ArrayList<ByteBuffer> chunks = new ArrayList<ByteBuffer>();
+	private int chunk = 0, offset = 0; // the current chunk and the first free byte in it
+	
+	
+	/** Construction functions **/
+	public OffHeapArena()
+	{
+		this(defaultChunkSize);
+	}
+	public OffHeapArena(int chunkSize)
+	{
+		this.chunkSize = Math.max(chunkSize, initialChunkSize);
+	}
+	
+	
+	/** Getter **/
+	public long getCapacity() // the bytes held outside the heap
+	{
+		long capacity = 0;
+		for (ByteBuffer buffer : this.chunks)
+			capacity += buffer.capacity();
+		return capacity;
+	}
+	
+	
+	/** Allocation functions **/
+	/* Allocate size bytes (aligned to 8 bytes) and return the address */
+	public long allocate(int size)
+	{
+		size = (size + 7) & ~7;
+		if (this.chunks.isEmpty())
+			this.chunks.add(newChunk(size));
+		else if (this.offset + size > this.chunks.get(this.chunk).capacity()) // move to the next chunk
+		{
+			++this.chunk;
+			this.offset = 0;
+			if (this.chunk == this.chunks.size())
+				this.chunks.add(newChunk(size));
+			else if (this.chunks.get(this.chunk).capacity() < size) // a reused chunk is too small for a huge record
+				this.chunks.set(this.chunk, newChunk(size));
+		}
+		long address = ((long)this.chunk << 32) | this.offset;
+		this.offset += size;
+		return address;
+	}
+	
+	/* Shrink the latest allocation to size bytes */
+	public void shrink(long address, int size)
+	{
+		if ((int)(address >>> 32) == this.chunk)
+			this.offset = Math.min(this.offset, (int)address + ((size + 7) & ~7));
+		return;
+	}
+	
+	public long mark()
+	{
+		return ((long)this.chunk << 32) | this.offset;
+	}
+	
+	/* Free everything allocated after the mark (the chunks are kept for reuse) */
+	public void release(long mark)
+	{
+		this.chunk = (int)(mark >>> 32);
+		this.offset = (int)mark;
+		return;
+	}
+	
+	public void reset()
+	{
+		this.release(0);
+		return;
+	}
+	
+	/* Drop the chunks so that the memory outside the heap can be reclaimed */
+	public void free()
+	{
+		this.chunks.clear();
+		this.reset();
+		return;
+	}
+	
+	
+	/** Access functions **/
+	public int getInt(long address)
+	{
+		return this.chunks.get((int)(address >>> 32)).getInt((int)address);
+	}
+	public void putInt(long address, int value)
+	{
+		this.chunks.get((int)(address >>> 32)).putInt((int)address, value);
+		return;
+	}
+	public double getDouble(long address)
+	{
+		return this.chunks.get((int)(address >>> 32)).getDouble((int)address);
+	}
+	public void putDouble(long address, double value)
+	{
+		this.chunks.get((int)(address >>> 32)).putDouble((int)address, value);
+		return;
+	}
+	public float getFloat(long address)
+	{
+		return this.chunks.get((int)(address >>> 32)).getFloat((int)address);
+	}
+	public void putFloat(long address, float value)
+	{
+		this.chunks.get((int)(address >>> 32)).putFloat((int)address, value);
+		return;
+	}
+	
+	
+	/** Child functions **/
+	private ByteBuffer newChunk(int size)
+	{
+		int capacity = (int)Math.min(this.chunkSize, (long)initialChunkSize << Math.min(this.chunks.size(), 30));
+		return ByteBuffer.allocateDirect(Math.max(capacity, size)).order(ByteOrder.nativeOrder());
+	}
+}
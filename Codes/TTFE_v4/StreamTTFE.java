@@ -0,0 +1,526 @@
+package ttfe;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+
+/**
+ * StreamTTFE (TTFE over a sliding window of a transaction stream)
+ * @author Yuer Yang, Department of Computer Science, The University of Hong Kong
+ *
+ * addBatch() -> Window: append the transactions of a batch and expire the oldest ones (count-based or time-based)
+ * 		-> Summaries<event -> twtf, etf, rtf, tid-list>: added and subtracted per transaction of the batch and the expired ones only
+ * 		-> Dirty events: the events occurring in the added or expired transactions
+ * mineWindow() -> Subtrees: the subtree of event x holds the event sets whose first event (in the order of event IDs) is x
+ * 		-> it only depends on the transactions containing x so that the subtrees of the other events keep their cached results
+ * 		-> the subtrees are visited by etf + rtf (Down) and a dirty subtree is re-mined only if its etf + rtf can exceed delta
+ * 		-> the cached results of a subtree are all its event sets whose values exceed the delta at that time (at most topK)
+ *
+ * The fixed order of event IDs is used instead of TWTF (Up) so that the RTF of the transactions in the window never changes.
+ * The values are the same as the eetf of AlgoTTFE, namely sum([sum([tf(x) for x in X]) for transaction tau if X in tau]).
+ */
+public class StreamTTFE
+{
+	/** Main parameters **/
+	public static final String algoName = "TTFE-S"; // name of the algorithm
+	public static final int WINDOW_COUNT = 0, WINDOW_TIME = 1; // count-based (transactions) and time-based (milliseconds) windows
+	public static final int defaultTopK = AlgoTTFE.defaultTopK, defaultWindowType = WINDOW_COUNT;
+	public static final long defaultWindowSize = 10000;
+	public static final double defaultAlpha = AlgoTTFE.defaultAlpha, defaultBeta = AlgoTTFE.defaultBeta;
+	
+	private int topK = defaultTopK, windowType = defaultWindowType;
+	private long windowSize = defaultWindowSize;
+	private double alpha = defaultAlpha, beta = defaultBeta;
+	private Double delta = null; // null is used as -float("inf") in Python here
+	
+	private ArrayDeque<Transaction> window = new ArrayDeque<Transaction>();
+	private HashMap<Integer, Summary> summaries = new HashMap<Integer, Summary>(); // Summaries<event -> summary> of the events in the window
+	private HashSet<Integer> dirtyEvents = new HashSet<Integer>();
+	private PriorityQueue<HTFE> finalResults = new PriorityQueue<HTFE>();
+	
+	private long nextTid = 1, latestTimestamp = Long.MIN_VALUE;
+	private double timeConsumption = 0; // of the latest update in ms
+	private int reminedCount = 0, expiredCount = 0; // of the latest update
+	
+	
+	/** Construction functions **/
+	public static class Builder
+	{
+		private int topK = defaultTopK, windowType = defaultWindowType;
+		private long windowSize = defaultWindowSize;
+		private double alpha = defaultAlpha, beta = defaultBeta;
+		
+		public Builder() {}
+		public Builder buildTopK(int topK)
+		{
+			if (AlgoTTFE.checkTopK(topK))
+				this.topK = topK;
+			else
+			{
+				this.topK = defaultTopK;
+				AlgoTTFE.printTopKStatement(topK, defaultTopK);
+			}
+			return this;
+		}
+		public Builder buildAlphaBeta(double alpha, double beta)
+		{
+			if (AlgoTTFE.checkAlphaAndBeta(alpha, beta))
+			{
+				this.alpha = alpha;
+				this.beta = beta;
+			}
+			else
+			{
+				this.alpha = defaultAlpha;
+				this.beta = defaultBeta;
+				AlgoTTFE.printAlphaAndBetaStatement(alpha, beta, defaultAlpha, defaultBeta);
+			}
+			return this;
+		}
+		public Builder buildCountWindow(int transactionCount)
+		{
+			return this.buildWindow(WINDOW_COUNT, transactionCount);
+		}
+		public Builder buildTimeWindow(long milliseconds)
+		{
+			return this.buildWindow(WINDOW_TIME, milliseconds);
+		}
+		private Builder buildWindow(int windowType, long windowSize)
+		{
+			if (windowSize > 0)
+			{
+				this.windowType = windowType;
+				this.windowSize = windowSize;
+			}
+			else
+				System.out.printf("The passed parameter windowSize should be a positive integer. It is defaulted to %d. \nParameter: windowSize = %d -> windowSize = %d\n\n", defaultWindowSize, windowSize, defaultWindowSize);
+			return this;
+		}
+		public StreamTTFE build()
+		{
+			return new StreamTTFE(this);
+		}
+	}
+	private StreamTTFE(Builder builder)
+	{
+		this.topK = builder.topK;
+		this.windowType = builder.windowType;
+		this.windowSize = builder.windowSize;
+		this.alpha = builder.alpha;
+		this.beta = builder.beta;
+	}
+	
+	
+	/** Child classes **/
+	private static class Transaction
+	{
+		long tid = 0, timestamp = 0;
+		int[] events = null; // sorted by event IDs (Up)
+		double[] tfs = null, rtfs = null; // rtfs[i] = sum(tfs[i + 1:])
+		double ttf = 0;
+	}
+	
+	private static class Summary
+	{
+		double twtf = 0, etf = 0, rtf = 0;
+		ArrayDeque<Transaction> transactions = new ArrayDeque<Transaction>(); // tid-list (Up)
+		ArrayList<HTFE> results = null; // cached results of the subtree (null if not mined yet)
+		Double floor = null; // the cached results contain all the event sets of the subtree whose values exceed floor
+	}
+	
+	private static class HTFE implements Comparable<HTFE>
+	{
+		int[] sequence = null;
+		double eetf = 0;
+		public HTFE(int[] sequence, double eetf)
+		{
+			this.sequence = sequence;
+			this.eetf = eetf;
+		}
+		public String toString()
+		{
+			if (this.sequence.length == 1) // int:
+				return this.sequence[0] + ":" + this.eetf;
+			String sRet = "(" + this.sequence[0];
+			for (int i = 1; i < this.sequence.length; ++i)
+				sRet += ", " + this.sequence[i];
+			return sRet + "):" + this.eetf;
+		}
+		@Override
+		public int compareTo(HTFE htfe)
+		{
+			return Double.compare(this.eetf, htfe.eetf);
+		}
+	}
+	
+	private static class Projection // the transactions containing an event set with the positions of its last event
+	{
+		int size = 0;
+		Transaction[] transactions = new Transaction[4];
+		int[] positions = new int[4];
+		double[] values = new double[4];
+		double eetf = 0, retf = 0;
+		void add(Transaction transaction, int position, double value)
+		{
+			if (this.size == this.transactions.length)
+			{
+				this.transactions = Arrays.copyOf(this.transactions, this.size << 1);
+				this.positions = Arrays.copyOf(this.positions, this.size << 1);
+				this.values = Arrays.copyOf(this.values, this.size << 1);
+			}
+			this.transactions[this.size] = transaction;
+			this.positions[this.size] = position;
+			this.values[this.size++] = value;
+			this.eetf += value;
+			this.retf += transaction.rtfs[position];
+		}
+	}
+	
+	
+	/** Stream functions **/
+	/* Append a batch at the current time */
+	public boolean addBatch(int[][] items, double[][] threats, double[][] frequencies)
+	{
+		return this.addBatch(items, threats, frequencies, System.currentTimeMillis());
+	}
+	
+	/* Append a batch whose transactions share the timestamp (in ms) and update the top-k results */
+	public boolean addBatch(int[][] items, double[][] threats, double[][] frequencies, long timestamp)
+	{
+		if (items.length != threats.length || items.length != frequencies.length)
+		{
+			System.out.println("The numbers of rows of items, threats and frequencies should be the same. ");
+			return false;
+		}
+		if (timestamp < this.latestTimestamp)
+		{
+			System.out.println("The timestamps of the batches should be non-decreasing. ");
+			return false;
+		}
+		final long startTimestamp = System.nanoTime();
+		this.latestTimestamp = timestamp;
+		for (int tid = 0; tid < items.length; ++tid)
+		{
+			Transaction transaction = this.buildTransaction(items[tid], threats[tid], frequencies[tid], timestamp);
+			if (null == transaction)
+				return false;
+			if (transaction.events.length > 0)
+				this.insertTransaction(transaction);
+		}
+		this.expire();
+		this.mineWindow();
+		this.timeConsumption = (System.nanoTime() - startTimestamp) / 1e6;
+		return true;
+	}
+	
+	/* Expire the transactions out of the time-based window without any new batch */
+	public boolean advanceTime(long timestamp)
+	{
+		if (timestamp < this.latestTimestamp)
+			return false;
+		final long startTimestamp = System.nanoTime();
+		this.latestTimestamp = timestamp;
+		this.expire();
+		this.mineWindow();
+		this.timeConsumption = (System.nanoTime() - startTimestamp) / 1e6;
+		return true;
+	}
+	
+	
+	/** Child functions **/
+	/* Build a transaction sorted by event IDs (Up) and merge the duplicated events */
+	private Transaction buildTransaction(int[] items, double[] threats, double[] frequencies, long timestamp)
+	{
+		if (items.length != threats.length || items.length != frequencies.length)
+		{
+			System.out.println("The lengths of items, threats and frequencies of Transaction " + this.nextTid + " should be the same. ");
+			return null;
+		}
+		Integer[] order = new Integer[items.length];
+		for (int i = 0; i < order.length; ++i)
+			order[i] = i;
+		Arrays.sort(order, (a, b) -> Integer.compare(items[a], items[b]));
+		int[] events = new int[items.length];
+		double[] tfs = new double[items.length];
+		int length = 0;
+		for (int i = 0; i < order.length; ++i)
+		{
+			double tf = this.alpha * threats[order[i]] + this.beta * frequencies[order[i]];
+			if (length > 0 && events[length - 1] == items[order[i]])
+				tfs[length - 1] += tf;
+			else
+			{
+				events[length] = items[order[i]];
+				tfs[length++] = tf;
+			}
+		}
+		Transaction transaction = new Transaction();
+		transaction.tid = this.nextTid++;
+		transaction.timestamp = timestamp;
+		transaction.events = Arrays.copyOf(events, length);
+		transaction.tfs = Arrays.copyOf(tfs, length);
+		transaction.rtfs = new double[length];
+		for (int i = length - 1; i >= 0; --i)
+		{
+			transaction.rtfs[i] = i + 1 < length ? transaction.rtfs[i + 1] + transaction.tfs[i + 1] : 0;
+			transaction.ttf += transaction.tfs[i];
+		}
+		return transaction;
+	}
+	
+	private void insertTransaction(Transaction transaction)
+	{
+		this.window.addLast(transaction);
+		for (int i = 0; i < transaction.events.length; ++i)
+		{
+			Integer event = transaction.events[i];
+			Summary summary = this.summaries.get(event);
+			if (null == summary)
+			{
+				summary = new Summary();
+				this.summaries.put(event, summary);
+			}
+			summary.twtf += transaction.ttf;
+			summary.etf += transaction.tfs[i];
+			summary.rtf += transaction.rtfs[i];
+			summary.transactions.addLast(transaction);
+			this.dirtyEvents.add(event);
+		}
+		return;
+	}
+	
+	private void expire()
+	{
+		this.expiredCount = 0;
+		while (
+			!this.window.isEmpty() && (
+				this.windowType == WINDOW_COUNT ? this.window.size() > this.windowSize
+				: this.window.peekFirst().timestamp <= this.latestTimestamp - this.windowSize
+			)
+		)
+		{
+			Transaction transaction = this.window.pollFirst();
+			for (int i = 0; i < transaction.events.length; ++i)
+			{
+				Integer event = transaction.events[i];
+				Summary summary = this.summaries.get(event);
+				summary.transactions.pollFirst(); // the oldest transaction of the event is always the expired one
+				if (summary.transactions.isEmpty())
+				{
+					this.summaries.remove(event);
+					this.dirtyEvents.remove(event);
+					continue;
+				}
+				summary.twtf -= transaction.ttf;
+				summary.etf -= transaction.tfs[i];
+				summary.rtf -= transaction.rtfs[i];
+				this.dirtyEvents.add(event);
+			}
+			++this.expiredCount;
+		}
+		return;
+	}
+	
+	/* Re-mine the dirty subtrees (and the subtrees whose floors exceed delta) by etf + rtf (Down) until the bound cannot exceed delta */
+	private void mineWindow()
+	{
+		this.reminedCount = 0;
+		this.finalResults.clear();
+		for (HTFE htfe : this.getCleanResults())
+			this.offer(this.finalResults, htfe);
+		this.updateDelta();
+		
+		ArrayList<Integer> events = new ArrayList<Integer>(this.summaries.keySet());
+		Collections.sort(events, (a, b) -> Double.compare(this.getBound(b), this.getBound(a)));
+		for (Integer event : events)
+		{
+			if (this.delta != null && this.getBound(event) <= this.delta.doubleValue()) // none of the remaining subtrees can exceed delta
+				break;
+			Summary summary = this.summaries.get(event);
+			boolean isDirty = this.dirtyEvents.contains(event);
+			if (!isDirty && (null == summary.floor || (this.delta != null && summary.floor.doubleValue() <= this.delta.doubleValue()))) // the cached results are still valid
+				continue;
+			Double oldFloor = isDirty ? null : summary.floor;
+			this.mineSubtree(event, summary);
+			this.dirtyEvents.remove(event);
+			++this.reminedCount;
+			for (HTFE htfe : summary.results) // only offer the event sets which are not in the final results yet
+				if (isDirty || htfe.eetf <= oldFloor.doubleValue())
+					this.offer(this.finalResults, htfe);
+			this.updateDelta();
+		}
+		return;
+	}
+	
+	private ArrayList<HTFE> getCleanResults() // the cached results of the subtrees unaffected since they were mined
+	{
+		ArrayList<HTFE> results = new ArrayList<HTFE>();
+		for (Map.Entry<Integer, Summary> entry : this.summaries.entrySet())
+			if (!this.dirtyEvents.contains(entry.getKey()) && entry.getValue().results != null)
+				results.addAll(entry.getValue().results);
+		return results;
+	}
+	
+	private double getBound(Integer event)
+	{
+		Summary summary = this.summaries.get(event);
+		return summary.etf + summary.rtf;
+	}
+	
+	private void offer(PriorityQueue<HTFE> queue, HTFE htfe)
+	{
+		if (queue.size() < this.topK)
+			queue.offer(htfe);
+		else if (htfe.eetf > queue.peek().eetf)
+		{
+			queue.poll();
+			queue.offer(htfe);
+		}
+		return;
+	}
+	
+	private void updateDelta()
+	{
+		this.delta = this.finalResults.size() >= this.topK ? Double.valueOf(this.finalResults.peek().eetf) : null;
+		return;
+	}
+	
+	/* Mine the subtree of an event with the current delta as the initial threshold */
+	private void mineSubtree(Integer event, Summary summary)
+	{
+		Projection projection = new Projection();
+		double twtf = 0, etf = 0, rtf = 0;
+		for (Transaction transaction : summary.transactions)
+		{
+			int position = Arrays.binarySearch(transaction.events, event.intValue());
+			projection.add(transaction, position, transaction.tfs[position]);
+			twtf += transaction.ttf;
+			etf += transaction.tfs[position];
+			rtf += transaction.rtfs[position];
+		}
+		summary.twtf = twtf; // refresh the summaries to clear the accumulated rounding errors
+		summary.etf = etf;
+		summary.rtf = rtf;
+		
+		PriorityQueue<HTFE> localResults = new PriorityQueue<HTFE>();
+		this.mineProjection(new int[] { event.intValue() }, projection, localResults);
+		summary.results = new ArrayList<HTFE>(localResults);
+		summary.floor = localResults.size() >= this.topK ? null : this.delta; // a full queue is the exact top-k of the subtree
+		return;
+	}
+	
+	private void mineProjection(int[] sequence, Projection projection, PriorityQueue<HTFE> localResults)
+	{
+		if (this.exceeds(projection.eetf, localResults))
+			this.offer(localResults, new HTFE(sequence, projection.eetf));
+		if (!this.exceeds(projection.eetf + projection.retf, localResults))
+			return;
+		
+		HashMap<Integer, Projection> children = new HashMap<Integer, Projection>();
+		for (int i = 0; i < projection.size; ++i)
+		{
+			Transaction transaction = projection.transactions[i];
+			for (int position = projection.positions[i] + 1; position < transaction.events.length; ++position)
+			{
+				Projection child = children.get(transaction.events[position]);
+				if (null == child)
+				{
+					child = new Projection();
+					children.put(transaction.events[position], child);
+				}
+				child.add(transaction, position, projection.values[i] + transaction.tfs[position]);
+			}
+		}
+		
+		ArrayList<Map.Entry<Integer, Projection>> sortedChildren = new ArrayList<Map.Entry<Integer, Projection>>(children.entrySet());
+		Collections.sort(sortedChildren, (a, b) -> Double.compare(b.getValue().eetf + b.getValue().retf, a.getValue().eetf + a.getValue().retf)); // raise the threshold earlier
+		for (Map.Entry<Integer, Projection> child : sortedChildren)
+			if (this.exceeds(child.getValue().eetf + child.getValue().retf, localResults))
+			{
+				int[] childSequence = Arrays.copyOf(sequence, sequence.length + 1);
+				childSequence[sequence.length] = child.getKey().intValue();
+				this.mineProjection(childSequence, child.getValue(), localResults);
+			}
+		return;
+	}
+	
+	private boolean exceeds(double value, PriorityQueue<HTFE> localResults) // compare with max(delta, the local k-th value)
+	{
+		if (localResults.size() >= this.topK && value <= localResults.peek().eetf)
+			return false;
+		return null == this.delta || value > this.delta.doubleValue();
+	}
+	
+	
+	/** Getter **/
+	public int getTopK()
+	{
+		return this.topK;
+	}
+	public double getAlpha()
+	{
+		return this.alpha;
+	}
+	public double getBeta()
+	{
+		return this.beta;
+	}
+	public Double getDelta()
+	{
+		return this.delta;
+	}
+	public int getWindowTransactionCount()
+	{
+		return this.window.size();
+	}
+	public int getEventCount()
+	{
+		return this.summaries.size();
+	}
+	public int getReminedCount() // the number of subtrees re-mined by the latest update
+	{
+		return this.reminedCount;
+	}
+	public int getExpiredCount() // the number of transactions expired by the latest update
+	{
+		return this.expiredCount;
+	}
+	public double getTimeConsumption() // of the latest update in ms
+	{
+		return this.timeConsumption;
+	}
+	private ArrayList<HTFE> getSortedFinalResults()
+	{
+		ArrayList<HTFE> sortedResults = new ArrayList<HTFE>(this.finalResults);
+		Collections.sort(sortedResults, Collections.reverseOrder());
+		return sortedResults;
+	}
+	public int[][] getFinalItemsets() // sorted by eetf (Down)
+	{
+		ArrayList<HTFE> sortedResults = this.getSortedFinalResults();
+		int[][] itemsets = new int[sortedResults.size()][];
+		for (int i = 0; i < itemsets.length; ++i)
+			itemsets[i] = sortedResults.get(i).sequence.clone();
+		return itemsets;
+	}
+	public double[] getFinalValues() // in the same order as getFinalItemsets()
+	{
+		ArrayList<HTFE> sortedResults = this.getSortedFinalResults();
+		double[] values = new double[sortedResults.size()];
+		for (int i = 0; i < values.length; ++i)
+			values[i] = sortedResults.get(i).eetf;
+		return values;
+	}
+	
+	public String toString()
+	{
+		return algoName + " - Window: " + this.window.size() + " transactions\t\tEvents: " + this.summaries.size() + "\t\tRe-mined subtrees: " + this.reminedCount
+			+ "\t\tTime: " + AlgoTTFE.formatDecimal(this.timeConsumption) + " ms\t\tDelta: " + AlgoTTFE.formatDecimal(this.delta) + "\nFinal results: " + this.getSortedFinalResults();
+	}
+}
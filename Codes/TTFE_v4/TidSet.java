@@ -0,0 +1,574 @@
+package ttfe;
+
+import java.util.Arrays;
+
+
+/**
+ * TidSet (an adaptive set of tids in the spirit of Roaring bitmaps)
+ * @author Yuer Yang, Department of Computer Science, The University of Hong Kong
+ *
+ * The tids are split into chunks of 65536 by their high 16 bits, and each chunk keeps the low 16 bits in one of three containers:
+ * 		a sorted array (2 bytes per tid, for at most 4096 tids), a bitmap (8 KB for any number of tids) or the runs of consecutive tids (4 bytes per run).
+ * The tids are appended in ascending order (as the tids of the transactions and of the tid-lists), and trim() picks the smallest container of each chunk.
+ * The rank of a tid is its position in the set, so that the values of the tids can be kept by ranks in a parallel array and read through a Cursor.
+ */
+public class TidSet
+{
+	private static final byte ARRAY = 0, BITMAP = 1, RUN = 2;
+	private static final int maxArraySize = 4096; // an array of more tids is larger than a bitmap
+	private static final int bitmapWords = 1024;
+	
+	private static final char[] emptyKeys = new char[0];
+	private static final byte[] emptyTypes = new byte[0];
+	private static final int[] emptyCardinalities = new int[0];
+	private static final Object[] emptyContainers = new Object[0];
+	
+	private int size = 0; // the number of chunks
+	private char[] keys = emptyKeys; // the high 16 bits of the tids in each chunk
+	private byte[] types = emptyTypes;
+	private int[] cardinalities = emptyCardinalities;
+	private Object[] containers = emptyContainers; // char[] of the low 16 bits (ARRAY), long[] (BITMAP) or char[] of (start, length - 1) pairs (RUN)
+	private int cardinality = 0, last = -1;
+	
+	
+	/** Construction functions **/
+	public TidSet()
+	{
+	}
+	public TidSet(int[] tids, int count) // the first count tids (ascending) in one pass with the smallest containers
+	{
+		for (int start = 0, end = 0; start < count; start = end)
+		{
+			char key = (char)(tids[start] >>> 16);
+			int runCount = 1;
+			for (end = start + 1; end < count && tids[end] >>> 16 == key; ++end)
+				if (tids[end] <= tids[end - 1])
+					throw new IllegalArgumentException("The tids should be added in ascending order (" + tids[end] + " after " + tids[end - 1] + "). ");
+				else if (tids[end] != tids[end - 1] + 1)
+					++runCount;
+			int size = end - start;
+			char[] array = new char[size];
+			for (int i = 0; i < size; ++i)
+				array[i] = (char)tids[start + i];
+			if (runCount << 2 < Math.min(size << 1, bitmapWords << 3))
+				this.addChunk(key, RUN, size, toRuns(ARRAY, array, size, runCount));
+			else if (size << 1 <= bitmapWords << 3)
+				this.addChunk(key, ARRAY, size, array);
+			else
+				this.addChunk(key, BITMAP, size, toBitmap(ARRAY, array, size));
+			this.cardinality += size;
+			this.last = tids[end - 1];
+		}
+	}
+	
+	
+	/** Getters **/
+	public int getCardinality()
+	{
+		return this.cardinality;
+	}
+	public boolean isEmpty()
+	{
+		return 0 == this.cardinality;
+	}
+	public long getSizeInBytes() // the bytes held by the containers
+	{
+		long bytes = 7L * this.keys.length;
+		for (int i = 0; i < this.size; ++i)
+			bytes += BITMAP == this.types[i] ? ((long[])this.containers[i]).length << 3 : ((char[])this.containers[i]).length << 1;
+		return bytes;
+	}
+	
+	
+	/** Update functions **/
+	/* Append a tid greater than all the tids in the set */
+	public void add(int tid)
+	{
+		if (tid <= this.last)
+			throw new IllegalArgumentException("The tids should be added in ascending order (" + tid + " after " + this.last + "). ");
+		char key = (char)(tid >>> 16), low = (char)tid;
+		if (0 == this.size || this.keys[this.size - 1] != key)
+			this.addChunk(key, ARRAY, 0, new char[4]);
+		int chunk = this.size - 1, count = this.cardinalities[chunk];
+		if (ARRAY == this.types[chunk])
+		{
+			char[] array = (char[])this.containers[chunk];
+			if (count == maxArraySize) // switch to a bitmap
+			{
+				this.types[chunk] = BITMAP;
+				this.containers[chunk] = toBitmap(ARRAY, array, count);
+				setBit((long[])this.containers[chunk], low);
+			}
+			else
+			{
+				if (count == array.length)
+					this.containers[chunk] = array = Arrays.copyOf(array, Math.min(count << 1, maxArraySize));
+				array[count] = low;
+			}
+		}
+		else if (BITMAP == this.types[chunk])
+			setBit((long[])this.containers[chunk], low);
+		else // RUN (appended after trim())
+		{
+			char[] runs = (char[])this.containers[chunk];
+			int end = runs.length - 2;
+			if (runs[end] + runs[end + 1] + 1 == low) // extend the last run
+				++runs[end + 1];
+			else
+			{
+				runs = Arrays.copyOf(runs, runs.length + 2);
+				runs[end + 2] = low;
+				this.containers[chunk] = runs;
+			}
+		}
+		++this.cardinalities[chunk];
+		++this.cardinality;
+		this.last = tid;
+		return;
+	}
+	
+	/* Pick the smallest container of each chunk and drop the spare capacity */
+	public TidSet trim()
+	{
+		for (int i = 0; i < this.size; ++i)
+		{
+			Object container = this.containers[i];
+			int count = this.cardinalities[i], runCount = countRuns(this.types[i], container, count);
+			int arrayBytes = count << 1, bitmapBytes = bitmapWords << 3, runBytes = runCount << 2;
+			if (runBytes < Math.min(arrayBytes, bitmapBytes))
+			{
+				if (this.types[i] != RUN)
+					this.containers[i] = toRuns(this.types[i], container, count, runCount);
+				this.types[i] = RUN;
+			}
+			else if (arrayBytes <= bitmapBytes)
+			{
+				this.containers[i] = toArray(this.types[i], container, count);
+				this.types[i] = ARRAY;
+			}
+			else
+			{
+				if (this.types[i] != BITMAP)
+					this.containers[i] = toBitmap(this.types[i], container, count);
+				this.types[i] = BITMAP;
+			}
+		}
+		this.keys = Arrays.copyOf(this.keys, this.size);
+		this.types = Arrays.copyOf(this.types, this.keys.length);
+		this.cardinalities = Arrays.copyOf(this.cardinalities, this.keys.length);
+		this.containers = Arrays.copyOf(this.containers, this.keys.length);
+		return this;
+	}
+	
+	
+	/** Set operations **/
+	public boolean contains(int tid)
+	{
+		int chunk = Arrays.binarySearch(this.keys, 0, this.size, (char)(tid >>> 16));
+		if (chunk < 0 || tid < 0)
+			return false;
+		return containsLow(this.types[chunk], this.containers[chunk], this.cardinalities[chunk], (char)tid);
+	}
+	
+	/* The intersection of two sets (trimmed) */
+	public TidSet and(TidSet tidSet)
+	{
+		TidSet result = new TidSet();
+		for (int i = 0, j = 0; i < this.size && j < tidSet.size; )
+		{
+			if (this.keys[i] < tidSet.keys[j])
+				++i;
+			else if (this.keys[i] > tidSet.keys[j])
+				++j;
+			else
+			{
+				int count = 0;
+				Object container = null;
+				if (ARRAY == this.types[i] || ARRAY == tidSet.types[j]) // filter the array
+				{
+					boolean isFirst = ARRAY == this.types[i];
+					char[] array = (char[])(isFirst ? this.containers[i] : tidSet.containers[j]), lows = new char[isFirst ? this.cardinalities[i] : tidSet.cardinalities[j]];
+					for (int l = 0; l < lows.length; ++l)
+						if (isFirst ? containsLow(tidSet.types[j], tidSet.containers[j], tidSet.cardinalities[j], array[l]) : containsLow(this.types[i], this.containers[i], this.cardinalities[i], array[l]))
+							lows[count++] = array[l];
+					container = lows;
+				}
+				else
+				{
+					container = new long[bitmapWords];
+					count = andToBitmap(this.types[i], this.containers[i], this.cardinalities[i], tidSet.types[j], tidSet.containers[j], tidSet.cardinalities[j], (long[])container);
+				}
+				if (count > 0)
+				{
+					result.addChunk(this.keys[i], container instanceof long[] ? BITMAP : ARRAY, count, container);
+					result.cardinality += count;
+				}
+				++i;
+				++j;
+			}
+		}
+		result.last = Integer.MAX_VALUE; // no more tids are appended to an intersection
+		return result.trim();
+	}
+	
+	/* The size of the intersection of two sets without building it */
+	public int andCardinality(TidSet tidSet)
+	{
+		int count = 0;
+		for (int i = 0, j = 0; i < this.size && j < tidSet.size; )
+		{
+			if (this.keys[i] < tidSet.keys[j])
+				++i;
+			else if (this.keys[i] > tidSet.keys[j])
+				++j;
+			else
+			{
+				count += andCardinality(this.types[i], this.containers[i], this.cardinalities[i], tidSet.types[j], tidSet.containers[j], tidSet.cardinalities[j]);
+				++i;
+				++j;
+			}
+		}
+		return count;
+	}
+	
+	public int[] toArray()
+	{
+		int[] tids = new int[this.cardinality];
+		Cursor cursor = this.cursor();
+		for (int i = 0; i < tids.length; ++i)
+			tids[i] = cursor.next();
+		return tids;
+	}
+	
+	public Cursor cursor()
+	{
+		return new Cursor();
+	}
+	
+	/* A cursor moving forward over the set: next() walks every tid, or advance() skips to a tid (greater than the previous one) and returns its rank or -1 if it is absent */
+	public class Cursor
+	{
+		private int chunk = 0, index = 0, rank = 0; // the current chunk, the position in its container and the number of tids before the position in the chunk
+		private int base = 0; // the number of tids in the chunks before the current one
+		private int low = 0; // the next low 16 bits to visit in a bitmap or a run
+		
+		private void nextChunk()
+		{
+			this.base += TidSet.this.cardinalities[this.chunk];
+			++this.chunk;
+			this.index = this.rank = this.low = 0;
+			return;
+		}
+		
+		public int next()
+		{
+			while (this.chunk < TidSet.this.size)
+			{
+				int key = TidSet.this.keys[this.chunk] << 16;
+				Object container = TidSet.this.containers[this.chunk];
+				switch (TidSet.this.types[this.chunk])
+				{
+				case ARRAY:
+					if (this.index < TidSet.this.cardinalities[this.chunk])
+					{
+						++this.rank;
+						return key | ((char[])container)[this.index++];
+					}
+					break;
+				case BITMAP:
+					long[] bitmap = (long[])container;
+					for (int word = this.low >>> 6; this.low < 65536 && word < bitmapWords; ++word, this.low = word << 6)
+					{
+						long bits = bitmap[word] & (-1L << this.low);
+						if (bits != 0)
+						{
+							int bit = (word << 6) + Long.numberOfTrailingZeros(bits);
+							this.low = bit + 1;
+							++this.rank;
+							return key | bit;
+						}
+					}
+					break;
+				default: // RUN
+					char[] runs = (char[])container;
+					for (; this.index < runs.length; this.index += 2)
+						if (this.low <= runs[this.index] + runs[this.index + 1])
+						{
+							int tid = Math.max(this.low, runs[this.index]);
+							this.low = tid + 1;
+							++this.rank;
+							return key | tid;
+						}
+					break;
+				}
+				this.nextChunk();
+			}
+			return -1;
+		}
+		
+		public int advance(int tid)
+		{
+			char key = (char)(tid >>> 16), target = (char)tid;
+			while (this.chunk < TidSet.this.size && TidSet.this.keys[this.chunk] < key)
+				this.nextChunk();
+			if (this.chunk == TidSet.this.size || TidSet.this.keys[this.chunk] != key)
+				return -1;
+			Object container = TidSet.this.containers[this.chunk];
+			switch (TidSet.this.types[this.chunk])
+			{
+			case ARRAY:
+				char[] array = (char[])container;
+				int count = TidSet.this.cardinalities[this.chunk];
+				while (this.index < count && array[this.index] < target)
+					++this.index;
+				return this.index < count && array[this.index] == target ? this.base + this.index : -1;
+			case BITMAP:
+				long[] bitmap = (long[])container;
+				this.rank += countBits(bitmap, this.low, target);
+				this.low = target;
+				if ((bitmap[target >>> 6] & (1L << target)) == 0)
+					return -1;
+				++this.low;
+				return this.base + this.rank++;
+			default: // RUN
+				char[] runs = (char[])container;
+				while (this.index < runs.length && runs[this.index] + runs[this.index + 1] < target)
+				{
+					this.rank += runs[this.index + 1] + 1;
+					this.index += 2;
+				}
+				return this.index < runs.length && runs[this.index] <= target ? this.base + this.rank + target - runs[this.index] : -1;
+			}
+		}
+	}
+	
+	
+	/** Child functions **/
+	private void addChunk(char key, byte type, int count, Object container)
+	{
+		if (this.size == this.keys.length)
+		{
+			int capacity = Math.max(this.size << 1, 1);
+			this.keys = Arrays.copyOf(this.keys, capacity);
+			this.types = Arrays.copyOf(this.types, capacity);
+			this.cardinalities = Arrays.copyOf(this.cardinalities, capacity);
+			this.containers = Arrays.copyOf(this.containers, capacity);
+		}
+		this.keys[this.size] = key;
+		this.types[this.size] = type;
+		this.cardinalities[this.size] = count;
+		this.containers[this.size] = container;
+		++this.size;
+		return;
+	}
+	
+	private static void setBit(long[] bitmap, int low)
+	{
+		bitmap[low >>> 6] |= 1L << low;
+		return;
+	}
+	
+	private static int countBits(long[] bitmap, int from, int to) // the number of bits in [from, to)
+	{
+		if (from >= to)
+			return 0;
+		int fromWord = from >>> 6, toWord = (to - 1) >>> 6, count = 0;
+		long first = -1L << from, last = -1L >>> (63 - ((to - 1) & 63));
+		if (fromWord == toWord)
+			return Long.bitCount(bitmap[fromWord] & first & last);
+		count += Long.bitCount(bitmap[fromWord] & first);
+		for (int word = fromWord + 1; word < toWord; ++word)
+			count += Long.bitCount(bitmap[word]);
+		return count + Long.bitCount(bitmap[toWord] & last);
+	}
+	
+	private static void setBits(long[] bitmap, int from, int to) // set the bits in [from, to)
+	{
+		int fromWord = from >>> 6, toWord = (to - 1) >>> 6;
+		long first = -1L << from, last = -1L >>> (63 - ((to - 1) & 63));
+		if (fromWord == toWord)
+			bitmap[fromWord] |= first & last;
+		else
+		{
+			bitmap[fromWord] |= first;
+			for (int word = fromWord + 1; word < toWord; ++word)
+				bitmap[word] = -1L;
+			bitmap[toWord] |= last;
+		}
+		return;
+	}
+	
+	private static boolean containsLow(byte type, Object container, int count, char low)
+	{
+		if (ARRAY == type)
+			return Arrays.binarySearch((char[])container, 0, count, low) >= 0;
+		else if (BITMAP == type)
+			return (((long[])container)[low >>> 6] & (1L << low)) != 0;
+		char[] runs = (char[])container;
+		int left = 0, right = (runs.length >>> 1) - 1; // the last run starting at or before low
+		while (left <= right)
+		{
+			int middle = (left + right) >>> 1;
+			if (runs[middle << 1] <= low)
+				left = middle + 1;
+			else
+				right = middle - 1;
+		}
+		return right >= 0 && low <= runs[right << 1] + runs[(right << 1) + 1];
+	}
+	
+	private static int countRuns(byte type, Object container, int count)
+	{
+		if (RUN == type)
+			return ((char[])container).length >>> 1;
+		int runCount = 0;
+		if (ARRAY == type)
+		{
+			char[] array = (char[])container;
+			for (int i = 0; i < count; ++i)
+				if (0 == i || array[i] != array[i - 1] + 1)
+					++runCount;
+			return runCount;
+		}
+		long[] bitmap = (long[])container;
+		for (int word = 0; word < bitmapWords; ++word) // a run starts at a set bit whose lower neighbour is not set
+		{
+			long bits = bitmap[word], previous = (bits << 1) | (word > 0 ? bitmap[word - 1] >>> 63 : 0);
+			runCount += Long.bitCount(bits & ~previous);
+		}
+		return runCount;
+	}
+	
+	private static Object toArray(byte type, Object container, int count)
+	{
+		if (ARRAY == type)
+			return ((char[])container).length == count ? container : Arrays.copyOf((char[])container, count);
+		char[] array = new char[count];
+		int pointer = 0;
+		if (BITMAP == type)
+		{
+			long[] bitmap = (long[])container;
+			for (int word = 0; word < bitmapWords; ++word)
+				for (long bits = bitmap[word]; bits != 0; bits &= bits - 1)
+					array[pointer++] = (char)((word << 6) + Long.numberOfTrailingZeros(bits));
+		}
+		else
+		{
+			char[] runs = (char[])container;
+			for (int i = 0; i < runs.length; i += 2)
+				for (int low = runs[i]; low <= runs[i] + runs[i + 1]; ++low)
+					array[pointer++] = (char)low;
+		}
+		return array;
+	}
+	
+	private static long[] toBitmap(byte type, Object container, int count)
+	{
+		if (BITMAP == type)
+			return (long[])container;
+		long[] bitmap = new long[bitmapWords];
+		char[] values = (char[])container;
+		if (ARRAY == type)
+			for (int i = 0; i < count; ++i)
+				setBit(bitmap, values[i]);
+		else
+			for (int i = 0; i < values.length; i += 2)
+				setBits(bitmap, values[i], values[i] + values[i + 1] + 1);
+		return bitmap;
+	}
+	
+	private static char[] toRuns(byte type, Object container, int count, int runCount)
+	{
+		char[] array = (char[])toArray(type, container, count), runs = new char[runCount << 1];
+		int pointer = -2;
+		for (int i = 0; i < count; ++i)
+			if (0 == i || array[i] != array[i - 1] + 1)
+			{
+				pointer += 2;
+				runs[pointer] = array[i];
+			}
+			else
+				++runs[pointer + 1];
+		return runs;
+	}
+	
+	/* Intersect two containers of bitmaps or runs into a bitmap and return the number of tids in it */
+	private static int andToBitmap(byte type1, Object container1, int count1, byte type2, Object container2, int count2, long[] bitmap)
+	{
+		if (BITMAP == type1 && BITMAP == type2)
+		{
+			long[] bitmap1 = (long[])container1, bitmap2 = (long[])container2;
+			int count = 0;
+			for (int word = 0; word < bitmapWords; ++word)
+				count += Long.bitCount(bitmap[word] = bitmap1[word] & bitmap2[word]);
+			return count;
+		}
+		if (BITMAP == type1) // keep the runs first
+			return andToBitmap(type2, container2, count2, type1, container1, count1, bitmap);
+		int count = 0;
+		char[] runs = (char[])container1; // RUN & (BITMAP or RUN)
+		long[] bitmap2 = toBitmap(type2, container2, count2);
+		for (int i = 0; i < runs.length; i += 2)
+			setBits(bitmap, runs[i], runs[i] + runs[i + 1] + 1);
+		for (int word = 0; word < bitmapWords; ++word)
+			count += Long.bitCount(bitmap[word] &= bitmap2[word]);
+		return count;
+	}
+	
+	private static int andCardinality(byte type1, Object container1, int count1, byte type2, Object container2, int count2)
+	{
+		if (BITMAP == type1 && BITMAP == type2)
+		{
+			long[] bitmap1 = (long[])container1, bitmap2 = (long[])container2;
+			int count = 0;
+			for (int word = 0; word < bitmapWords; ++word)
+				count += Long.bitCount(bitmap1[word] & bitmap2[word]);
+			return count;
+		}
+		if (type1 != ARRAY && ARRAY == type2 || BITMAP == type1 && RUN == type2) // keep the array (or else the runs) first
+			return andCardinality(type2, container2, count2, type1, container1, count1);
+		int count = 0;
+		if (ARRAY == type1 && ARRAY == type2) // merge the two sorted arrays
+		{
+			char[] array1 = (char[])container1, array2 = (char[])container2;
+			for (int i = 0, j = 0; i < count1 && j < count2; )
+				if (array1[i] < array2[j])
+					++i;
+				else if (array1[i] > array2[j])
+					++j;
+				else
+				{
+					++count;
+					++i;
+					++j;
+				}
+			return count;
+		}
+		if (ARRAY == type1)
+		{
+			char[] array = (char[])container1;
+			for (int i = 0; i < count1; ++i)
+				if (containsLow(type2, container2, count2, array[i]))
+					++count;
+			return count;
+		}
+		char[] runs = (char[])container1;
+		if (BITMAP == type2)
+		{
+			for (int i = 0; i < runs.length; i += 2)
+				count += countBits((long[])container2, runs[i], runs[i] + runs[i + 1] + 1);
+			return count;
+		}
+		char[] runs2 = (char[])container2; // RUN & RUN: the overlaps of the runs
+		for (int i = 0, j = 0; i < runs.length && j < runs2.length; )
+		{
+			int end1 = runs[i] + runs[i + 1], end2 = runs2[j] + runs2[j + 1];
+			count += Math.max(Math.min(end1, end2) - Math.max(runs[i], runs2[j]) + 1, 0);
+			if (end1 < end2)
+				i += 2;
+			else
+				j += 2;
+		}
+		return count;
+	}
+}
@@ -0,0 +1,237 @@
+package topkminer;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+
+/**
+ * Dataset (an in-memory database shared by all the engines)
+ * @author Yuer Yang, Department of Computer Science, The University of Hong Kong
+ * 
+ * Each transaction is a row of events (items) where every event owns a threat value and a frequency value. 
+ * THUI regards the threat values as utilities while TTFE, TFUI and THUFI use both columns. 
+ */
+public class Dataset
+{
+	public static final String defaultName = "dataset";
+	
+	private String name = defaultName;
+	private int[][] items = null;
+	private double[][] threats = null, frequencies = null;
+	private String fingerprint = null; // computed once on demand
+	private Dataset recoded = null; // computed once on demand
+	private int[] itemIds = null; // the original ID of each item of a recoded dataset (null for the others)
+	
+	
+	/** Construction functions **/
+	public Dataset(String name, int[][] items, double[][] threats, double[][] frequencies)
+	{
+		if (items.length != threats.length || items.length != frequencies.length)
+			throw new IllegalArgumentException("The numbers of rows of items, threats and frequencies should be the same. ");
+		for (int tid = 0; tid < items.length; ++tid)
+			if (items[tid].length != threats[tid].length || items[tid].length != frequencies[tid].length)
+				throw new IllegalArgumentException("The lengths of items, threats and frequencies of Transaction " + (tid + 1) + " should be the same. ");
+		this.name = null == name ? defaultName : name;
+		this.items = items;
+		this.threats = threats;
+		this.frequencies = frequencies;
+	}
+	
+	
+	/** Getter **/
+	public String getName()
+	{
+		return this.name;
+	}
+	public int size()
+	{
+		return this.items.length;
+	}
+	public int[][] getItems()
+	{
+		return this.items;
+	}
+	public double[][] getThreats()
+	{
+		return this.threats;
+	}
+	public double[][] getFrequencies()
+	{
+		return this.frequencies;
+	}
+	public int[][] getRoundedThreats() // for the engines working on integer utilities
+	{
+		return round(this.threats);
+	}
+	public int[][] getRoundedFrequencies() // for the engines working on integer frequencies
+	{
+		return round(this.frequencies);
+	}
+	public double getTransactionValue(int tid, double alpha, double beta) // ttf(tau) = alpha * sum([t(x) for x in tau]) + beta * sum([f(x) for x in tau])
+	{
+		double value = 0;
+		for (int i = 0; i < this.items[tid].length; ++i)
+			value += alpha * this.threats[tid][i] + beta * this.frequencies[tid][i];
+		return value;
+	}
+	public synchronized String getFingerprint() // the SHA-256 of the contents (the name is excluded)
+	{
+		if (null == this.fingerprint)
+		{
+			MessageDigest digest = null;
+			try
+			{
+				digest = MessageDigest.getInstance("SHA-256");
+			}
+			catch (NoSuchAlgorithmException e)
+			{
+				throw new IllegalStateException(e);
+			}
+			ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES);
+			for (int tid = 0; tid < this.items.length; ++tid)
+			{
+				buffer = ensure(buffer, Integer.BYTES + this.items[tid].length * (Integer.BYTES + Double.BYTES * 2));
+				buffer.putInt(this.items[tid].length); // keep the boundaries of transactions
+				for (int i = 0; i < this.items[tid].length; ++i)
+					buffer.putInt(this.items[tid][i]).putDouble(this.threats[tid][i]).putDouble(this.frequencies[tid][i]);
+				buffer.flip();
+				digest.update(buffer);
+				buffer.clear();
+			}
+			StringBuilder sb = new StringBuilder();
+			for (byte b : digest.digest())
+				sb.append(String.format("%02x", b));
+			this.fingerprint = sb.toString();
+		}
+		return this.fingerprint;
+	}
+	public synchronized Dataset getRecoded() // the items recoded to 0..n-1 in the ascending order of their IDs with the values shared, so that THUI, THUFI, and TFUI index their load-time tables by the items (the search and TTFE still key their maps by the IDs)
+	{
+		if (this.itemIds != null)
+			return this;
+		if (null == this.recoded)
+		{
+			int occurrences = 0;
+			for (int[] transaction : this.items)
+				occurrences += transaction.length;
+			int[] itemIds = new int[occurrences];
+			occurrences = 0;
+			for (int[] transaction : this.items)
+				for (int item : transaction)
+					itemIds[occurrences++] = item;
+			Arrays.sort(itemIds);
+			int count = 0;
+			for (int i = 0; i < itemIds.length; ++i)
+				if (0 == i || itemIds[i] != itemIds[i - 1])
+					itemIds[count++] = itemIds[i];
+			itemIds = Arrays.copyOf(itemIds, count);
+			
+			int[][] items = new int[this.items.length][];
+			for (int tid = 0; tid < this.items.length; ++tid)
+			{
+				items[tid] = new int[this.items[tid].length];
+				for (int i = 0; i < this.items[tid].length; ++i)
+					items[tid][i] = Arrays.binarySearch(itemIds, this.items[tid][i]);
+			}
+			this.recoded = new Dataset(this.name, items, this.threats, this.frequencies);
+			this.recoded.itemIds = itemIds;
+		}
+		return this.recoded;
+	}
+	
+	
+	/** Recoding functions **/
+	/* Map the itemsets mined on getRecoded() back to the original IDs (the order of the items is kept as the recoding is monotonic) */
+	public int[][] decode(int[][] itemsets)
+	{
+		if (null == this.itemIds)
+			return itemsets;
+		int[][] decoded = new int[itemsets.length][];
+		for (int i = 0; i < itemsets.length; ++i)
+		{
+			decoded[i] = new int[itemsets[i].length];
+			for (int j = 0; j < itemsets[i].length; ++j)
+				decoded[i][j] = this.itemIds[itemsets[i][j]];
+		}
+		return decoded;
+	}
+	
+	
+	/** Child functions **/
+	private static ByteBuffer ensure(ByteBuffer buffer, int capacity)
+	{
+		return buffer.capacity() >= capacity ? buffer : ByteBuffer.allocate(Math.max(capacity, buffer.capacity() << 1));
+	}
+
+	private static int[][] round(double[][] values)
+	{
+		int[][] rounded = new int[values.length][];
+		for (int tid = 0; tid < values.length; ++tid)
+		{
+			rounded[tid] = new int[values[tid].length];
+			for (int i = 0; i < values[tid].length; ++i)
+				rounded[tid][i] = (int)Math.round(values[tid][i]);
+		}
+		return rounded;
+	}
+	
+	/* Load a database in the TTFE format (Item : Threat : Frequency : TTF) */
+	public static Dataset load(String name, String inputFilePath) throws IOException
+	{
+		ArrayList<int[]> items = new ArrayList<int[]>();
+		ArrayList<double[]> threats = new ArrayList<double[]>(), frequencies = new ArrayList<double[]>();
+		BufferedReader myInput = null;
+		String thisLine = null;
+		try
+		{
+			myInput = new BufferedReader(new InputStreamReader(new FileInputStream(new File(inputFilePath))));
+			while ((thisLine = myInput.readLine()) != null) // read per line
+			{
+				if (
+					thisLine.isEmpty() || thisLine.charAt(0) == '#'
+					|| thisLine.charAt(0) == '%' || thisLine.charAt(0) == '@'
+					|| thisLine.length() > 1 && thisLine.charAt(0) == '/' && thisLine.charAt(1) == '/'
+					|| thisLine.contains("=")
+				) // skip empty, commented and configure lines
+					continue;
+				thisLine = thisLine.replace("\t", " ").replaceAll(" +", " ").replace(" : ", ":").trim();
+				String[] split = thisLine.split(":");
+				String[] item_str = split[0].split(" "), threat_str = split[1].split(" "), frequency_str = split[2].split(" ");
+				int[] transactionItems = new int[item_str.length];
+				double[] transactionThreats = new double[item_str.length], transactionFrequencies = new double[item_str.length];
+				for (int i = 0; i < item_str.length; ++i)
+				{
+					transactionItems[i] = Integer.parseInt(item_str[i]);
+					transactionThreats[i] = Double.parseDouble(threat_str[i]);
+					transactionFrequencies[i] = Double.parseDouble(frequency_str[i]);
+				}
+				items.add(transactionItems);
+				threats.add(transactionThreats);
+				frequencies.add(transactionFrequencies);
+			}
+		}
+		finally
+		{
+			if (myInput != null)
+				try
+				{
+					myInput.close();
+				}
+				catch (Throwable e) {}
+		}
+		return new Dataset(name, items.toArray(new int[0][]), threats.toArray(new double[0][]), frequencies.toArray(new double[0][]));
+	}
+	
+	public String toString()
+	{
+		return this.name + " (" + this.items.length + " transactions)";
+	}
+}
@@ -0,0 +1,32 @@
+package topkminer;
+
+import java.io.IOException;
+
+import thufi.AlgoDualTHUFI;
+
+
+/**
+ * DualTHUFIMiner (the adapter of the dual-objective THUFI)
+ * @author Yuer Yang, Department of Computer Science, The University of Hong Kong
+ * 
+ * The dual-objective THUFI ranks itemsets by alpha * threat + beta * frequency in a single search, 
+ * which gives the same values as TTFE. 
+ */
+public class DualTHUFIMiner implements TopKMiner
+{
+	public String getName()
+	{
+		return "THUFI-D";
+	}
+	
+	public MiningResult mine(Dataset dataset, MiningConfig config) throws IOException
+	{
+		Dataset target = config.getRecoding() ? dataset.getRecoded() : dataset; // the values are shared with the dataset
+		AlgoDualTHUFI thufi = new AlgoDualTHUFI(config.getTopK(), config.getAlpha(), config.getBeta());
+		thufi.runAlgorithm(target.getItems(), dataset.getThreats(), dataset.getFrequencies(), null, config.getEucsPrune());
+		return new MiningResult(
+			this.getName(), target.decode(thufi.getResultItemsets()), thufi.getResultValues(), thufi.getMinTopKValue(), 
+			thufi.endTimestamp - thufi.startTimestamp, thufi.maxMemory, thufi.candidateCount
+		);
+	}
+}
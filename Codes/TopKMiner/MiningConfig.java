@@ -0,0 +1,239 @@
+package topkminer;
+
+import java.util.Arrays;
+
+
+/**
+ * MiningConfig (the parameters shared by all the engines)
+ * @author Yuer Yang, Department of Computer Science, The University of Hong Kong
+ * 
+ * topK: specify to mine the top-$k$ itemsets
+ * alpha & beta: tf(x) = alpha * t(x) + beta * f(x)
+ * switches: the six switches of TTFE (ignored by the other engines)
+ * eucsPrune: whether the EUCS strategy is activated (ignored by TTFE)
+ * debugLevel: the debug level of TTFE (ignored by the other engines)
+ * offHeap: whether the tid-lists of TTFE and the utility lists of THUI built during the search are stored outside the heap (ignored by the other engines)
+ * projection: whether THUI searches on projected transactions with identical ones merged instead of utility lists (ignored by the other engines)
+ * memoryBudget: the bytes of a layer of the TTFE tree kept in the memory before spilling to disk (0 to keep the whole tree in the memory; ignored by the other engines)
+ * diffsetDepth & diffsetRatio: the tid-lists of TTFE and the utility lists of THUI deeper than diffsetDepth (0 for none) or keeping more than diffsetRatio of the tids of their parents (1 for none) 
+ * 		store the tids lost from their parents instead (ignored by the other engines)
+ * kernels: whether the tid-lists kept as arrays by TTFE and THUI are intersected and summed by their TidKernels (ignored by the other engines)
+ * precision: "double", "fixed" (the values of TTFE are rounded to fixed-point numbers so that their sums are exact) or "float" (the values of TTFE are rounded to floats 
+ * 		and its off-heap and spilled tid-lists store 4-byte values) at load time (ignored by the other engines)
+ * recoding: whether the items are recoded to 0..n-1 (see Dataset.getRecoded()) before mining so that THUI, THUFI, and TFUI build their utility lists through arrays (TTFE is unchanged), and the results are decoded back
+ * reordering: whether TTFE sorts its transactions in the Gray-code order of their events before merging them, so that its tid-lists form runs (ignored by the other engines)
+ */
+public class MiningConfig
+{
+	public static final int defaultTopK = 5, defaultDebugLevel = 0;
+	public static final long defaultMemoryBudget = 0;
+	public static final int defaultDiffsetDepth = 0;
+	public static final double defaultAlpha = 0.5, defaultBeta = 0.5, defaultDiffsetRatio = 1;
+	public static final boolean defaultSwitches[] = { false, true, true, false, true, true }, defaultEucsPrune = false, defaultOffHeap = false, defaultProjection = false, defaultKernels = false, defaultRecoding = false, defaultReordering = false;
+	public static final String precisions[] = { "double", "fixed", "float" }, defaultPrecision = precisions[0];
+	
+	private int topK = defaultTopK, debugLevel = defaultDebugLevel;
+	private double alpha = defaultAlpha, beta = defaultBeta;
+	private boolean switches[] = defaultSwitches.clone(), eucsPrune = defaultEucsPrune, offHeap = defaultOffHeap, projection = defaultProjection;
+	private long memoryBudget = defaultMemoryBudget;
+	private int diffsetDepth = defaultDiffsetDepth;
+	private double diffsetRatio = defaultDiffsetRatio;
+	private boolean kernels = defaultKernels;
+	private String precision = defaultPrecision;
+	private boolean recoding = defaultRecoding;
+	private boolean reordering = defaultReordering;
+	
+	
+	/** Construction functions **/
+	public static class Builder
+	{
+		private int topK = defaultTopK, debugLevel = defaultDebugLevel;
+		private double alpha = defaultAlpha, beta = defaultBeta;
+		private boolean switches[] = defaultSwitches.clone(), eucsPrune = defaultEucsPrune, offHeap = defaultOffHeap, projection = defaultProjection;
+		private long memoryBudget = defaultMemoryBudget;
+		private int diffsetDepth = defaultDiffsetDepth;
+		private double diffsetRatio = defaultDiffsetRatio;
+		private boolean kernels = defaultKernels;
+		private String precision = defaultPrecision;
+		private boolean recoding = defaultRecoding;
+		private boolean reordering = defaultReordering;
+		
+		public Builder() {}
+		public Builder buildTopK(int topK)
+		{
+			if (topK > 0)
+				this.topK = topK;
+			else
+				System.out.printf("The passed parameter topK should be a positive integer. It is defaulted to %d. \nParameter: topK = %d -> topK = %d\n\n", defaultTopK, topK, defaultTopK);
+			return this;
+		}
+		public Builder buildAlphaBeta(double alpha, double beta)
+		{
+			if (0 <= alpha && alpha <= 1 && 0 <= beta && beta <= 1 && alpha + beta == 1)
+			{
+				this.alpha = alpha;
+				this.beta = beta;
+			}
+			else
+				System.out.printf(
+					"The passed parameters alpha and beta should be in the interval [0, 1] and meet the requirement that $\\alpha + \\beta = 1$. They are defaulted to %s and %s respectively. \n\n", 
+					"" + defaultAlpha, "" + defaultBeta
+				);
+			return this;
+		}
+		public Builder buildSwitches(boolean[] switches)
+		{
+			for (int i = 0; i < Math.min(this.switches.length, switches.length); ++i)
+				this.switches[i] = switches[i];
+			return this;
+		}
+		public Builder buildEucsPrune(boolean eucsPrune)
+		{
+			this.eucsPrune = eucsPrune;
+			return this;
+		}
+		public Builder buildDebugLevel(int debugLevel)
+		{
+			this.debugLevel = debugLevel;
+			return this;
+		}
+		public Builder buildOffHeap(boolean offHeap)
+		{
+			this.offHeap = offHeap;
+			return this;
+		}
+		public Builder buildProjection(boolean projection)
+		{
+			this.projection = projection;
+			return this;
+		}
+		public Builder buildMemoryBudget(long memoryBudget)
+		{
+			this.memoryBudget = Math.max(memoryBudget, 0);
+			return this;
+		}
+		public Builder buildDiffsets(int diffsetDepth, double diffsetRatio)
+		{
+			this.diffsetDepth = Math.max(diffsetDepth, 0);
+			this.diffsetRatio = Math.min(Math.max(diffsetRatio, 0), 1);
+			return this;
+		}
+		public Builder buildKernels(boolean kernels)
+		{
+			this.kernels = kernels;
+			return this;
+		}
+		public Builder buildPrecision(String precision)
+		{
+			if (Arrays.asList(precisions).contains(precision.toLowerCase()))
+				this.precision = precision.toLowerCase();
+			else
+				System.out.printf("The passed parameter precision should be double, fixed, or float. It is defaulted to %s. \nParameter: precision = %s -> precision = %s\n\n", defaultPrecision, precision, defaultPrecision);
+			return this;
+		}
+		public Builder buildRecoding(boolean recoding)
+		{
+			this.recoding = recoding;
+			return this;
+		}
+		public Builder buildReordering(boolean reordering)
+		{
+			this.reordering = reordering;
+			return this;
+		}
+		public MiningConfig build()
+		{
+			return new MiningConfig(this);
+		}
+	}
+	private MiningConfig(Builder builder)
+	{
+		this.topK = builder.topK;
+		this.alpha = builder.alpha;
+		this.beta = builder.beta;
+		this.switches = builder.switches.clone();
+		this.eucsPrune = builder.eucsPrune;
+		this.debugLevel = builder.debugLevel;
+		this.offHeap = builder.offHeap;
+		this.projection = builder.projection;
+		this.memoryBudget = builder.memoryBudget;
+		this.diffsetDepth = builder.diffsetDepth;
+		this.diffsetRatio = builder.diffsetRatio;
+		this.kernels = builder.kernels;
+		this.precision = builder.precision;
+		this.recoding = builder.recoding;
+		this.reordering = builder.reordering;
+	}
+	
+	
+	/** Getter **/
+	public int getTopK()
+	{
+		return this.topK;
+	}
+	public double getAlpha()
+	{
+		return this.alpha;
+	}
+	public double getBeta()
+	{
+		return this.beta;
+	}
+	public boolean[] getSwitches()
+	{
+		return this.switches.clone();
+	}
+	public boolean getEucsPrune()
+	{
+		return this.eucsPrune;
+	}
+	public int getDebugLevel()
+	{
+		return this.debugLevel;
+	}
+	public boolean getOffHeap()
+	{
+		return this.offHeap;
+	}
+	public boolean getProjection()
+	{
+		return this.projection;
+	}
+	public long getMemoryBudget()
+	{
+		return this.memoryBudget;
+	}
+	public int getDiffsetDepth()
+	{
+		return this.diffsetDepth;
+	}
+	public double getDiffsetRatio()
+	{
+		return this.diffsetRatio;
+	}
+	public boolean getKernels()
+	{
+		return this.kernels;
+	}
+	public String getPrecision()
+	{
+		return this.precision;
+	}
+	public boolean getRecoding()
+	{
+		return this.recoding;
+	}
+	public boolean getReordering()
+	{
+		return this.reordering;
+	}
+	
+	public String toString()
+	{
+		return "topK: " + this.topK + "\t\talpha: " + this.alpha + "\t\tbeta: " + this.beta 
+			+ "\t\tswitches: [" + this.switches[0] + ", " + this.switches[1] + ", " + this.switches[2] + ", " + this.switches[3] + ", " + this.switches[4] + ", " + this.switches[5] + "]"
+			+ "\t\teucsPrune: " + this.eucsPrune + "\t\toffHeap: " + this.offHeap + "\t\tprojection: " + this.projection + "\t\tmemoryBudget: " + this.memoryBudget
+			+ "\t\tdiffsetDepth: " + this.diffsetDepth + "\t\tdiffsetRatio: " + this.diffsetRatio + "\t\tkernels: " + this.kernels + "\t\tprecision: " + this.precision + "\t\trecoding: " + this.recoding
+			+ "\t\treordering: " + this.reordering;
+	}
+}
@@ -0,0 +1,104 @@
+package topkminer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * MiningResult (the typed result returned by all the engines)
+ * @author Yuer Yang, Department of Computer Science, The University of Hong Kong
+ * 
+ * itemsets: the top-$k$ itemsets sorted by their values (Down)
+ * threshold: the final threshold (delta of TTFE and the minimum utility of the others)
+ * timeConsumption & maxMemory & candidateCount: evaluation metrics in ms, MB and counts (tree nodes or candidates)
+ */
+public class MiningResult
+{
+	/** Child classes **/
+	public static class Itemset
+	{
+		private final int[] items;
+		private final double value;
+		public Itemset(int[] items, double value)
+		{
+			this.items = items.clone();
+			this.value = value;
+		}
+		public int[] getItems()
+		{
+			return this.items.clone();
+		}
+		public double getValue()
+		{
+			return this.value;
+		}
+		public String toString()
+		{
+			String sRet = "";
+			if (this.items.length == 1) // int:
+				sRet += this.items[0];
+			else // (, ):
+			{
+				sRet += "(";
+				for (int i = 0; i < this.items.length; ++i)
+					sRet += (i > 0 ? ", " : "") + this.items[i];
+				sRet += ")";
+			}
+			return sRet + ":" + this.value;
+		}
+	}
+	
+	private final String engineName;
+	private final List<Itemset> itemsets;
+	private final double threshold, timeConsumption, maxMemory;
+	private final long candidateCount;
+	
+	
+	/** Construction functions **/
+	public MiningResult(String engineName, int[][] itemsets, double[] values, double threshold, double timeConsumption, double maxMemory, long candidateCount)
+	{
+		ArrayList<Itemset> list = new ArrayList<Itemset>();
+		for (int i = 0; i < itemsets.length; ++i)
+			list.add(new Itemset(itemsets[i], values[i]));
+		this.engineName = engineName;
+		this.itemsets = Collections.unmodifiableList(list);
+		this.threshold = threshold;
+		this.timeConsumption = timeConsumption;
+		this.maxMemory = maxMemory;
+		this.candidateCount = candidateCount;
+	}
+	
+	
+	/** Getter **/
+	public String getEngineName()
+	{
+		return this.engineName;
+	}
+	public List<Itemset> getItemsets()
+	{
+		return this.itemsets;
+	}
+	public double getThreshold()
+	{
+		return this.threshold;
+	}
+	public double getTimeConsumption()
+	{
+		return this.timeConsumption;
+	}
+	public double getMaxMemory()
+	{
+		return this.maxMemory;
+	}
+	public long getCandidateCount()
+	{
+		return this.candidateCount;
+	}
+	
+	public String toString()
+	{
+		return this.engineName + " - Time: " + this.timeConsumption / 1000.0 + " s\t\tSpace: " + this.maxMemory + " MB\t\tThreshold: " + this.threshold 
+			+ "\t\tCandidates: " + this.candidateCount + "\nFinal results: " + this.itemsets;
+	}
+}
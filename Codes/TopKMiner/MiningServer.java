@@ -0,0 +1,291 @@
+package topkminer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import ttfe.AlgoTTFE;
+
+
+/**
+ * MiningServer (a long-running service keeping datasets and TTFE indexes resident across queries)
+ * @author Yuer Yang, Department of Computer Science, The University of Hong Kong
+ *
+ * Usage: java topkminer.MiningServer [port|-] [cacheDirectory]
+ * Without a port, requests are read from stdin and responses are written to stdout (console outputs of the engines go to stderr).
+ * With a port, the server listens on the loopback address only and answers the connections concurrently.
+ * Results are cached by the dataset fingerprint and the parameters (see ResultCache), on disk as well if a cache directory is given.
+ *
+ * Requests (one per line):
+ * 		LOAD <name> <inputFilePath>			-> load a dataset in the TTFE format once
+ * 		UNLOAD <name>						-> release a dataset and its indexes
+ * 		LIST								-> list the resident datasets
+ * 		MINE <engine> <name> [topK=5] [alpha=0.5] [beta=0.5] [switches=011011] [eucsPrune=false] [offHeap=false] [projection=false] [memoryBudget=0] [diffsetDepth=0] [diffsetRatio=1] [kernels=false] [precision=double] [recoding=false] [reordering=false]
+ * 											-> engine is one of TTFE, THUI, THUFI, THUFI-D and TFUI
+ * 		QUIT								-> close the current connection
+ * 		SHUTDOWN							-> stop the server
+ * Responses: "OK ..." followed by "<item item ...>:<value>" lines and "END" for MINE, or "ERR <message>".
+ */
+public class MiningServer
+{
+	public static final int EXIT_SUCCESS = 0, EXIT_FAILURE = 1;
+	
+	private final ConcurrentHashMap<String, Dataset> datasets = new ConcurrentHashMap<String, Dataset>();
+	private final ConcurrentHashMap<String, AlgoTTFE.Index> indexes = new ConcurrentHashMap<String, AlgoTTFE.Index>(); // (dataset, alpha, beta, precision, recoding) -> index
+	private final TTFEMiner ttfeMiner = new TTFEMiner();
+	private final TopKMiner[] miners = { this.ttfeMiner, new THUIMiner(), new THUFIMiner(), new DualTHUFIMiner(), new TFUIMiner() };
+	private final ResultCache cache;
+	private volatile boolean running = true;
+	
+	
+	/** Construction functions **/
+	public MiningServer()
+	{
+		this(new ResultCache());
+	}
+	public MiningServer(ResultCache cache)
+	{
+		this.cache = cache;
+	}
+	
+	
+	/** Dataset management **/
+	public Dataset load(String name, String inputFilePath) throws IOException
+	{
+		Dataset dataset = Dataset.load(name, inputFilePath);
+		this.unload(name);
+		this.datasets.put(name, dataset);
+		return dataset;
+	}
+	public boolean unload(String name)
+	{
+		this.indexes.keySet().removeIf(key -> key.startsWith(name + "\t"));
+		return null != this.datasets.remove(name);
+	}
+	
+	public MiningResult mine(String engineName, String datasetName, MiningConfig config) throws IOException
+	{
+		Dataset dataset = this.datasets.get(datasetName);
+		if (null == dataset)
+			throw new IOException("The dataset " + datasetName + " is not loaded. ");
+		TopKMiner target = null;
+		for (TopKMiner miner : this.miners)
+			if (miner.getName().equalsIgnoreCase(engineName))
+				target = miner;
+		if (null == target)
+			throw new IOException("The engine " + engineName + " is not supported. ");
+		MiningResult result = this.cache.get(target.getName(), dataset, config);
+		if (result != null) // skip mining entirely
+			return result;
+		if (target == this.ttfeMiner)
+		{
+			String key = datasetName + "\t" + config.getAlpha() + "\t" + config.getBeta() + "\t" + config.getPrecision() + "\t" + config.getRecoding();
+			AlgoTTFE.Index index = this.indexes.get(key);
+			if (null == index)
+			{
+				index = this.ttfeMiner.buildIndex(dataset, config.getAlpha(), config.getBeta(), config.getPrecision(), config.getRecoding());
+				AlgoTTFE.Index existing = this.indexes.putIfAbsent(key, index);
+				if (existing != null) // built by another query at the same time
+					index = existing;
+			}
+			result = this.ttfeMiner.mine(dataset, index, config);
+		}
+		else
+			result = target.mine(dataset, config);
+		this.cache.put(target.getName(), dataset, config, result);
+		return result;
+	}
+	
+	
+	/** Protocol **/
+	private boolean handle(String thisLine, PrintWriter out) // return false to close the connection
+	{
+		String[] split = thisLine.trim().split("\\s+");
+		String command = split[0].toUpperCase();
+		StringBuilder response = new StringBuilder();
+		try
+		{
+			if (command.isEmpty())
+				return true;
+			else if (command.equals("LOAD") && split.length >= 3)
+				response.append("OK " + this.load(split[1], thisLine.trim().substring(thisLine.trim().indexOf(split[2]))) + "\n");
+			else if (command.equals("UNLOAD") && split.length >= 2)
+				response.append(this.unload(split[1]) ? "OK\n" : "ERR The dataset " + split[1] + " is not loaded. \n");
+			else if (command.equals("LIST"))
+				response.append("OK " + String.join(" ", this.datasets.keySet()) + "\n");
+			else if (command.equals("MINE") && split.length >= 3)
+			{
+				MiningResult result = this.mine(split[1], split[2], parseConfig(split, 3));
+				response.append("OK " + result.getEngineName() + " " + result.getItemsets().size() + " " + result.getThreshold() + " " + result.getTimeConsumption() + "\n");
+				for (MiningResult.Itemset itemset : result.getItemsets())
+				{
+					for (int item : itemset.getItems())
+						response.append(item + " ");
+					response.setLength(response.length() - 1);
+					response.append(":" + itemset.getValue() + "\n");
+				}
+				response.append("END\n");
+			}
+			else if (command.equals("QUIT"))
+				return false;
+			else if (command.equals("SHUTDOWN"))
+			{
+				this.running = false;
+				return false;
+			}
+			else
+				response.append("ERR Unrecognized request: " + thisLine + "\n");
+		}
+		catch (Throwable e)
+		{
+			response.setLength(0);
+			response.append("ERR " + (null == e.getMessage() ? "Unknown errors" : e.getMessage().trim()) + "\n");
+		}
+		synchronized (out)
+		{
+			out.print(response);
+			out.flush();
+		}
+		return true;
+	}
+	
+	private static MiningConfig parseConfig(String[] split, int start)
+	{
+		MiningConfig.Builder builder = new MiningConfig.Builder();
+		Double alpha = null, beta = null;
+		int diffsetDepth = MiningConfig.defaultDiffsetDepth;
+		double diffsetRatio = MiningConfig.defaultDiffsetRatio;
+		for (int i = start; i < split.length; ++i)
+		{
+			String[] pair = split[i].split("=", 2);
+			if (pair.length != 2)
+				throw new IllegalArgumentException("The parameter " + split[i] + " should be in the form of key=value. ");
+			String key = pair[0].toLowerCase();
+			if (key.equals("topk"))
+				builder.buildTopK(Integer.parseInt(pair[1]));
+			else if (key.equals("alpha"))
+				alpha = Double.parseDouble(pair[1]);
+			else if (key.equals("beta"))
+				beta = Double.parseDouble(pair[1]);
+			else if (key.equals("switches"))
+			{
+				boolean[] switches = new boolean[pair[1].length()];
+				for (int j = 0; j < switches.length; ++j)
+					switches[j] = pair[1].charAt(j) == '1';
+				builder.buildSwitches(switches);
+			}
+			else if (key.equals("eucsprune"))
+				builder.buildEucsPrune(Boolean.parseBoolean(pair[1]));
+			else if (key.equals("offheap"))
+				builder.buildOffHeap(Boolean.parseBoolean(pair[1]));
+			else if (key.equals("projection"))
+				builder.buildProjection(Boolean.parseBoolean(pair[1]));
+			else if (key.equals("memorybudget"))
+				builder.buildMemoryBudget(Long.parseLong(pair[1]));
+			else if (key.equals("kernels"))
+				builder.buildKernels(Boolean.parseBoolean(pair[1]));
+			else if (key.equals("precision"))
+				builder.buildPrecision(pair[1]);
+			else if (key.equals("recoding"))
+				builder.buildRecoding(Boolean.parseBoolean(pair[1]));
+			else if (key.equals("reordering"))
+				builder.buildReordering(Boolean.parseBoolean(pair[1]));
+			else if (key.equals("diffsetdepth"))
+				diffsetDepth = Integer.parseInt(pair[1]);
+			else if (key.equals("diffsetratio"))
+				diffsetRatio = Double.parseDouble(pair[1]);
+			else
+				throw new IllegalArgumentException("The parameter " + pair[0] + " is not supported. ");
+		}
+		builder.buildDiffsets(diffsetDepth, diffsetRatio);
+		if (null != alpha || null != beta) // automatically fill in alpha and beta if one of them is not specified
+			builder.buildAlphaBeta(null == alpha ? 1 - beta : alpha, null == beta ? 1 - alpha : beta);
+		return builder.build();
+	}
+	
+	private void serve(BufferedReader in, PrintWriter out) throws IOException
+	{
+		String thisLine = null;
+		while (this.running && (thisLine = in.readLine()) != null)
+			if (!this.handle(thisLine, out))
+				break;
+		return;
+	}
+	
+	
+	/** Running entries **/
+	public void runStdio() throws IOException
+	{
+		PrintWriter out = new PrintWriter(new OutputStreamWriter(System.out));
+		System.setOut(new PrintStream(System.err, true)); // keep the protocol clean from the console outputs of the engines
+		this.serve(new BufferedReader(new InputStreamReader(System.in)), out);
+		return;
+	}
+	
+	public void runSocket(int port) throws IOException
+	{
+		ExecutorService executor = Executors.newCachedThreadPool();
+		System.setOut(new PrintStream(System.err, true));
+		ServerSocket serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+		System.err.println("The mining server is listening on " + serverSocket.getLocalSocketAddress() + ". ");
+		try
+		{
+			serverSocket.setSoTimeout(1000); // check whether the server is shut down every second
+			while (this.running)
+			{
+				final Socket socket;
+				try
+				{
+					socket = serverSocket.accept();
+				}
+				catch (java.net.SocketTimeoutException e)
+				{
+					continue;
+				}
+				executor.submit(() -> {
+					try (Socket s = socket)
+					{
+						this.serve(new BufferedReader(new InputStreamReader(s.getInputStream())), new PrintWriter(new OutputStreamWriter(s.getOutputStream())));
+					}
+					catch (IOException e)
+					{
+						System.err.println("Connection error: " + e.getMessage());
+					}
+				});
+			}
+		}
+		finally
+		{
+			serverSocket.close();
+			executor.shutdownNow();
+		}
+		return;
+	}
+	
+	public static void main(String[] args)
+	{
+		MiningServer server = new MiningServer(new ResultCache(ResultCache.defaultMemoryCapacity, args.length > 1 ? args[1] : null));
+		try
+		{
+			if (args.length > 0 && !args[0].equals("-"))
+				server.runSocket(Integer.parseInt(args[0]));
+			else
+				server.runStdio();
+		}
+		catch (Throwable e)
+		{
+			e.printStackTrace();
+			System.exit(EXIT_FAILURE);
+		}
+		System.exit(EXIT_SUCCESS);
+	}
+}
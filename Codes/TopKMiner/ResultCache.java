@@ -0,0 +1,249 @@
+package topkminer;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * ResultCache (a two-tier cache of the mining results keyed by the dataset fingerprint and the mining parameters)
+ * @author Yuer Yang, Department of Computer Science, The University of Hong Kong
+ *
+ * The key is composed of the engine name, the fingerprint of the dataset, alpha, beta, the switches and eucsPrune while topK is kept apart:
+ * only the result of the largest topK is stored per key and a query of a smaller topK is answered by its first topK itemsets.
+ * memoryCapacity: the number of keys kept in the LRU memory tier
+ * directory: the directory of the disk tier (null to disable the disk tier)
+ */
+public class ResultCache
+{
+	public static final int defaultMemoryCapacity = 64;
+	public static final String fileExtension = ".cache";
+	
+	/** Child classes **/
+	private static class Entry
+	{
+		private final int topK;
+		private final MiningResult result;
+		private Entry(int topK, MiningResult result)
+		{
+			this.topK = topK;
+			this.result = result;
+		}
+	}
+	
+	private final int memoryCapacity;
+	private final File directory;
+	private final LinkedHashMap<String, Entry> memory;
+	private long hitCount = 0, missCount = 0;
+	
+	
+	/** Construction functions **/
+	public ResultCache()
+	{
+		this(defaultMemoryCapacity, null);
+	}
+	public ResultCache(int memoryCapacity, String directory)
+	{
+		this.memoryCapacity = Math.max(memoryCapacity, 1);
+		this.directory = null == directory ? null : new File(directory);
+		if (this.directory != null && !this.directory.isDirectory() && !this.directory.mkdirs())
+			System.out.println("Failed to create the cache directory \"" + directory + "\". The disk tier is disabled. ");
+		this.memory = new LinkedHashMap<String, Entry>(16, 0.75f, true) // access order
+		{
+			private static final long serialVersionUID = 1L;
+			protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest)
+			{
+				return this.size() > ResultCache.this.memoryCapacity;
+			}
+		};
+	}
+	
+	
+	/** Getter **/
+	public synchronized long getHitCount()
+	{
+		return this.hitCount;
+	}
+	public synchronized long getMissCount()
+	{
+		return this.missCount;
+	}
+	
+	
+	/** Cache functions **/
+	/* Return the cached result of (engineName, dataset, config) or null if it is missed */
+	public synchronized MiningResult get(String engineName, Dataset dataset, MiningConfig config)
+	{
+		String key = getKey(engineName, dataset, config);
+		Entry entry = this.memory.get(key);
+		if (null == entry && (entry = this.readEntry(key)) != null) // promote from the disk tier
+			this.memory.put(key, entry);
+		if (null == entry || entry.topK < config.getTopK())
+		{
+			++this.missCount;
+			return null;
+		}
+		++this.hitCount;
+		return limit(entry.result, config.getTopK());
+	}
+	
+	/* Store the result unless a result of a larger topK is already cached */
+	public synchronized void put(String engineName, Dataset dataset, MiningConfig config, MiningResult result)
+	{
+		String key = getKey(engineName, dataset, config);
+		Entry entry = this.memory.get(key);
+		if (null == entry)
+			entry = this.readEntry(key);
+		if (entry != null && entry.topK >= config.getTopK())
+		{
+			this.memory.put(key, entry);
+			return;
+		}
+		entry = new Entry(config.getTopK(), result);
+		this.memory.put(key, entry);
+		this.writeEntry(key, entry);
+		return;
+	}
+	
+	public synchronized void clear()
+	{
+		this.memory.clear();
+		this.hitCount = 0;
+		this.missCount = 0;
+		return;
+	}
+	
+	
+	/** Child functions **/
+	private static String getKey(String engineName, Dataset dataset, MiningConfig config)
+	{
+		String sRet = engineName + "_" + dataset.getFingerprint() + "_" + config.getAlpha() + "_" + config.getBeta() + "_";
+		for (boolean b : config.getSwitches())
+			sRet += b ? "1" : "0";
+		return sRet + "_" + config.getEucsPrune() + (MiningConfig.defaultPrecision.equals(config.getPrecision()) ? "" : "_" + config.getPrecision()); // the keys of the double values are kept
+	}
+	
+	private static String sha256(String s)
+	{
+		try
+		{
+			StringBuilder sb = new StringBuilder();
+			for (byte b : MessageDigest.getInstance("SHA-256").digest(s.getBytes(StandardCharsets.UTF_8)))
+				sb.append(String.format("%02x", b));
+			return sb.toString();
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	/* The first topK itemsets of a result of a larger topK (sorted by their values (Down)) */
+	private static MiningResult limit(MiningResult result, int topK)
+	{
+		List<MiningResult.Itemset> itemsets = result.getItemsets();
+		if (itemsets.size() <= topK)
+			return result;
+		int[][] items = new int[topK][];
+		double[] values = new double[topK];
+		for (int i = 0; i < topK; ++i)
+		{
+			items[i] = itemsets.get(i).getItems();
+			values[i] = itemsets.get(i).getValue();
+		}
+		return new MiningResult(
+			result.getEngineName(), items, values, values[topK - 1], // the threshold of the smaller topK is the value of its last itemset
+			result.getTimeConsumption(), result.getMaxMemory(), result.getCandidateCount()
+		);
+	}
+	
+	private File getFile(String key)
+	{
+		return new File(this.directory, key.substring(0, key.indexOf('_')) + "_" + sha256(key) + fileExtension);
+	}
+	
+	/* Read an entry from the disk tier (Line 1: key; Line 2: topK threshold timeConsumption maxMemory candidateCount; Others: items:value) */
+	private Entry readEntry(String key)
+	{
+		if (null == this.directory)
+			return null;
+		File file = this.getFile(key);
+		if (!file.isFile())
+			return null;
+		try (BufferedReader myInput = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)))
+		{
+			if (!key.equals(myInput.readLine())) // collision or corruption
+				return null;
+			String[] header = myInput.readLine().split(" ");
+			ArrayList<int[]> items = new ArrayList<int[]>();
+			ArrayList<Double> values = new ArrayList<Double>();
+			String thisLine = null;
+			while ((thisLine = myInput.readLine()) != null && !thisLine.isEmpty())
+			{
+				String[] split = thisLine.split(":"), item_str = split[0].split(" ");
+				int[] itemset = new int[item_str.length];
+				for (int i = 0; i < item_str.length; ++i)
+					itemset[i] = Integer.parseInt(item_str[i]);
+				items.add(itemset);
+				values.add(Double.parseDouble(split[1]));
+			}
+			double[] valueArray = new double[values.size()];
+			for (int i = 0; i < valueArray.length; ++i)
+				valueArray[i] = values.get(i);
+			return new Entry(
+				Integer.parseInt(header[0]), new MiningResult(
+					key.substring(0, key.indexOf('_')), items.toArray(new int[0][]), valueArray, Double.parseDouble(header[1]),
+					Double.parseDouble(header[2]), Double.parseDouble(header[3]), Long.parseLong(header[4])
+				)
+			);
+		}
+		catch (Throwable e)
+		{
+			System.out.println("Failed to read the cache file \"" + file + "\". It is ignored. ");
+			return null;
+		}
+	}
+	
+	/* Write an entry to the disk tier through a temporary file so that a reader never sees a partial file */
+	private void writeEntry(String key, Entry entry)
+	{
+		if (null == this.directory)
+			return;
+		File file = this.getFile(key), tmpFile = new File(file.getPath() + ".tmp");
+		try
+		{
+			try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmpFile), StandardCharsets.UTF_8)))
+			{
+				MiningResult result = entry.result;
+				writer.write(key + "\n" + entry.topK + " " + result.getThreshold() + " " + result.getTimeConsumption() + " " + result.getMaxMemory() + " " + result.getCandidateCount() + "\n");
+				for (MiningResult.Itemset itemset : result.getItemsets())
+				{
+					int[] items = itemset.getItems();
+					for (int i = 0; i < items.length; ++i)
+						writer.write((i > 0 ? " " : "") + items[i]);
+					writer.write(":" + itemset.getValue() + "\n");
+				}
+			}
+			Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch (Throwable e)
+		{
+			System.out.println("Failed to write the cache file \"" + file + "\". ");
+			tmpFile.delete();
+		}
+		return;
+	}
+}
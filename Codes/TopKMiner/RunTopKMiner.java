@@ -0,0 +1,45 @@
+package topkminer;
+
+
+/**
+ * RunTopKMiner (benchmark all the engines on equal footing)
+ * @author Yuer Yang, Department of Computer Science, The University of Hong Kong
+ * inputFilePath: path of the database file in the TTFE format
+ * config: the parameters shared by all the engines
+ */
+public class RunTopKMiner
+{
+	public static final int EXIT_SUCCESS = 0, EXIT_FAILURE = 1;
+	public static void main(String[] args)
+	{
+		String inputFilePath = args.length > 0 ? args[0] : "./ttfe.txt";
+		MiningConfig config = new MiningConfig.Builder().buildTopK(5).buildAlphaBeta(0.5, 0.5).build();
+		TopKMiner[] miners = { new TTFEMiner(), new THUIMiner(), new THUFIMiner(), new DualTHUFIMiner(), new TFUIMiner() };
+		boolean bRet = true;
+		
+		Dataset dataset = null;
+		try
+		{
+			dataset = Dataset.load("ttfe", inputFilePath);
+		}
+		catch (Throwable e)
+		{
+			System.out.println("Failed to load the dataset from \"" + inputFilePath + "\". ");
+			e.printStackTrace();
+			System.exit(EXIT_FAILURE);
+		}
+		
+		for (TopKMiner miner : miners)
+			try
+			{
+				System.out.println(miner.mine(dataset, config) + "\n");
+			}
+			catch (Throwable e)
+			{
+				System.out.println(miner.getName() + " - Error info: " + (null == e.getMessage() ? "Unknown errors" : e.getMessage()) + "\n");
+				bRet = false;
+			}
+		
+		System.exit(bRet ? EXIT_SUCCESS : EXIT_FAILURE);
+	}
+}
@@ -0,0 +1,35 @@
+package topkminer;
+
+import java.io.IOException;
+
+import tfui.AlgoTFUI;
+
+
+/**
+ * TFUIMiner (the adapter of TFUI)
+ * @author Yuer Yang, Department of Computer Science, The University of Hong Kong
+ * 
+ * TFUI ranks itemsets by alpha * utility + beta * frequency where the threat values are used as the utilities. 
+ */
+public class TFUIMiner implements TopKMiner
+{
+	public String getName()
+	{
+		return "TFUI";
+	}
+	
+	public MiningResult mine(Dataset dataset, MiningConfig config) throws IOException
+	{
+		double[] transactionUtilities = new double[dataset.size()];
+		for (int tid = 0; tid < transactionUtilities.length; ++tid)
+			transactionUtilities[tid] = dataset.getTransactionValue(tid, config.getAlpha(), config.getBeta());
+		
+		Dataset target = config.getRecoding() ? dataset.getRecoded() : dataset; // the values are shared with the dataset
+		AlgoTFUI tfui = new AlgoTFUI(config.getTopK(), config.getAlpha(), config.getBeta());
+		tfui.runAlgorithm(target.getItems(), dataset.getFrequencies(), dataset.getThreats(), transactionUtilities, null, config.getEucsPrune());
+		return new MiningResult(
+			this.getName(), target.decode(tfui.getResultItemsets()), tfui.getResultValues(), tfui.getMinTopKValue(), 
+			tfui.endTimestamp - tfui.startTimestamp, tfui.maxMemory, tfui.candidateCount
+		);
+	}
+}
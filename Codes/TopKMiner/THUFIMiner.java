@@ -0,0 +1,37 @@
+package topkminer;
+
+import java.io.IOException;
+
+import thufi.AlgoTHUFI;
+
+
+/**
+ * THUFIMiner (the adapter of THUFI)
+ * @author Yuer Yang, Department of Computer Science, The University of Hong Kong
+ * 
+ * THUFI ranks itemsets by the threat values (rounded to integer utilities) and carries the frequency values. 
+ */
+public class THUFIMiner implements TopKMiner
+{
+	public String getName()
+	{
+		return "THUFI";
+	}
+	
+	public MiningResult mine(Dataset dataset, MiningConfig config) throws IOException
+	{
+		int[][] utilities = dataset.getRoundedThreats();
+		double[] transactionUtilities = new double[utilities.length];
+		for (int tid = 0; tid < utilities.length; ++tid)
+			for (int utility : utilities[tid])
+				transactionUtilities[tid] += utility;
+		
+		Dataset target = config.getRecoding() ? dataset.getRecoded() : dataset; // the values are shared with the dataset
+		AlgoTHUFI thufi = new AlgoTHUFI(config.getTopK(), config.getAlpha(), config.getBeta());
+		thufi.runAlgorithm(target.getItems(), dataset.getRoundedFrequencies(), utilities, transactionUtilities, null, config.getEucsPrune());
+		return new MiningResult(
+			this.getName(), target.decode(thufi.getResultItemsets()), thufi.getResultValues(), thufi.getMinTopKValue(), 
+			thufi.endTimestamp - thufi.startTimestamp, thufi.maxMemory, thufi.candidateCount
+		);
+	}
+}
@@ -0,0 +1,45 @@
+package topkminer;
+
+import java.io.IOException;
+
+import thui.AlgoTHUI;
+
+
+/**
+ * THUIMiner (the adapter of THUI)
+ * @author Yuer Yang, Department of Computer Science, The University of Hong Kong
+ * 
+ * THUI can only focus on the threat values, which are rounded to integer utilities. 
+ */
+public class THUIMiner implements TopKMiner
+{
+	public String getName()
+	{
+		return "THUI";
+	}
+	
+	public MiningResult mine(Dataset dataset, MiningConfig config) throws IOException
+	{
+		int[][] utilities = dataset.getRoundedThreats();
+		int[] transactionUtilities = new int[utilities.length];
+		for (int tid = 0; tid < utilities.length; ++tid)
+			for (int utility : utilities[tid])
+				transactionUtilities[tid] += utility;
+		
+		Dataset target = config.getRecoding() ? dataset.getRecoded() : dataset; // the values are shared with the dataset
+		AlgoTHUI thui = new AlgoTHUI();
+		thui.setOffHeap(config.getOffHeap());
+		thui.setProjection(config.getProjection());
+		thui.setDiffsets(config.getDiffsetDepth(), config.getDiffsetRatio());
+		thui.setKernels(config.getKernels());
+		thui.runAlgorithm(target.getItems(), utilities, transactionUtilities, null, config.getEucsPrune(), config.getTopK());
+		long[] utils = thui.getResultUtilities();
+		double[] values = new double[utils.length];
+		for (int i = 0; i < utils.length; ++i)
+			values[i] = utils[i];
+		return new MiningResult(
+			this.getName(), target.decode(thui.getResultItemsets()), values, thui.getMinUtility(), 
+			thui.endTimestamp - thui.startTimestamp, thui.maxMemory, thui.candidateCount
+		);
+	}
+}
@@ -0,0 +1,70 @@
+package topkminer;
+
+import java.io.IOException;
+
+import ttfe.AlgoTTFE;
+
+
+/**
+ * TTFEMiner (the adapter of TTFE)
+ * @author Yuer Yang, Department of Computer Science, The University of Hong Kong
+ */
+public class TTFEMiner implements TopKMiner
+{
+	public String getName()
+	{
+		return AlgoTTFE.algoName;
+	}
+	
+	public MiningResult mine(Dataset dataset, MiningConfig config) throws IOException
+	{
+		Dataset target = config.getRecoding() ? dataset.getRecoded() : dataset; // the values are shared with the dataset
+		AlgoTTFE ttfe = this.build(dataset, config);
+		if (!ttfe.runAlgorithm(target.getItems(), target.getThreats(), target.getFrequencies()))
+			throw new IOException("Failed to run " + this.getName() + " on the dataset " + dataset.getName() + ". ");
+		return this.getResult(ttfe, target);
+	}
+	
+	/* Mine on an index built by buildIndex() whose (alpha, beta) and precision are used instead of the ones in the config (the index should be built with the recoding in the config) */
+	public MiningResult mine(Dataset dataset, AlgoTTFE.Index index, MiningConfig config) throws IOException
+	{
+		AlgoTTFE ttfe = this.build(dataset, config);
+		if (!ttfe.runAlgorithm(index))
+			throw new IOException("Failed to run " + this.getName() + " on the index of the dataset " + dataset.getName() + ". ");
+		return this.getResult(ttfe, config.getRecoding() ? dataset.getRecoded() : dataset);
+	}
+	
+	public AlgoTTFE.Index buildIndex(Dataset dataset, double alpha, double beta) throws IOException
+	{
+		return this.buildIndex(dataset, alpha, beta, MiningConfig.defaultPrecision, MiningConfig.defaultRecoding);
+	}
+	public AlgoTTFE.Index buildIndex(Dataset dataset, double alpha, double beta, String precision) throws IOException
+	{
+		return this.buildIndex(dataset, alpha, beta, precision, MiningConfig.defaultRecoding);
+	}
+	public AlgoTTFE.Index buildIndex(Dataset dataset, double alpha, double beta, String precision, boolean recoding) throws IOException
+	{
+		Dataset target = recoding ? dataset.getRecoded() : dataset;
+		AlgoTTFE.Index index = AlgoTTFE.buildIndex(target.getItems(), target.getThreats(), target.getFrequencies(), alpha, beta, AlgoTTFE.parsePrecision(precision));
+		if (null == index)
+			throw new IOException("Failed to build the index of the dataset " + dataset.getName() + ". ");
+		return index;
+	}
+	
+	private AlgoTTFE build(Dataset dataset, MiningConfig config)
+	{
+		return new AlgoTTFE.Builder().buildDatabase(AlgoTTFE.checkDatabase(dataset.getName()) ? dataset.getName() : AlgoTTFE.defaultDatabase).buildTopK(config.getTopK())
+			.buildAlphaBeta(config.getAlpha(), config.getBeta()).buildSwitches(config.getSwitches()).buildDebugLevel(config.getDebugLevel()).buildOffHeap(config.getOffHeap())
+			.buildMemoryBudget(config.getMemoryBudget()).buildDiffsets(config.getDiffsetDepth(), config.getDiffsetRatio()).buildKernels(config.getKernels()).buildReordering(config.getReordering())
+			.buildPrecision(AlgoTTFE.parsePrecision(config.getPrecision())).build();
+	}
+	
+	private MiningResult getResult(AlgoTTFE ttfe, Dataset target) // the itemsets are decoded by the dataset mined
+	{
+		Double delta = ttfe.getDelta();
+		return new MiningResult(
+			this.getName(), target.decode(ttfe.getFinalItemsets()), ttfe.getFinalValues(), null == delta ? Double.NEGATIVE_INFINITY : delta.doubleValue(), 
+			ttfe.getTimeConsumption(), ttfe.getMaxMemory(), ttfe.getTreeNodeCount()
+		);
+	}
+}
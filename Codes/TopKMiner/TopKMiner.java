@@ -0,0 +1,16 @@
+package topkminer;
+
+import java.io.IOException;
+
+
+/**
+ * TopKMiner (the common engine interface of THUI, THUFI, TFUI and TTFE)
+ * @author Yuer Yang, Department of Computer Science, The University of Hong Kong
+ * 
+ * An engine mines the top-$k$ itemsets of an in-memory dataset according to a config without any file outputs. 
+ */
+public interface TopKMiner
+{
+	public String getName();
+	public MiningResult mine(Dataset dataset, MiningConfig config) throws IOException;
+}